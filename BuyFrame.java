@@ -8,86 +8,128 @@ import javax.swing.*;
  * the GUI of the vending machine application.
  */
 public class BuyFrame extends JFrame {
+    private VendingService vendingService;
     private RegularVendingMachine vendingMachine;
+    private ItemButton[] itemButtons;
+    private InventoryListener inventoryListener;
 
     /**
      * Constucts the Buy Frame for the vending machine's GUI.
      * 
-     * @param vendingMachine the RegularVendingMachine instance used for the
-     *                       application.
+     * @param vendingService the vending service used to buy items
      */
-    public BuyFrame(RegularVendingMachine vendingMachine) {
-        this.vendingMachine = vendingMachine;
+    public BuyFrame(VendingService vendingService) {
+        this.vendingService = vendingService;
+        this.vendingMachine = vendingService.getVendingMachine();
+        this.itemButtons = new ItemButton[vendingMachine.getSlotCount()];
 
         setTitle("Alishaimma Vending Machine - Buy an Item");
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        setLayout(new GridLayout(3, 3, 10, 10)); // 3 rows, 3 columns, with 10px horizontal and vertical gaps
+        // one column per column of slots, with 10px horizontal and vertical gaps
+        setLayout(new GridLayout(0, vendingMachine.getColumnCount(), 10, 10));
 
         displayItems();
 
         pack(); // Automatically adjust the size of the frame to fit all components
         setLocationRelativeTo(null); // Center the frame on the screen
+
+        // Show the changes of a slot on its button only, merging the changes made
+        // before the Event Dispatch Thread gets to them
+        inventoryListener = new CoalescingInventoryListener(new InventoryListener() {
+            @Override
+            public void slotChanged(InventoryEvent event) {
+                refreshSlot(event);
+            }
+        }, SwingUtilities::invokeLater);
+        vendingMachine.addInventoryListener(inventoryListener);
+    }
+
+    /**
+     * Stops listening to the vending machine and closes the frame
+     */
+    @Override
+    public void dispose() {
+        vendingMachine.removeInventoryListener(inventoryListener);
+        super.dispose();
+    }
+
+    /**
+     * Shows the change of a slot on its button, adding the button if the slot has
+     * just been stocked
+     * 
+     * @param event the change of the slot
+     */
+    private void refreshSlot(InventoryEvent event) {
+        int slotNumber = event.getSlotNumber();
+        if (slotNumber >= itemButtons.length || event.getItem() == null) {
+            return;
+        }
+
+        if (itemButtons[slotNumber] != null) {
+            itemButtons[slotNumber].setItem(event.getItem(), event.getPrice(), event.getQuantity());
+            return;
+        }
+
+        // the buttons are in slot order, so the new one goes after those of lower slots
+        int index = 0;
+        for (int i = 0; i < slotNumber; i++) {
+            if (itemButtons[i] != null) {
+                index++;
+            }
+        }
+        getContentPane().add(createItemButton(slotNumber, event.getItem(), event.getQuantity()), index);
+        revalidate();
+        repaint();
     }
 
     /**
      * Displays and creates the buttons for the items in the vending machine.
      */
     private void displayItems() {
-        for (int i = 0; i < 9; i++) { // 9 since that is total slot count
+        for (int i = 0; i < vendingMachine.getSlotCount(); i++) {
             ItemSlot slot = vendingMachine.getSlot(i);
 
             if (slot != null) {
-                Item item = slot.getItem();
-                int quantityAvailable = slot.getQuantity();
-                double price = item.getPrice();
-                double calories = item.getCalories();
-
-                String itemDetails = "Item: " + item.getName() + "\n"
-                        + "Price: PHP " + price + "\n"
-                        + "Quantity: " + quantityAvailable + "\n"
-                        + "Calories: " + calories + "\n";
-
-                ItemButton itemButton = new ItemButton(itemDetails, item.getName(), price, quantityAvailable, calories);
-
-                itemButton.addActionListener(new ActionListener() {
-                    @Override
-                    public void actionPerformed(ActionEvent e) {
-                        handleBuyAction(itemButton);
-                    }
-                });
-
-                add(itemButton);
+                add(createItemButton(i, slot.getItem(), slot.getQuantity()));
             }
         }
     }
 
+    /**
+     * Creates the button of an item slot
+     * 
+     * @param slotNumber the slot number of the item slot
+     * @param item       the item in the item slot
+     * @param quantity   quantity of the item in the item slot
+     * @return the button
+     */
+    private ItemButton createItemButton(int slotNumber, Item item, int quantity) {
+        ItemButton itemButton = new ItemButton(item, quantity);
+
+        itemButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleBuyAction(slotNumber, itemButton);
+            }
+        });
+
+        itemButtons[slotNumber] = itemButton;
+        return itemButton;
+    }
+
     /**
      * Handles the buy action when the user choose the "Buy an Item" option.
+     * The item is bought from the slot of the button, so each slot holding the
+     * same item is sold from on its own.
      * 
+     * @param slotNumber the slot number of the button
      * @param itemButton ItemButton representing the item choice of purchase
      */
-    private void handleBuyAction(ItemButton itemButton) {
-        String itemName = itemButton.getItemName();
-        double price = itemButton.getPrice();
+    private void handleBuyAction(int slotNumber, ItemButton itemButton) {
+        long price = itemButton.getPrice();
         int quantityAvailable = itemButton.getQuantity();
         double calories = itemButton.getCalories();
 
-        int slotNumber = -1;
-
-        for (int i = 0; i < 9; i++) { // 9 since that is total slot count
-            ItemSlot slot = vendingMachine.getSlot(i);
-            if (slot != null && slot.getItem().getName().equals(itemName)) {
-                slotNumber = i;
-                break;
-            }
-        }
-
-        if (slotNumber == -1) {
-            JOptionPane.showMessageDialog(this, "Item " + itemName + " not found in any slot.", "Purchase Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
         if (quantityAvailable == 0) {
             JOptionPane.showMessageDialog(this, "Slot " + slotNumber + " is empty. Please select another item.",
                     "Purchase Error", JOptionPane.ERROR_MESSAGE);
@@ -102,61 +144,43 @@ public class BuyFrame extends JFrame {
             return;
         }
 
-        double totalPrice = price * quantityToBuy;
-
-        // Accept amount in specific denominations
-        int quantity1 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 1] coins:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-        int quantity2 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 5] coins:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-        int quantity3 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 10] coins:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-        int quantity4 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 20] bills:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-        int quantity5 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 50] bills:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-        int quantity6 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 100] bills:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-        int quantity7 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 200] bills:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-        int quantity8 = Integer.parseInt(JOptionPane.showInputDialog(this, "Enter the number of [PHP 500] bills:",
-                "Payment", JOptionPane.PLAIN_MESSAGE));
-
-        int amountPaid = quantity1 * 1 + quantity2 * 5 + quantity3 * 10 + quantity4 * 20 +
-                quantity5 * 50 + quantity6 * 100 + quantity7 * 200 + quantity8 * 500;
-
-        if (amountPaid < totalPrice) {
-            JOptionPane.showMessageDialog(this, "Insufficient amount. Please enter a valid amount.", "Purchase Error",
-                    JOptionPane.ERROR_MESSAGE);
+        // Accept the payment, showing the running total and the change as the
+        // money is inserted
+        CoinEscrow escrow = CashPanel.askPayment(this, vendingService, price * quantityToBuy);
+        if (escrow == null) {
             return;
         }
 
-        if (!vendingMachine.isChangePossible(amountPaid, totalPrice)) {
-            JOptionPane.showMessageDialog(this,
-                    "Change cannot be provided in the required denominations. Please contact maintenance.",
-                    "Purchase Error", JOptionPane.ERROR_MESSAGE);
+        // Perform the purchase in the background: the payment is taken, the item
+        // dispensed and the change given in one transaction, or the payment is
+        // given back. The button shows the new quantity from the inventory event.
+        PurchaseRequest request = new PurchaseRequest(slotNumber, quantityToBuy, escrow);
+        new CheckoutWorker(this, () -> vendingService.buyItem(request), result -> showResult(result)).start();
+    }
+
+    /**
+     * Shows the result of a purchase and closes the frame if it was successful
+     * 
+     * @param result the result of the purchase
+     */
+    private void showResult(VendingResult result) {
+        if (!result.isSuccessful()) {
+            String message = result.getMessage();
+            if (result.getReturnedPieces().length > 0) {
+                message += "\nMoney returned: " + vendingService.describePieces(result.getReturnedPieces());
+            }
+            JOptionPane.showMessageDialog(this, message, "Purchase Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        // Perform the purchase and update the vending machine values (quantity, total
-        // sales, etc.)
-        vendingMachine.sellItem(slotNumber, quantityToBuy, amountPaid, totalPrice);
-        int newQuantity = vendingMachine.getSlot(slotNumber).getQuantity();
-
         String successMessage = "Purchase successful!\n"
-                + "Item: " + itemName + "\n"
-                + "Quantity: " + quantityToBuy + "\n"
-                + "Total Price: PHP " + totalPrice + "\n"
-                + "Change: PHP " + (amountPaid - totalPrice);
+                + "Item: " + result.getItemName() + "\n"
+                + "Quantity: " + result.getQuantities()[0] + "\n"
+                + "Total Price: PHP " + Money.format(result.getTotalPrice()) + "\n"
+                + "Change: PHP " + Money.format(result.getChange()) + "\n"
+                + "Change breakdown: " + vendingService.describePieces(result.getChangePieces());
         JOptionPane.showMessageDialog(this, successMessage, "Purchase Successful", JOptionPane.INFORMATION_MESSAGE);
 
-        // Update the item button text with the updated quantity
-        String updatedItemDetails = "Item: " + itemName + "\n"
-                + "Price: PHP " + price + "\n"
-                + "Quantity: " + newQuantity + "\n"
-                + "Calories: " + calories + "\n";
-        itemButton.setText(updatedItemDetails);
-
         dispose();
     }
 }
@@ -166,7 +190,7 @@ public class BuyFrame extends JFrame {
  */
 class ItemButton extends JButton {
     private String itemName;
-    private double price;
+    private long price;
     private int quantity;
     private double calories;
 
@@ -175,11 +199,11 @@ class ItemButton extends JButton {
      * 
      * @param text     details to be displayed in item button
      * @param itemName item name of the item in the item slot
-     * @param price    price of the item in PHP
+     * @param price    price of the item in centavos
      * @param quantity quantity of the item in the item slot
      * @param calories calories of the item in the item slot
      */
-    public ItemButton(String text, String itemName, double price, int quantity, double calories) {
+    public ItemButton(String text, String itemName, long price, int quantity, double calories) {
         super("<html>" + text.replaceAll("\n", "<br>") + "</html>");
         this.itemName = itemName;
         this.price = price;
@@ -190,6 +214,49 @@ class ItemButton extends JButton {
         setHorizontalAlignment(SwingConstants.CENTER);
     }
 
+    /**
+     * Constructs the ItemButton of an item slot.
+     * 
+     * @param item     the item in the item slot
+     * @param quantity quantity of the item in the item slot
+     */
+    public ItemButton(Item item, int quantity) {
+        this(getDetails(item.getName(), item.getPrice(), quantity, item.getCalories()), item.getName(),
+                item.getPrice(), quantity, item.getCalories());
+    }
+
+    /**
+     * Makes the details displayed in an item button
+     * 
+     * @param itemName item name of the item in the item slot
+     * @param price    price of the item in centavos
+     * @param quantity quantity of the item in the item slot
+     * @param calories calories of the item in the item slot
+     * @return the details, one per line
+     */
+    private static String getDetails(String itemName, long price, int quantity, double calories) {
+        return "Item: " + itemName + "\n"
+                + "Price: PHP " + Money.format(price) + "\n"
+                + "Quantity: " + quantity + "\n"
+                + "Calories: " + calories + "\n";
+    }
+
+    /**
+     * Shows another item, price or quantity on the button
+     * 
+     * @param item     the item in the item slot
+     * @param price    price of the item in centavos
+     * @param quantity quantity of the item in the item slot
+     */
+    public void setItem(Item item, long price, int quantity) {
+        this.itemName = item.getName();
+        this.price = price;
+        this.quantity = quantity;
+        this.calories = item.getCalories();
+
+        setText("<html>" + getDetails(itemName, price, quantity, calories).replaceAll("\n", "<br>") + "</html>");
+    }
+
     /**
      * Getter method for the item's name.
      * 
@@ -202,9 +269,9 @@ class ItemButton extends JButton {
     /**
      * Getter method for the item's price.
      * 
-     * @return price of the item
+     * @return price of the item (in centavos)
      */
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 
@@ -0,0 +1,265 @@
+import java.util.Scanner;
+
+/**
+ * This class represents the money a user is inserting to pay for a purchase.
+ * Pieces are inserted one at a time (or several in one line of text) while the
+ * running total and whether the machine can give the change are kept up to
+ * date, so the user knows right away when the payment is enough. The pieces
+ * are held in an escrow of the machine, which is given to the purchase; they
+ * stay the user's until the sale succeeds, or are given back on cancel.
+ * It is shared by the console and the GUI, which only show it differently.
+ */
+public class CashInsertion {
+    public static final int INSUFFICIENT = 0;
+    public static final int NO_CHANGE = 1;
+    public static final int READY = 2;
+    public static final int MAX_PIECES = 1000;
+
+    private RegularVendingMachine vendingMachine;
+    private long[] denominations;
+    private long totalPrice;
+    private CoinEscrow escrow;
+
+    /**
+     * This is the constructor of an empty payment for a purchase. An escrow is
+     * opened for it, which must be used for the purchase or cancelled.
+     *
+     * @param vendingService the vending service the purchase is made with
+     * @param totalPrice     the total price of the purchase (in centavos)
+     */
+    public CashInsertion(VendingService vendingService, long totalPrice) {
+        this.vendingMachine = vendingService.getVendingMachine();
+        this.denominations = vendingService.getDenominations();
+        this.totalPrice = totalPrice;
+        this.escrow = vendingMachine.openEscrow();
+    }
+
+    /**
+     * Gets the valid denominations, in the order of the payment
+     *
+     * @return the denominations (in centavos)
+     */
+    public long[] getDenominations() {
+        return denominations;
+    }
+
+    /**
+     * Gets the total price of the purchase
+     *
+     * @return the total price (in centavos)
+     */
+    public long getTotalPrice() {
+        return totalPrice;
+    }
+
+    /**
+     * Inserts pieces of a denomination
+     *
+     * @param index the index of the denomination
+     * @param count the number of pieces inserted
+     */
+    public void insert(int index, int count) {
+        escrow.insert(index, count);
+    }
+
+    /**
+     * Takes back one piece of a denomination
+     *
+     * @param index the index of the denomination
+     * @return true if a piece was taken back, false if none was inserted
+     */
+    public boolean remove(int index) {
+        return escrow.remove(index);
+    }
+
+    /**
+     * Takes back every piece inserted
+     */
+    public void clear() {
+        escrow.clear();
+    }
+
+    /**
+     * Cancels the payment, giving back every piece inserted and closing the
+     * escrow
+     *
+     * @return the pieces given back
+     */
+    public int[] cancel() {
+        return vendingMachine.cancelEscrow(escrow);
+    }
+
+    /**
+     * Inserts the pieces written in a line of text, as peso values separated by
+     * spaces or commas. A piece can be repeated by writing the count first (e.g.
+     * "20 20 5" and "2x20 5" both insert two 20s and a 5). Nothing is inserted
+     * if any part of the line is not valid, or if it would bring the pieces of
+     * a denomination over MAX_PIECES.
+     *
+     * @param line the line of text
+     * @return true if the pieces were inserted, false if the line is not valid
+     */
+    public boolean insert(String line) {
+        int[] pieces = new int[denominations.length];
+        for (String part : line.trim().split("[\\s,]+")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+
+            int count = 1;
+            String value = part;
+            int times = part.toLowerCase().indexOf('x');
+            try {
+                if (times >= 0) {
+                    count = Integer.parseInt(part.substring(0, times));
+                    value = part.substring(times + 1);
+                }
+                int index = findDenomination(Money.parse(value));
+                if (index == -1 || count <= 0 || count > MAX_PIECES - pieces[index] - getCount(index)) {
+                    return false;
+                }
+                pieces[index] += count;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < pieces.length; i++) {
+            insert(i, pieces[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Finds the index of a denomination
+     *
+     * @param value the value of the piece (in centavos)
+     * @return the index of the denomination, or -1 if it is not a valid piece
+     */
+    public int findDenomination(long value) {
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the pieces inserted
+     *
+     * @return the number of pieces of each denomination
+     */
+    public int[] getPayment() {
+        return escrow.getPieces();
+    }
+
+    /**
+     * Gets the escrow holding the pieces inserted, to be given to the purchase
+     *
+     * @return the escrow
+     */
+    public CoinEscrow getEscrow() {
+        return escrow;
+    }
+
+    /**
+     * Gets the number of pieces of a denomination inserted
+     *
+     * @param index the index of the denomination
+     * @return the number of pieces
+     */
+    public int getCount(int index) {
+        return escrow.getCount(index);
+    }
+
+    /**
+     * Gets the total of the pieces inserted
+     *
+     * @return the total (in centavos)
+     */
+    public long getTotal() {
+        return escrow.getTotal();
+    }
+
+    /**
+     * Checks if the payment can be used for the purchase. The change is checked
+     * against the money in the machine right now, counting the pieces inserted.
+     *
+     * @return READY if the payment covers the price and the change can be given,
+     *         NO_CHANGE if the change cannot be given, or INSUFFICIENT if the
+     *         payment does not cover the price
+     */
+    public int getStatus() {
+        if (getTotal() < totalPrice) {
+            return INSUFFICIENT;
+        }
+        return vendingMachine.isChangePossible(getPayment(), totalPrice) ? READY : NO_CHANGE;
+    }
+
+    /**
+     * Describes the status of the payment for the user
+     *
+     * @param status the status given by getStatus
+     * @return the description of the status
+     */
+    public String getStatusMessage(int status) {
+        long total = getTotal();
+        switch (status) {
+            case INSUFFICIENT:
+                return "Insert PHP " + Money.format(totalPrice - total) + " more.";
+            case NO_CHANGE:
+                return "Change of PHP " + Money.format(total - totalPrice)
+                        + " cannot be given with the money in the machine.";
+            default:
+                return "Change: PHP " + Money.format(total - totalPrice);
+        }
+    }
+
+    /**
+     * Asks for the payment of a purchase on the console. Pieces are read one
+     * line at a time until the payment is ready, printing the running total
+     * after each line.
+     *
+     * @param scanner        the scanner used to get user input
+     * @param vendingService the vending service the purchase is made with
+     * @param totalPrice     the total price of the purchase (in centavos)
+     * @return the escrow holding the pieces inserted, or null if the user
+     *         cancelled and the pieces were given back
+     */
+    public static CoinEscrow ask(Scanner scanner, VendingService vendingService, long totalPrice) {
+        CashInsertion cash = new CashInsertion(vendingService, totalPrice);
+        StringBuilder values = new StringBuilder();
+        for (long denomination : cash.getDenominations()) {
+            values.append(values.length() == 0 ? "" : ", ").append(denomination / Money.CENTAVOS_PER_PESO);
+        }
+        System.out.println("Insert money as peso values (" + values + "), e.g. 20 20 5 or 2x20 5.");
+        System.out.println("Enter 'C' to cancel.");
+
+        while (true) {
+            System.out.print("Insert money: ");
+            String line = scanner.nextLine().trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equalsIgnoreCase("C")) {
+                cash.cancel();
+                System.out.println("Payment cancelled.");
+                return null;
+            }
+            if (!cash.insert(line)) {
+                System.out.println("Invalid money. Please insert valid pieces.");
+                continue;
+            }
+
+            int status = cash.getStatus();
+            System.out.println("Inserted: PHP " + Money.format(cash.getTotal()) + ". " + cash.getStatusMessage(status));
+            if (status == READY) {
+                return cash.getEscrow();
+            }
+            if (status == NO_CHANGE) {
+                System.out.println("Insert more money or enter 'C' to take your money back.");
+            }
+        }
+    }
+}
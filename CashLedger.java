@@ -0,0 +1,279 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the cash ledger of a vending machine. Every movement of
+ * money (a payment inserted, change dispensed, money replenished or collected,
+ * and the sale it pays for) is posted as a balanced entry between two accounts:
+ * CASH_BOX, the money in the machine; CUSTOMERS, the money customers have paid
+ * and not yet spent; SALES, the sales not yet collected; and FLOAT, the money
+ * put in by the operator for change. Each movement of the cash box is also
+ * counted piece by piece for every denomination.
+ * Only running totals are kept, in primitive arrays, so the ledger never grows
+ * and a reconciliation against the machine only goes through the
+ * denominations. The ledger is guarded by the money lock of its machine.
+ */
+public class CashLedger {
+    public static final int OPENING = 0;
+    public static final int INSERT = 1;
+    public static final int DISPENSE = 2;
+    public static final int REPLENISH = 3;
+    public static final int COLLECT = 4;
+
+    public static final int CASH_BOX = 0;
+    public static final int CUSTOMERS = 1;
+    public static final int SALES = 2;
+    public static final int FLOAT = 3;
+
+    private static final int MOVEMENT_COUNT = 5;
+    private static final int ACCOUNT_COUNT = 4;
+    private static final String TITLE_BORDER = "*============================================="
+            + "==============================================*\n";
+    private static final String BORDER = "=============================================="
+            + "===============================================\n";
+    private static final String[] MOVEMENT_NAMES = { "Opening", "Inserted", "Dispensed", "Replenished",
+            "Collected" };
+
+    private long[] denominations;
+    private long[] movedPieces;
+    private long[] cashPieces;
+    private long[] balances;
+    private long entryCount;
+
+    /**
+     * This is the constructor of an empty cash ledger
+     *
+     * @param denominations the denominations of the machine (in centavos)
+     */
+    public CashLedger(long[] denominations) {
+        this.denominations = denominations;
+        this.movedPieces = new long[MOVEMENT_COUNT * denominations.length];
+        this.cashPieces = new long[denominations.length];
+        this.balances = new long[ACCOUNT_COUNT];
+        this.entryCount = 0;
+    }
+
+    /**
+     * Starts the ledger over from the money and sales a machine was recovered
+     * with. The money is opened against the uncollected sales, and the rest
+     * against the float.
+     *
+     * @param quantities the pieces of each denomination in the machine
+     * @param sales      the sales not yet collected (in centavos)
+     */
+    public void open(int[] quantities, long sales) {
+        Arrays.fill(movedPieces, 0);
+        Arrays.fill(cashPieces, 0);
+        Arrays.fill(balances, 0);
+        entryCount = 0;
+
+        long amount = movePieces(OPENING, quantities, 1);
+        post(CASH_BOX, FLOAT, amount - sales);
+        post(CASH_BOX, SALES, sales);
+    }
+
+    /**
+     * Records a payment put into the cash box
+     *
+     * @param pieces the pieces of each denomination inserted
+     */
+    public void insert(int[] pieces) {
+        post(CASH_BOX, CUSTOMERS, movePieces(INSERT, pieces, 1));
+    }
+
+    /**
+     * Records change paid out of the cash box
+     *
+     * @param pieces the pieces of each denomination paid out
+     */
+    public void dispense(int[] pieces) {
+        post(CUSTOMERS, CASH_BOX, movePieces(DISPENSE, pieces, -1));
+    }
+
+    /**
+     * Records a sale, which turns money paid by the customer into sales
+     *
+     * @param amount the price of the sale (in centavos)
+     */
+    public void sale(long amount) {
+        post(CUSTOMERS, SALES, amount);
+    }
+
+    /**
+     * Records money put into the cash box by the operator
+     *
+     * @param index    the index of the denomination
+     * @param quantity the number of pieces
+     */
+    public void replenish(int index, int quantity) {
+        movedPieces[REPLENISH * denominations.length + index] += quantity;
+        cashPieces[index] += quantity;
+        post(CASH_BOX, FLOAT, denominations[index] * quantity);
+    }
+
+    /**
+     * Records sales collected from the cash box by the operator
+     *
+     * @param pieces the pieces of each denomination collected
+     */
+    public void collect(int[] pieces) {
+        post(SALES, CASH_BOX, movePieces(COLLECT, pieces, -1));
+    }
+
+    /**
+     * Gets the balance of an account. Accounts the machine owes (CUSTOMERS,
+     * SALES and FLOAT) are credit accounts, so their balance is negated.
+     *
+     * @param account the account
+     * @return the balance (in centavos)
+     */
+    public long getBalance(int account) {
+        return account == CASH_BOX ? balances[account] : -balances[account];
+    }
+
+    /**
+     * Gets the pieces of a denomination the cash box should hold
+     *
+     * @param index the index of the denomination
+     * @return the number of pieces
+     */
+    public long getCashPieces(int index) {
+        return cashPieces[index];
+    }
+
+    /**
+     * Gets the number of entries posted since the ledger was opened
+     *
+     * @return the number of entries
+     */
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Checks the ledger against the money and sales of the machine
+     *
+     * @param quantities the pieces of each denomination in the machine
+     * @param balance    the balance of the machine (in centavos)
+     * @param sales      the sales not yet collected (in centavos)
+     * @return true if the machine holds what the ledger says it should
+     */
+    public boolean isReconciled(int[] quantities, long balance, long sales) {
+        return countDifferences(quantities, balance, sales) == 0;
+    }
+
+    /**
+     * Reconciles the ledger against the money and sales of the machine,
+     * denomination by denomination
+     *
+     * @param quantities the pieces of each denomination in the machine
+     * @param balance    the balance of the machine (in centavos)
+     * @param sales      the sales not yet collected (in centavos)
+     * @param escrowed   the money held in escrow for sales not made yet, which
+     *                   is not in the cash box (in centavos)
+     * @return the reconciliation report
+     */
+    public String reconcile(int[] quantities, long balance, long sales, long escrowed) {
+        StringBuilder report = new StringBuilder();
+        report.append(TITLE_BORDER);
+        report.append("│                                   CASH RECONCILIATION"
+                + "                                     │\n");
+        report.append(TITLE_BORDER);
+        report.append("| Piece   |");
+        for (String name : MOVEMENT_NAMES) {
+            report.append(String.format(" %-11s|", name));
+        }
+        report.append(" Counted | Diff |\n");
+        for (int i = 0; i < denominations.length; i++) {
+            report.append(String.format("| P%-6s |", Money.format(denominations[i])));
+            for (int movement = 0; movement < MOVEMENT_COUNT; movement++) {
+                report.append(String.format(" %-11d|", Math.abs(movedPieces[movement * denominations.length + i])));
+            }
+            report.append(String.format(" %-7d | %-4d |\n", quantities[i], quantities[i] - cashPieces[i]));
+        }
+        report.append(BORDER);
+        report.append(line("Cash box (ledger)", getBalance(CASH_BOX)));
+        report.append(line("Cash box (machine balance)", balance));
+        report.append(line("Sales to collect (ledger)", getBalance(SALES)));
+        report.append(line("Sales to collect (machine)", sales));
+        report.append(line("Float", getBalance(FLOAT)));
+        report.append(line("Customer money not spent", getBalance(CUSTOMERS)));
+        report.append(line("In escrow (not in cash box)", escrowed));
+        report.append(BORDER);
+
+        int differences = countDifferences(quantities, balance, sales);
+        String result = entryCount + " entries, " + (differences == 0 ? "the machine reconciles with the ledger."
+                : differences + " difference(s) with the ledger.");
+        report.append(String.format("| %-89s |\n", result));
+        report.append(BORDER);
+        return report.toString();
+    }
+
+    /**
+     * Formats one amount of the reconciliation report
+     *
+     * @param label  the label of the amount
+     * @param amount the amount (in centavos)
+     * @return the line of the report
+     */
+    private static String line(String label, long amount) {
+        return String.format("| %-30s | P%-55s |\n", label, Money.format(amount));
+    }
+
+    /**
+     * Counts the denominations and totals where the machine differs from the
+     * ledger
+     *
+     * @param quantities the pieces of each denomination in the machine
+     * @param balance    the balance of the machine (in centavos)
+     * @param sales      the sales not yet collected (in centavos)
+     * @return the number of differences
+     */
+    private int countDifferences(int[] quantities, long balance, long sales) {
+        int differences = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            if (quantities[i] != cashPieces[i]) {
+                differences++;
+            }
+        }
+        if (balance != getBalance(CASH_BOX)) {
+            differences++;
+        }
+        if (sales != getBalance(SALES)) {
+            differences++;
+        }
+        return differences;
+    }
+
+    /**
+     * Counts pieces moved into or out of the cash box
+     *
+     * @param movement the kind of movement
+     * @param pieces   the pieces of each denomination moved
+     * @param sign     1 if the pieces go into the cash box, -1 if they go out
+     * @return the value of the pieces (in centavos)
+     */
+    private long movePieces(int movement, int[] pieces, int sign) {
+        long amount = 0;
+        int offset = movement * denominations.length;
+        for (int i = 0; i < denominations.length; i++) {
+            movedPieces[offset + i] += sign * pieces[i];
+            cashPieces[i] += sign * pieces[i];
+            amount += denominations[i] * pieces[i];
+        }
+        return amount;
+    }
+
+    /**
+     * Posts an entry, debiting one account and crediting another by the same
+     * amount, so the balances of all accounts always add up to zero
+     *
+     * @param debit  the account debited
+     * @param credit the account credited
+     * @param amount the amount (in centavos)
+     */
+    private void post(int debit, int credit, long amount) {
+        balances[debit] += amount;
+        balances[credit] -= amount;
+        entryCount++;
+    }
+}
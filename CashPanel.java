@@ -0,0 +1,214 @@
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dialog;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * This class represents the panel where a user inserts money for a purchase
+ * in the GUI. Every denomination has a button that inserts one piece of it;
+ * the panel shows the running total and whether the machine can give the
+ * change after every piece. The same panel is used by every purchase frame,
+ * usually through askPayment.
+ */
+public class CashPanel extends JPanel {
+    private CashInsertion cash;
+    private JButton[] denominationButtons;
+    private JLabel totalLabel;
+    private JLabel statusLabel;
+    private ChangeListener changeListener;
+    private int status;
+
+    /**
+     * Constructs the cash panel of a purchase
+     *
+     * @param vendingService the vending service the purchase is made with
+     * @param totalPrice     the total price of the purchase (in centavos)
+     */
+    public CashPanel(VendingService vendingService, long totalPrice) {
+        super(new BorderLayout(0, 10));
+        this.cash = new CashInsertion(vendingService, totalPrice);
+        this.changeListener = null;
+
+        setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+
+        JLabel priceLabel = new JLabel("Total Price: PHP " + Money.format(totalPrice));
+        add(priceLabel, BorderLayout.NORTH);
+
+        long[] denominations = cash.getDenominations();
+        denominationButtons = new JButton[denominations.length];
+        JPanel buttonPanel = new JPanel(new GridLayout(2, 0, 5, 5));
+        for (int i = 0; i < denominations.length; i++) {
+            int index = i;
+            denominationButtons[i] = new JButton();
+            denominationButtons[i].addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    cash.insert(index, 1);
+                    update();
+                }
+            });
+            buttonPanel.add(denominationButtons[i]);
+        }
+        add(buttonPanel, BorderLayout.CENTER);
+
+        JButton clearButton = new JButton("Take Back");
+        clearButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                cash.clear();
+                update();
+            }
+        });
+
+        totalLabel = new JLabel();
+        statusLabel = new JLabel();
+        JPanel statusPanel = new JPanel(new GridLayout(3, 1));
+        statusPanel.add(totalLabel);
+        statusPanel.add(statusLabel);
+        JPanel clearPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        clearPanel.add(clearButton);
+        statusPanel.add(clearPanel);
+        add(statusPanel, BorderLayout.SOUTH);
+
+        update();
+    }
+
+    /**
+     * Sets the listener told every time the money inserted changes
+     *
+     * @param changeListener the listener, or null
+     */
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Checks if the money inserted can be used for the purchase
+     *
+     * @return true if the payment covers the price and the change can be given
+     */
+    public boolean isReady() {
+        return status == CashInsertion.READY;
+    }
+
+    /**
+     * Gets the money inserted
+     *
+     * @return the number of pieces of each denomination
+     */
+    public int[] getPayment() {
+        return cash.getPayment();
+    }
+
+    /**
+     * Gets the escrow holding the money inserted, to be given to the purchase
+     *
+     * @return the escrow
+     */
+    public CoinEscrow getEscrow() {
+        return cash.getEscrow();
+    }
+
+    /**
+     * Cancels the payment, giving back the money inserted
+     *
+     * @return the pieces given back
+     */
+    public int[] cancel() {
+        return cash.cancel();
+    }
+
+    /**
+     * Shows the pieces inserted, the running total and the status of the payment
+     */
+    private void update() {
+        long[] denominations = cash.getDenominations();
+        for (int i = 0; i < denominations.length; i++) {
+            String text = "PHP " + denominations[i] / Money.CENTAVOS_PER_PESO;
+            if (cash.getCount(i) > 0) {
+                text += " (" + cash.getCount(i) + ")";
+            }
+            denominationButtons[i].setText(text);
+        }
+
+        status = cash.getStatus();
+        totalLabel.setText("Inserted: PHP " + Money.format(cash.getTotal()));
+        statusLabel.setText(cash.getStatusMessage(status));
+
+        if (changeListener != null) {
+            changeListener.stateChanged(new ChangeEvent(this));
+        }
+    }
+
+    /**
+     * Asks for the payment of a purchase in a dialog. The Pay button is only
+     * enabled once the money inserted covers the price and the change can be
+     * given.
+     *
+     * @param parent         the component the dialog is shown over
+     * @param vendingService the vending service the purchase is made with
+     * @param totalPrice     the total price of the purchase (in centavos)
+     * @return the escrow holding the money inserted, or null if the payment was
+     *         cancelled and the money given back
+     */
+    public static CoinEscrow askPayment(Component parent, VendingService vendingService, long totalPrice) {
+        Window owner = parent instanceof Window ? (Window) parent : SwingUtilities.getWindowAncestor(parent);
+        JDialog dialog = new JDialog(owner, "Payment", Dialog.ModalityType.APPLICATION_MODAL);
+        CashPanel cashPanel = new CashPanel(vendingService, totalPrice);
+        CoinEscrow[] escrow = new CoinEscrow[1];
+
+        JButton payButton = new JButton("Pay");
+        payButton.setEnabled(cashPanel.isReady());
+        payButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                escrow[0] = cashPanel.getEscrow();
+                dialog.dispose();
+            }
+        });
+        cashPanel.setChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                payButton.setEnabled(cashPanel.isReady());
+            }
+        });
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                dialog.dispose();
+            }
+        });
+
+        JPanel actionPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        actionPanel.add(payButton);
+        actionPanel.add(cancelButton);
+
+        dialog.setLayout(new BorderLayout());
+        dialog.add(cashPanel, BorderLayout.CENTER);
+        dialog.add(actionPanel, BorderLayout.SOUTH);
+        dialog.getRootPane().setDefaultButton(payButton);
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.pack();
+        dialog.setLocationRelativeTo(parent);
+        dialog.setVisible(true);
+
+        if (escrow[0] == null) {
+            cashPanel.cancel();
+        }
+        return escrow[0];
+    }
+}
@@ -0,0 +1,48 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class represents the Flight Recorder event of a check of whether the
+ * machine can give the change of a payment. Its duration includes the wait
+ * for the money lock, so a recording shows when purchases are held up by one
+ * another.
+ */
+@Name("vending.ChangeCheck")
+@Label("Change Check")
+@Category({ "Vending Machine", "Change" })
+@Description("A check of whether the change of a payment can be provided")
+class ChangeCheckEvent extends jdk.jfr.Event {
+    @Label("Amount Paid")
+    @Description("The amount paid (in centavos)")
+    private long amountPaid;
+
+    @Label("Total Price")
+    @Description("The total price of the purchase (in centavos)")
+    private long totalPrice;
+
+    @Label("Payment Counted")
+    @Description("Whether the pieces of the payment were counted with the machine's money")
+    private boolean paymentCounted;
+
+    @Label("Possible")
+    @Description("Whether the change can be provided")
+    private boolean possible;
+
+    /**
+     * Fills in the event with a change check and its result
+     *
+     * @param amount         the amount paid (in centavos)
+     * @param totalPrice     the total price of the purchase (in centavos)
+     * @param paymentCounted true if the pieces of the payment were counted with
+     *                       the machine's money
+     * @param possible       true if the change can be provided
+     */
+    void set(long amount, long totalPrice, boolean paymentCounted, boolean possible) {
+        this.amountPaid = amount;
+        this.totalPrice = totalPrice;
+        this.paymentCounted = paymentCounted;
+        this.possible = possible;
+    }
+}
@@ -0,0 +1,464 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the change-making engine of the vending machine. It
+ * finds an exact payout plan for a change amount using only the denominations
+ * currently stocked in the machine's money. It also keeps a table of every
+ * change amount the current money can pay out, so checking an amount is a
+ * single lookup. The table only goes up to TABLE_UNITS units of change, so its
+ * size does not grow with the money in the machine; larger amounts are checked
+ * with a search instead.
+ * A change worth more than all the money can never be paid out, so it is
+ * rejected before any search. The search itself only goes up to SEARCH_UNITS
+ * units of change; a larger change can only be paid out with the greedy
+ * payout. Its buffers are dropped after a search past TABLE_UNITS, so one
+ * large change does not keep them large.
+ */
+public class ChangeMaker {
+    private static final int TABLE_UNITS = 1 << 14;
+    private static final int TABLE_WORDS = TABLE_UNITS / 64;
+    private static final int SEARCH_UNITS = 1 << 20;
+
+    private Money money;
+    private long unit;
+    private int[] plan;
+
+    // the money with the pieces of a payment counted, for planWith
+    private int[] withPieces;
+
+    // reusable scratch buffers of the bounded-coin search
+    private int[] stamp;
+    private int[] via;
+    private int[] count;
+    private int epoch;
+
+    // bit n is set if n units of change can be paid out
+    private long[] payable;
+    private boolean payableValid;
+    private long maxPayableChange;
+
+    // cached result of the last search
+    private boolean valid;
+    private long lastAmount;
+    private boolean lastResult;
+
+    /**
+     * This is the constructor of a change maker given the money it pays out from
+     *
+     * @param money the money (denominations and quantities) of the machine
+     */
+    public ChangeMaker(Money money) {
+        this.money = money;
+        this.unit = commonUnit(money.getDenominations());
+        this.plan = new int[money.getDenominations().length];
+        this.withPieces = new int[money.getDenominations().length];
+        this.stamp = new int[0];
+        this.via = new int[0];
+        this.count = new int[0];
+        this.epoch = 0;
+        this.payable = new long[1];
+        this.payableValid = false;
+        this.valid = false;
+    }
+
+    /**
+     * Marks the cached plan and table as outdated. This must be called whenever
+     * the quantities of the money change, except when pieces are only added (see
+     * addQuantity).
+     */
+    public void invalidate() {
+        valid = false;
+        payableValid = false;
+    }
+
+    /**
+     * Updates the table after pieces of a denomination have been added to the
+     * money. Only the new pieces are added to the table instead of rebuilding it.
+     *
+     * @param index    the index of the denomination in the denominations array
+     * @param quantity the number of pieces added
+     */
+    public void addQuantity(int index, int quantity) {
+        valid = false;
+        if (payableValid && quantity > 0) {
+            addPieces((int) (money.getDenominations()[index] / unit), quantity);
+            maxPayableChange = findMaxPayableChange();
+        }
+    }
+
+    /**
+     * Checks if the given change amount can be paid out exactly
+     *
+     * @param amount the change to be paid out (in centavos)
+     * @return true if the change can be paid out exactly, false if not
+     */
+    public boolean isPayable(long amount) {
+        if (amount < 0 || amount % unit != 0) {
+            return false;
+        }
+
+        long units = amount / unit;
+        if (units >= TABLE_UNITS) {
+            return plan(amount);
+        }
+        ensurePayable();
+        return units < (long) payable.length * 64 && (payable[(int) (units >>> 6)] & (1L << units)) != 0;
+    }
+
+    /**
+     * Finds an exact payout plan for the given change amount as if the given
+     * pieces were added to the money, without adding them. The pieces of a
+     * payment in escrow can be part of its change, so they are counted too. The
+     * money alone is tried first; the pieces are only searched with if the money
+     * cannot pay the change, in a copy of the quantities, so the quantities of
+     * the money never count pieces that are not in the machine. The plan found
+     * can be read with getPlan, but is not cached, since the money it was made
+     * from is not the current money.
+     *
+     * @param amount the change to be paid out (in centavos)
+     * @param pieces the pieces to count with the money, in the order of the
+     *               denominations array
+     * @return true if the change can be paid out exactly, false if not
+     */
+    public boolean planWith(long amount, int[] pieces) {
+        if (isPayable(amount) && plan(amount)) {
+            return true;
+        }
+        if (amount < 0 || amount % unit != 0) {
+            return false;
+        }
+
+        int[] quantities = money.getQuantities();
+        for (int i = 0; i < quantities.length; i++) {
+            withPieces[i] = (int) Math.min((long) quantities[i] + pieces[i], Integer.MAX_VALUE);
+        }
+        valid = false;
+        return findPlan(amount, withPieces);
+    }
+
+    /**
+     * Gets the largest change amount such that every change up to it can be paid
+     * out exactly. Any payment that leaves at most this much change is sure to be
+     * accepted. The amount is never more than the table covers.
+     *
+     * @return the largest safe change amount (in centavos)
+     */
+    public long getMaxPayableChange() {
+        ensurePayable();
+        return maxPayableChange;
+    }
+
+    /**
+     * Finds an exact payout plan for the given change amount. The greedy payout is
+     * tried first, and if it fails because a denomination ran out, a bounded-coin
+     * search over the whole inventory is done instead, as long as the change is
+     * at most SEARCH_UNITS units. The result stays cached
+     * until the amount or the money changes, so calling this again before paying
+     * out does not redo the search.
+     *
+     * @param amount the change to be paid out (in centavos)
+     * @return true if the change can be paid out exactly, false if not
+     */
+    public boolean plan(long amount) {
+        if (valid && amount == lastAmount) {
+            return lastResult;
+        }
+
+        lastAmount = amount;
+        lastResult = findPlan(amount, money.getQuantities());
+        valid = true;
+        return lastResult;
+    }
+
+    /**
+     * Gets the payout plan found by the last call of plan. The array is reused by
+     * the next search, so it should not be kept.
+     *
+     * @return the number of pieces of each denomination to pay out, in the order
+     *         of the denominations array
+     */
+    public int[] getPlan() {
+        return plan;
+    }
+
+    /**
+     * Finds an exact payout plan for the given change amount from the given
+     * quantities, as described in plan
+     *
+     * @param amount     the change to be paid out (in centavos)
+     * @param quantities the pieces of each denomination to pay out from
+     * @return true if the change can be paid out exactly, false if not
+     */
+    private boolean findPlan(long amount, int[] quantities) {
+        boolean found = amount >= 0 && amount % unit == 0 && amount <= getTotal(quantities)
+                && (planGreedy(amount, quantities)
+                        || amount / unit <= SEARCH_UNITS && planBounded(Math.toIntExact(amount / unit), quantities));
+        if (!found) {
+            clearPlan();
+        }
+        return found;
+    }
+
+    /**
+     * Gets the value of the given pieces
+     *
+     * @param quantities the pieces of each denomination
+     * @return the value of every piece of every denomination (in centavos)
+     */
+    private long getTotal(int[] quantities) {
+        long[] denominations = money.getDenominations();
+        long total = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            total += denominations[i] * quantities[i];
+        }
+        return total;
+    }
+
+    /**
+     * Tries the greedy payout, taking as many of the largest denomination as
+     * possible first
+     *
+     * @param amount     the change to be paid out (in centavos)
+     * @param quantities the pieces of each denomination to pay out from
+     * @return true if greedy payout gives the exact amount, false if not
+     */
+    private boolean planGreedy(long amount, int[] quantities) {
+        long[] denominations = money.getDenominations();
+        long remainingAmount = amount;
+
+        for (int i = denominations.length - 1; i >= 0; i--) {
+            int numDenominationNeeded = (int) Math.min(remainingAmount / denominations[i], quantities[i]);
+            plan[i] = numDenominationNeeded;
+            remainingAmount -= numDenominationNeeded * denominations[i];
+        }
+
+        return remainingAmount == 0;
+    }
+
+    /**
+     * Searches every amount up to the change that can be formed with the available
+     * quantities, one denomination at a time. Each reached amount remembers which
+     * denomination reached it and how many pieces of it were used, which is enough
+     * to walk back the exact payout plan. Amounts are counted in units of the
+     * smallest step between denominations, so the buffers stay small.
+     *
+     * @param amount     the change to be paid out (in units), at most SEARCH_UNITS
+     * @param quantities the pieces of each denomination to pay out from
+     * @return true if the change can be paid out exactly, false if not
+     */
+    private boolean planBounded(int amount, int[] quantities) {
+        ensureCapacity(amount + 1);
+        try {
+            return search(amount, quantities);
+        } finally {
+            if (stamp.length > TABLE_UNITS + 1) {
+                releaseBuffers();
+            }
+        }
+    }
+
+    /**
+     * Does the bounded-coin search of planBounded in buffers large enough for
+     * the amount
+     *
+     * @param amount     the change to be paid out (in units)
+     * @param quantities the pieces of each denomination to pay out from
+     * @return true if the change can be paid out exactly, false if not
+     */
+    private boolean search(int amount, int[] quantities) {
+        long[] denominations = money.getDenominations();
+
+
+        nextEpoch();
+        stamp[0] = epoch;
+        via[0] = -1;
+        count[0] = 0;
+
+        for (int i = denominations.length - 1; i >= 0 && stamp[amount] != epoch; i--) {
+            int denomination = (int) (denominations[i] / unit);
+            int available = quantities[i];
+            if (available <= 0) {
+                continue;
+            }
+
+            for (int a = denomination; a <= amount; a++) {
+                int from = a - denomination;
+                if (stamp[a] != epoch && stamp[from] == epoch) {
+                    int used = via[from] == i ? count[from] : 0;
+                    if (used < available) {
+                        stamp[a] = epoch;
+                        via[a] = i;
+                        count[a] = used + 1;
+                    }
+                }
+            }
+        }
+
+        if (stamp[amount] != epoch) {
+            return false;
+        }
+
+        clearPlan();
+        int remainingAmount = amount;
+        while (remainingAmount > 0) {
+            int i = via[remainingAmount];
+            plan[i] += count[remainingAmount];
+            remainingAmount -= count[remainingAmount] * (int) (denominations[i] / unit);
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the table from the current quantities if it is outdated
+     */
+    private void ensurePayable() {
+        if (payableValid) {
+            return;
+        }
+
+        long[] denominations = money.getDenominations();
+        int[] quantities = money.getQuantities();
+        Arrays.fill(payable, 0);
+        payable[0] = 1;
+        for (int i = 0; i < denominations.length; i++) {
+            addPieces((int) (denominations[i] / unit), quantities[i]);
+        }
+        maxPayableChange = findMaxPayableChange();
+        payableValid = true;
+    }
+
+    /**
+     * Adds pieces of one denomination to the table. The pieces are added in groups
+     * of 1, 2, 4, ... so that every count from 0 up to the quantity is covered
+     * with only a few passes over the table.
+     *
+     * @param denomination the denomination (in units)
+     * @param quantity     the number of pieces added
+     */
+    private void addPieces(int denomination, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+
+        long highestBit = 0;
+        for (int i = payable.length - 1; i >= 0; i--) {
+            if (payable[i] != 0) {
+                highestBit = i * 64L + 63 - Long.numberOfLeadingZeros(payable[i]);
+                break;
+            }
+        }
+        long neededWords = Math.min((highestBit + (long) denomination * quantity) / 64 + 1, TABLE_WORDS);
+        if (neededWords > payable.length) {
+            payable = Arrays.copyOf(payable, (int) Math.min(Math.max(neededWords, payable.length * 2L), TABLE_WORDS));
+        }
+
+        // once a group reaches past the table, larger groups add nothing to it
+        int group = 1;
+        while (quantity > 0 && (long) denomination * group < TABLE_UNITS) {
+            int pieces = Math.min(group, quantity);
+            shiftOr((long) denomination * pieces);
+            quantity -= pieces;
+            group *= 2;
+        }
+    }
+
+    /**
+     * Sets every bit n + shift for which bit n is already set
+     *
+     * @param shift the number of units to shift by
+     */
+    private void shiftOr(long shift) {
+        int wordShift = (int) (shift >>> 6);
+        int bitShift = (int) (shift & 63);
+
+        for (int i = payable.length - 1; i >= wordShift; i--) {
+            long shifted = payable[i - wordShift] << bitShift;
+            if (bitShift != 0 && i - wordShift - 1 >= 0) {
+                shifted |= payable[i - wordShift - 1] >>> (64 - bitShift);
+            }
+            payable[i] |= shifted;
+        }
+    }
+
+    /**
+     * Finds the largest change amount below the first amount that cannot be paid
+     * out
+     *
+     * @return the largest safe change amount (in centavos)
+     */
+    private long findMaxPayableChange() {
+        for (int i = 0; i < payable.length; i++) {
+            if (payable[i] != -1L) {
+                return (i * 64L + Long.numberOfTrailingZeros(~payable[i]) - 1) * unit;
+            }
+        }
+        return (payable.length * 64L - 1) * unit;
+    }
+
+    /**
+     * Finds the greatest common divisor of the denominations, which is the smallest
+     * step between two amounts that can be paid out
+     *
+     * @param denominations the denominations of the money (in centavos)
+     * @return the common unit of the denominations (in centavos)
+     */
+    private static long commonUnit(long[] denominations) {
+        long unit = 0;
+        for (long denomination : denominations) {
+            long a = unit;
+            long b = denomination;
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            unit = a;
+        }
+        return unit == 0 ? 1 : unit;
+    }
+
+    /**
+     * Grows the scratch buffers so that they can hold the given number of amounts
+     *
+     * @param size the number of amounts needed
+     */
+    private void ensureCapacity(int size) {
+        if (stamp.length < size) {
+            int newSize = Math.min(Math.max(size, stamp.length * 2), SEARCH_UNITS + 1);
+            stamp = new int[newSize];
+            via = new int[newSize];
+            count = new int[newSize];
+            epoch = 0;
+        }
+    }
+
+    /**
+     * Drops the scratch buffers, so they are only as large as the next search
+     * needs
+     */
+    private void releaseBuffers() {
+        stamp = new int[0];
+        via = new int[0];
+        count = new int[0];
+        epoch = 0;
+    }
+
+    /**
+     * Starts a new search. Amounts stamped by older searches are treated as not
+     * reached, so the scratch buffers never have to be cleared.
+     */
+    private void nextEpoch() {
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            epoch = 0;
+        }
+        epoch++;
+    }
+
+    /**
+     * Sets the count of every denomination in the plan to zero
+     */
+    private void clearPlan() {
+        Arrays.fill(plan, 0);
+    }
+}
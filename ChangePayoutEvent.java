@@ -0,0 +1,45 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class represents the Flight Recorder event of change being calculated
+ * and paid out, including the printing of its breakdown.
+ */
+@Name("vending.ChangePayout")
+@Label("Change Payout")
+@Category({ "Vending Machine", "Change" })
+@Description("Change calculated and paid out")
+class ChangePayoutEvent extends jdk.jfr.Event {
+    @Label("Change")
+    @Description("The change to be paid out (in centavos)")
+    private long change;
+
+    @Label("Pieces")
+    @Description("The number of pieces paid out")
+    private int pieceCount;
+
+    @Label("Paid")
+    @Description("Whether the change could be provided")
+    private boolean paid;
+
+    /**
+     * Fills in the event with the change and the pieces paid out
+     *
+     * @param change       the change to be paid out (in centavos)
+     * @param changePieces the pieces of each denomination paid out, or null if
+     *                     the change could not be provided
+     */
+    void set(long change, int[] changePieces) {
+        int pieceCount = 0;
+        if (changePieces != null) {
+            for (int count : changePieces) {
+                pieceCount += count;
+            }
+        }
+        this.change = change;
+        this.pieceCount = pieceCount;
+        this.paid = changePieces != null;
+    }
+}
@@ -0,0 +1,62 @@
+import java.awt.Component;
+import java.awt.Cursor;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+
+/**
+ * This class represents a checkout run in the background for a frame of the
+ * GUI. The purchase (taking the payment, dispensing and giving the change, and
+ * writing the journal) runs on a worker thread, so the Event Dispatch Thread
+ * is never blocked by it; the frame is disabled meanwhile and the result is
+ * given back on the Event Dispatch Thread.
+ */
+public class CheckoutWorker extends SwingWorker<VendingResult, Void> {
+    private Component frame;
+    private Callable<VendingResult> checkout;
+    private Consumer<VendingResult> onResult;
+
+    /**
+     * This is the constructor of a checkout worker
+     *
+     * @param frame    the frame disabled while the checkout runs
+     * @param checkout the checkout, run on a worker thread
+     * @param onResult what to do with the result, run on the Event Dispatch
+     *                 Thread
+     */
+    public CheckoutWorker(Component frame, Callable<VendingResult> checkout, Consumer<VendingResult> onResult) {
+        this.frame = frame;
+        this.checkout = checkout;
+        this.onResult = onResult;
+    }
+
+    /**
+     * Disables the frame and starts the checkout. This must be called on the
+     * Event Dispatch Thread.
+     */
+    public void start() {
+        frame.setEnabled(false);
+        frame.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        execute();
+    }
+
+    @Override
+    protected VendingResult doInBackground() throws Exception {
+        return checkout.call();
+    }
+
+    @Override
+    protected void done() {
+        frame.setCursor(Cursor.getDefaultCursor());
+        frame.setEnabled(true);
+        try {
+            onResult.accept(get());
+        } catch (InterruptedException | ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            JOptionPane.showMessageDialog(frame, "Purchase failed: " + cause.getMessage(), "Purchase Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+}
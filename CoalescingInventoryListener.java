@@ -0,0 +1,57 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * This class represents an inventory listener that hands events over to
+ * another listener on an executor, such as the Event Dispatch Thread. Events
+ * of the same slot that arrive before the executor gets to them are merged
+ * into one, so a burst of sales of a slot makes a single update of the view,
+ * and only one task is waiting on the executor at a time.
+ */
+public class CoalescingInventoryListener implements InventoryListener {
+    private InventoryListener target;
+    private Executor executor;
+    private Map<Integer, InventoryEvent> pending;
+    private boolean scheduled;
+
+    /**
+     * This is the constructor of a coalescing inventory listener
+     *
+     * @param target   the listener told about the merged events
+     * @param executor the executor the target is called on
+     */
+    public CoalescingInventoryListener(InventoryListener target, Executor executor) {
+        this.target = target;
+        this.executor = executor;
+        this.pending = new LinkedHashMap<>();
+        this.scheduled = false;
+    }
+
+    @Override
+    public void slotChanged(InventoryEvent event) {
+        synchronized (this) {
+            pending.merge(event.getSlotNumber(), event, InventoryEvent::merge);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        executor.execute(this::deliver);
+    }
+
+    /**
+     * Tells the target about every pending event, on the executor
+     */
+    private void deliver() {
+        Map<Integer, InventoryEvent> events;
+        synchronized (this) {
+            events = pending;
+            pending = new LinkedHashMap<>();
+            scheduled = false;
+        }
+        for (InventoryEvent event : events.values()) {
+            target.slotChanged(event);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * This class represents the escrow of a purchase: the money a customer has
+ * inserted that is not the machine's yet. The pieces are held apart from the
+ * machine's money while the customer is paying, so the coin inventory only
+ * ever counts money that belongs to the machine. When the purchase is made the
+ * pieces are counted with the machine's money to pay the change (so the change
+ * can come from the coins just inserted) and are added to it only if the sale
+ * succeeds; if the sale fails or the customer cancels, every piece is given
+ * back.
+ * An escrow is opened by the vending machine and can be used for one purchase.
+ */
+public class CoinEscrow {
+    public static final int OPEN = 0;
+    public static final int CLOSED = 1;
+    public static final int COMMITTED = 2;
+    public static final int RETURNED = 3;
+
+    private long[] denominations;
+    private int[] pieces;
+    private long total;
+    private int state;
+
+    /**
+     * This is the constructor of an empty escrow. Escrows are opened with the
+     * vending machine's openEscrow.
+     *
+     * @param denominations the denominations of the machine (in centavos)
+     */
+    CoinEscrow(long[] denominations) {
+        this.denominations = denominations;
+        this.pieces = new int[denominations.length];
+        this.total = 0;
+        this.state = OPEN;
+    }
+
+    /**
+     * Inserts pieces of a denomination
+     *
+     * @param index the index of the denomination
+     * @param count the number of pieces inserted
+     * @throws IllegalArgumentException if the count is negative
+     * @throws IllegalStateException    if the escrow is no longer open
+     */
+    public synchronized void insert(int index, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid number of pieces: " + count);
+        }
+        checkOpen();
+        pieces[index] += count;
+        total += denominations[index] * count;
+    }
+
+    /**
+     * Gives back one piece of a denomination to the customer
+     *
+     * @param index the index of the denomination
+     * @return true if a piece was given back, false if none was inserted
+     * @throws IllegalStateException if the escrow is no longer open
+     */
+    public synchronized boolean remove(int index) {
+        checkOpen();
+        if (pieces[index] == 0) {
+            return false;
+        }
+        pieces[index]--;
+        total -= denominations[index];
+        return true;
+    }
+
+    /**
+     * Gives back every piece to the customer, leaving the escrow open and empty
+     *
+     * @return the pieces given back
+     * @throws IllegalStateException if the escrow is no longer open
+     */
+    public synchronized int[] clear() {
+        checkOpen();
+        int[] returned = pieces;
+        pieces = new int[denominations.length];
+        total = 0;
+        return returned;
+    }
+
+    /**
+     * Gets the pieces held
+     *
+     * @return the number of pieces of each denomination
+     */
+    public synchronized int[] getPieces() {
+        return pieces.clone();
+    }
+
+    /**
+     * Gets the number of pieces of a denomination held
+     *
+     * @param index the index of the denomination
+     * @return the number of pieces
+     */
+    public synchronized int getCount(int index) {
+        return pieces[index];
+    }
+
+    /**
+     * Gets the total of the pieces held
+     *
+     * @return the total (in centavos)
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the state of the escrow
+     *
+     * @return OPEN while money can be inserted, CLOSED while its purchase is
+     *         being made, COMMITTED once the money is the machine's, or RETURNED
+     *         once the money has been given back
+     */
+    public synchronized int getState() {
+        return state;
+    }
+
+    /**
+     * Closes the escrow for its purchase, so no money can be inserted or taken
+     * back while the purchase is made
+     *
+     * @return true if the escrow was closed, false if it was not open
+     */
+    synchronized boolean close() {
+        if (state != OPEN) {
+            return false;
+        }
+        state = CLOSED;
+        return true;
+    }
+
+    /**
+     * Marks the money as the machine's after its purchase succeeded
+     */
+    synchronized void commit() {
+        state = COMMITTED;
+    }
+
+    /**
+     * Gives back every piece after the purchase failed or was cancelled
+     *
+     * @return the pieces given back, or no pieces if the money was already
+     *         committed or given back
+     */
+    synchronized int[] release() {
+        if (state == COMMITTED || state == RETURNED) {
+            return new int[denominations.length];
+        }
+        state = RETURNED;
+        return pieces.clone();
+    }
+
+    /**
+     * Checks that money can still be inserted or taken back
+     *
+     * @throws IllegalStateException if the escrow is no longer open
+     */
+    private void checkOpen() {
+        if (state != OPEN) {
+            throw new IllegalStateException("The payment is no longer open");
+        }
+    }
+}
@@ -13,8 +13,12 @@ import java.util.Map;
  * the GUI of the vending machine application.
  */
 public class CustomMealFrame extends JFrame {
+    private VendingService vendingService;
     private RegularVendingMachine vendingMachine;
     private List<ItemButton> itemButtons; // List to store the item buttons
+    private Map<Integer, ItemButton> slotButtons; // Item button of each slot number
+    private JPanel itemButtonsPanel; // Panel holding the item buttons in slot order
+    private InventoryListener inventoryListener;
     private List<ItemButton> selectedItems; // List to store the selected items
     private DefaultTableModel tableModel; // Table model to hold selected items
     private JTable selectedItemsTable; // Table to display selected items
@@ -26,11 +30,13 @@ public class CustomMealFrame extends JFrame {
     /**
      * Constructs the Custom Meal Frame for the vending machine's GUI.
      * 
-     * @param vendingMachine the Regular Vending Machine instance used
+     * @param vendingService the vending service used to buy the meal
      */
-    public CustomMealFrame(RegularVendingMachine vendingMachine) {
-        this.vendingMachine = vendingMachine;
+    public CustomMealFrame(VendingService vendingService) {
+        this.vendingService = vendingService;
+        this.vendingMachine = vendingService.getVendingMachine();
         this.itemButtons = new ArrayList<>();
+        this.slotButtons = new HashMap<>();
         this.selectedItems = new ArrayList<>();
         this.itemQuantities = new HashMap<>();
 
@@ -45,44 +51,99 @@ public class CustomMealFrame extends JFrame {
         pack();
         setLocationRelativeTo(null);
 
+        // Show the changes of a slot on its button only, merging the changes made
+        // before the Event Dispatch Thread gets to them
+        inventoryListener = new CoalescingInventoryListener(new InventoryListener() {
+            @Override
+            public void slotChanged(InventoryEvent event) {
+                refreshSlot(event);
+            }
+        }, SwingUtilities::invokeLater);
+        vendingMachine.addInventoryListener(inventoryListener);
+    }
+
+    /**
+     * Stops listening to the vending machine and closes the frame
+     */
+    @Override
+    public void dispose() {
+        vendingMachine.removeInventoryListener(inventoryListener);
+        super.dispose();
+    }
+
+    /**
+     * Shows the change of a slot on its button, adding the button if the slot has
+     * just been stocked. The totals are updated if the price of a selected item
+     * changed.
+     * 
+     * @param event the change of the slot
+     */
+    private void refreshSlot(InventoryEvent event) {
+        int slotNumber = event.getSlotNumber();
+        if (event.getItem() == null) {
+            return;
+        }
+
+        ItemButton itemButton = slotButtons.get(slotNumber);
+        if (itemButton != null) {
+            itemButton.setItem(event.getItem(), event.getPrice(), event.getQuantity());
+            if (event.isChanged(InventoryEvent.PRICE) && selectedItems.contains(itemButton)) {
+                updateSelectedItemsTable();
+            }
+            return;
+        }
+
+        // the buttons are in slot order, so the new one goes after those of lower slots
+        int index = 0;
+        for (int otherSlot : slotButtons.keySet()) {
+            if (otherSlot < slotNumber) {
+                index++;
+            }
+        }
+        itemButtonsPanel.add(createItemButton(slotNumber, event.getItem(), event.getQuantity()), index);
+        itemButtonsPanel.revalidate();
+        itemButtonsPanel.repaint();
     }
 
     /**
      * Displays each item in a button panel
      */
     private void displayItems() {
-        JPanel itemButtonsPanel = new JPanel(new GridLayout(3, 3, 10, 10));
+        itemButtonsPanel = new JPanel(new GridLayout(0, vendingMachine.getColumnCount(), 10, 10));
 
-        for (int i = 0; i < 9; i++) {
+        for (int i = 0; i < vendingMachine.getSlotCount(); i++) {
             ItemSlot slot = vendingMachine.getSlot(i);
 
             if (slot != null) {
-                Item item = slot.getItem();
-                int quantityAvailable = slot.getQuantity();
-                double price = item.getPrice();
-                double calories = item.getCalories();
-
-                String itemDetails = "Item: " + item.getName() + "\n"
-                        + "Price: PHP " + price + "\n"
-                        + "Quantity: " + quantityAvailable + "\n"
-                        + "Calories: " + calories + "\n";
-
-                ItemButton itemButton = new ItemButton(itemDetails, item.getName(), price, quantityAvailable, calories);
-                itemButton.addActionListener(new ActionListener() {
-                    @Override
-                    public void actionPerformed(ActionEvent e) {
-                        handleItemSelection(itemButton);
-                    }
-                });
-
-                itemButtons.add(itemButton);
-                itemButtonsPanel.add(itemButton);
+                itemButtonsPanel.add(createItemButton(i, slot.getItem(), slot.getQuantity()));
             }
         }
 
         add(itemButtonsPanel, BorderLayout.CENTER);
     }
 
+    /**
+     * Creates the button of an item slot
+     * 
+     * @param slotNumber the slot number of the item slot
+     * @param item       the item in the item slot
+     * @param quantity   quantity of the item in the item slot
+     * @return the button
+     */
+    private ItemButton createItemButton(int slotNumber, Item item, int quantity) {
+        ItemButton itemButton = new ItemButton(item, quantity);
+        itemButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleItemSelection(itemButton);
+            }
+        });
+
+        itemButtons.add(itemButton);
+        slotButtons.put(slotNumber, itemButton);
+        return itemButton;
+    }
+
     /**
      * Handles the selected item and updates the table that shows selected items
      * 
@@ -119,7 +180,7 @@ public class CustomMealFrame extends JFrame {
      */
     private void setupTotalLabels() {
         JPanel totalPanel = new JPanel(new GridLayout(3, 1));
-        totalPriceLabel = new JLabel("Total Price: PHP 0.0");
+        totalPriceLabel = new JLabel("Total Price: PHP 0.00");
         totalCaloriesLabel = new JLabel("Total Calories: 0.0");
         totalPanel.add(totalPriceLabel);
         totalPanel.add(totalCaloriesLabel);
@@ -145,29 +206,42 @@ public class CustomMealFrame extends JFrame {
         add(totalPanel, BorderLayout.SOUTH);
     }
 
+    /**
+     * Calculates the total price of the selected items
+     * 
+     * @return the total price (in centavos)
+     */
+    private long getTotalPrice() {
+        long totalPrice = 0;
+        for (ItemButton itemButton : selectedItems) {
+            totalPrice += itemButton.getPrice() * itemQuantities.getOrDefault(itemButton.getItemName(), 0);
+        }
+        return totalPrice;
+    }
+
     /**
      * Updates the table that shows all selected items
      */
     private void updateSelectedItemsTable() {
         tableModel.setRowCount(0);
 
-        double totalPrice = 0;
+        long totalPrice = 0;
         double totalCalories = 0;
 
         for (ItemButton itemButton : selectedItems) {
             String itemName = itemButton.getItemName();
-            double price = itemButton.getPrice();
+            long price = itemButton.getPrice();
             double calories = itemButton.getCalories();
             int quantity = itemQuantities.getOrDefault(itemName, 0);
 
             totalPrice += price * quantity;
             totalCalories += calories * quantity;
 
-            Object[] rowData = { itemName, price, calories, quantity };
+            Object[] rowData = { itemName, Money.format(price), calories, quantity };
             tableModel.addRow(rowData);
         }
 
-        totalPriceLabel.setText("Total Price: PHP " + totalPrice);
+        totalPriceLabel.setText("Total Price: PHP " + Money.format(totalPrice));
         totalCaloriesLabel.setText("Total Calories: " + totalCalories);
     }
 
@@ -216,107 +290,73 @@ public class CustomMealFrame extends JFrame {
             return;
         }
 
-        // Calculate the total price of selected items
-        double totalPrice = 0;
-        for (ItemButton itemButton : selectedItems) {
-            String itemName = itemButton.getItemName();
-            double price = itemButton.getPrice();
-            int quantity = itemQuantities.getOrDefault(itemName, 0);
-            totalPrice += price * quantity;
-        }
-
-        // Payment process of the checkout
-        double amountPaid = askPaymentAmount();
-        if (amountPaid < totalPrice) {
-            JOptionPane.showMessageDialog(this, "Insufficient amount. Please enter a valid amount.", "Payment Error",
-                    JOptionPane.ERROR_MESSAGE);
-            return;
-        }
-
-        if (!vendingMachine.isChangePossible(amountPaid, totalPrice)) {
-            JOptionPane.showMessageDialog(this,
-                    "Change cannot be provided in the required denominations. Please contact maintenance.",
-                    "Purchase Error", JOptionPane.ERROR_MESSAGE);
-            return;
+        // Find the slots of the selected items, one entry per piece of the meal.
+        // An item in several slots is taken from them in slot order, moving on
+        // when a slot runs out; what none of them has left is asked of the first,
+        // so the purchase fails as out of stock
+        int pieceCount = 0;
+        for (int quantity : itemQuantities.values()) {
+            pieceCount += quantity;
         }
 
-        // Calculate and display the change
-        double change = amountPaid - totalPrice;
-        JOptionPane.showMessageDialog(this,
-                "Payment successful!\nTotal Price: PHP " + totalPrice + "\nChange: PHP " + change,
-                "Payment Successful", JOptionPane.INFORMATION_MESSAGE);
-
-        updateSelectedItemsTable();
-
-        for (ItemButton itemButton : selectedItems) {
-            String itemName = itemButton.getItemName();
-            int quantity = itemQuantities.getOrDefault(itemName, 0);
-
-            int slotNumber = -1;
-            for (int i = 0; i < 9; i++) { // find slot number based on item name
-                ItemSlot slot = vendingMachine.getSlot(i);
-                if (slot != null && slot.getItem().getName().equals(itemName)) {
-                    slotNumber = i;
-                    break;
+        int[] pieces = new int[pieceCount];
+        int count = 0;
+        for (Map.Entry<String, Integer> entry : itemQuantities.entrySet()) {
+            int[] slotNumbers = vendingMachine.findSlotNumbers(entry.getKey());
+            if (slotNumbers.length == 0) {
+                JOptionPane.showMessageDialog(this, "Item not found in the vending machine: " + entry.getKey(),
+                        "Purchase Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            int remaining = entry.getValue();
+            for (int i = 0; i < slotNumbers.length && remaining > 0; i++) {
+                int taken = Math.min(vendingMachine.getSlot(slotNumbers[i]).getQuantity(), remaining);
+                for (int j = 0; j < taken; j++) {
+                    pieces[count++] = slotNumbers[i];
                 }
+                remaining -= taken;
             }
-
-            if (slotNumber != -1) {
-                // handles sellItem method so that variables are updated (quantity, total sales,
-                // etc)
-                vendingMachine.sellItem(slotNumber, quantity, amountPaid, totalPrice);
-            } else {
-                System.out.println("Item not found in the vending machine: " + itemName);
+            for (int j = 0; j < remaining; j++) {
+                pieces[count++] = slotNumbers[0];
             }
         }
 
-        resetCart(); // Reset the cart after successful payment
-        dispose();
+        // Payment process of the checkout
+        CoinEscrow escrow = CashPanel.askPayment(this, vendingService, getTotalPrice());
+        if (escrow == null) {
+            return;
+        }
+
+        // the purchase takes the payment, dispenses the items and gives the change
+        // in one transaction, or gives the payment back, in the background
+        MealRequest request = MealRequest.custom(pieces, escrow);
+        new CheckoutWorker(this, () -> vendingService.buyMeal(request), result -> showResult(result)).start();
     }
 
     /**
-     * Asks for the payment in specific denominations using the GUI
+     * Shows the result of the checkout and closes the frame if it was successful
      * 
-     * @return amount paid
+     * @param result the result of the purchase
      */
-    private double askPaymentAmount() {
-
-        double amount = 0;
-        String input;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 1] coins:");
-        int quantity1 = Integer.parseInt(input);
-        amount += quantity1 * 1;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 5] coins:");
-        int quantity2 = Integer.parseInt(input);
-        amount += quantity2 * 5;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 10] coins:");
-        int quantity3 = Integer.parseInt(input);
-        amount += quantity3 * 10;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 20] bills:");
-        int quantity4 = Integer.parseInt(input);
-        amount += quantity4 * 20;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 50] bills:");
-        int quantity5 = Integer.parseInt(input);
-        amount += quantity5 * 50;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 100] bills:");
-        int quantity6 = Integer.parseInt(input);
-        amount += quantity6 * 100;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 200] bills:");
-        int quantity7 = Integer.parseInt(input);
-        amount += quantity7 * 200;
+    private void showResult(VendingResult result) {
+        if (!result.isSuccessful()) {
+            String message = result.getMessage();
+            if (result.getReturnedPieces().length > 0) {
+                message += "\nMoney returned: " + vendingService.describePieces(result.getReturnedPieces());
+            }
+            JOptionPane.showMessageDialog(this, message, "Purchase Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 500] bills:");
-        int quantity8 = Integer.parseInt(input);
-        amount += quantity8 * 500;
+        // Display the change
+        JOptionPane.showMessageDialog(this,
+                "Payment successful!\nTotal Price: PHP " + Money.format(result.getTotalPrice()) + "\nChange: PHP "
+                        + Money.format(result.getChange()) + "\nChange breakdown: "
+                        + vendingService.describePieces(result.getChangePieces()),
+                "Payment Successful", JOptionPane.INFORMATION_MESSAGE);
 
-        return amount;
+        resetCart(); // Reset the cart after successful payment
+        dispose();
     }
 
 }
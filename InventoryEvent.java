@@ -0,0 +1,103 @@
+/**
+ * This class represents a change to a slot of a vending machine. The event
+ * tells which parts of the slot changed (its quantity, its item or the price
+ * of its item) and carries the state of the slot right after the change, so a
+ * view can show the slot without reading the machine again.
+ * Events of the same slot can be merged into one, keeping the latest state and
+ * every part that changed.
+ */
+public class InventoryEvent {
+    public static final int QUANTITY = 1;
+    public static final int ITEM = 2;
+    public static final int PRICE = 4;
+
+    private int slotNumber;
+    private int changes;
+    private Item item;
+    private int quantity;
+    private long price;
+
+    /**
+     * This is the constructor of an inventory event
+     *
+     * @param slotNumber the slot number of the changed slot
+     * @param changes    the parts that changed (QUANTITY, ITEM and PRICE, or-ed
+     *                   together)
+     * @param item       the item of the slot, or null if the slot is empty
+     * @param quantity   the quantity of the slot
+     * @param price      the price of the slot's item (in centavos)
+     */
+    public InventoryEvent(int slotNumber, int changes, Item item, int quantity, long price) {
+        this.slotNumber = slotNumber;
+        this.changes = changes;
+        this.item = item;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    /**
+     * Gets the slot number of the changed slot
+     *
+     * @return the slot number
+     */
+    public int getSlotNumber() {
+        return slotNumber;
+    }
+
+    /**
+     * Gets the parts of the slot that changed
+     *
+     * @return QUANTITY, ITEM and PRICE, or-ed together
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    /**
+     * Checks if a part of the slot changed
+     *
+     * @param change QUANTITY, ITEM or PRICE
+     * @return true if that part changed
+     */
+    public boolean isChanged(int change) {
+        return (changes & change) != 0;
+    }
+
+    /**
+     * Gets the item of the slot after the change
+     *
+     * @return the item, or null if the slot is empty
+     */
+    public Item getItem() {
+        return item;
+    }
+
+    /**
+     * Gets the quantity of the slot after the change
+     *
+     * @return the quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Gets the price of the slot's item after the change
+     *
+     * @return the price (in centavos)
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * Merges a later event of the same slot into this one
+     *
+     * @param later the later event
+     * @return an event with the state of the later event and the parts changed
+     *         by either event
+     */
+    public InventoryEvent merge(InventoryEvent later) {
+        return new InventoryEvent(slotNumber, changes | later.changes, later.item, later.quantity, later.price);
+    }
+}
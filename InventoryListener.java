@@ -0,0 +1,17 @@
+/**
+ * This class represents a listener of the stock of a vending machine. It is
+ * told every time the quantity, the item or the price of a slot changes, so a
+ * view can update only that slot.
+ * The listener is called on the thread that changed the slot, after the slot's
+ * lock is released, so it should be quick; a Swing view should wrap itself in
+ * a CoalescingInventoryListener that hands the events over to the Event
+ * Dispatch Thread.
+ */
+public interface InventoryListener {
+    /**
+     * Called after the quantity, the item or the price of a slot has changed
+     *
+     * @param event the change, with the state of the slot after it
+     */
+    void slotChanged(InventoryEvent event);
+}
@@ -0,0 +1,123 @@
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * This class represents the table model of the slots of a vending machine,
+ * one row per slot. The model keeps its own copy of every slot and updates it
+ * from inventory events, so a change repaints only the row of the changed slot
+ * and the table never reads the machine while it is being sold from.
+ * The model listens to the machine until it is closed.
+ */
+public class InventoryTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = { "Slot", "Item", "Quantity", "Price", "Calories" };
+
+    private RegularVendingMachine vendingMachine;
+    private InventoryListener inventoryListener;
+    private String[] itemNames;
+    private int[] quantities;
+    private long[] prices;
+    private double[] calories;
+
+    /**
+     * This is the constructor of the table model of the slots of a vending
+     * machine. It must be made on the Event Dispatch Thread.
+     *
+     * @param vendingMachine the vending machine
+     */
+    public InventoryTableModel(RegularVendingMachine vendingMachine) {
+        this.vendingMachine = vendingMachine;
+        int slotCount = vendingMachine.getSlotCount();
+        this.itemNames = new String[slotCount];
+        this.quantities = new int[slotCount];
+        this.prices = new long[slotCount];
+        this.calories = new double[slotCount];
+
+        this.inventoryListener = new CoalescingInventoryListener(new InventoryListener() {
+            @Override
+            public void slotChanged(InventoryEvent event) {
+                updateSlot(event);
+            }
+        }, SwingUtilities::invokeLater);
+        vendingMachine.addInventoryListener(inventoryListener);
+
+        // events of changes made from here on are queued behind this
+        for (int i = 0; i < slotCount; i++) {
+            ItemSlot slot = vendingMachine.getSlot(i);
+            if (slot != null) {
+                Item item = slot.getItem();
+                setSlot(i, item, slot.getQuantity(), item.getPrice());
+            }
+        }
+    }
+
+    /**
+     * Stops listening to the vending machine
+     */
+    public void close() {
+        vendingMachine.removeInventoryListener(inventoryListener);
+    }
+
+    /**
+     * Updates the row of a changed slot
+     *
+     * @param event the change of the slot
+     */
+    private void updateSlot(InventoryEvent event) {
+        int slotNumber = event.getSlotNumber();
+        if (slotNumber < itemNames.length && event.getItem() != null) {
+            setSlot(slotNumber, event.getItem(), event.getQuantity(), event.getPrice());
+            fireTableRowsUpdated(slotNumber, slotNumber);
+        }
+    }
+
+    /**
+     * Copies the state of a slot into the model
+     *
+     * @param slotNumber the slot number
+     * @param item       the item of the slot
+     * @param quantity   the quantity of the slot
+     * @param price      the price of the item (in centavos)
+     */
+    private void setSlot(int slotNumber, Item item, int quantity, long price) {
+        itemNames[slotNumber] = item.getName();
+        quantities[slotNumber] = quantity;
+        prices[slotNumber] = price;
+        calories[slotNumber] = item.getCalories();
+    }
+
+    @Override
+    public int getRowCount() {
+        return itemNames.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 || column == 2 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case 0:
+                return row;
+            case 1:
+                return itemNames[row] == null ? "(empty)" : itemNames[row];
+            case 2:
+                return quantities[row];
+            case 3:
+                return itemNames[row] == null ? "" : Money.format(prices[row]);
+            default:
+                return itemNames[row] == null ? "" : String.format("%.2f", calories[row]);
+        }
+    }
+}
@@ -3,17 +3,17 @@
  */
 public class Item {
     private String name;
-    private double price;
+    private long price;
     private double calories;
 
     /**
      * This is a constructor of Item given the name, price and calories
      * 
      * @param name     the name of the item
-     * @param price    the price of the item (PHP)
+     * @param price    the price of the item (in centavos)
      * @param calories the calories found in item
      */
-    public Item(String name, double price, double calories) {
+    public Item(String name, long price, double calories) {
         this.name = name;
         this.price = price;
         this.calories = calories;
@@ -40,18 +40,18 @@ public class Item {
     /**
      * Gets the price of an item
      * 
-     * @return the price of the item
+     * @return the price of the item (in centavos)
      */
-    public double getPrice() {
+    public long getPrice() {
         return price;
     }
 
     /**
      * Sets the price of an item
      * 
-     * @param price the price of the item
+     * @param price the price of the item (in centavos)
      */
-    public void setPrice(double price) {
+    public void setPrice(long price) {
         this.price = price;
     }
 
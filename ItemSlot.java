@@ -1,19 +1,32 @@
 /**
- * This class represents the item slot of the vending machine
+ * This class represents the item slot of the vending machine.
+ * An item slot is a view of one slot of the machine's slot grid, so reading or
+ * changing it reads or changes the grid.
+ * Changes to a slot that belongs to a vending machine are made while holding
+ * the machine's lock for that slot.
  */
 public class ItemSlot {
-    private Item item;
-    private int quantity;
+    private SlotGrid grid;
+    private int slotNumber;
 
     /**
-     * This is a constructor of ItemSlot given the item and the quantity
+     * This is a constructor of ItemSlot given the grid and the slot number
      * 
-     * @param item     item in the item slot
-     * @param quantity quantity of that item in the slot
+     * @param grid       grid the slot belongs to
+     * @param slotNumber slot number of the slot in the grid
      */
-    public ItemSlot(Item item, int quantity) {
-        this.item = item;
-        this.quantity = quantity;
+    public ItemSlot(SlotGrid grid, int slotNumber) {
+        this.grid = grid;
+        this.slotNumber = slotNumber;
+    }
+
+    /**
+     * Gets the slot number of the item slot
+     * 
+     * @return the slot number of the slot in the grid
+     */
+    public int getSlotNumber() {
+        return slotNumber;
     }
 
     /**
@@ -22,7 +35,7 @@ public class ItemSlot {
      * @return the item associated with the slot
      */
     public Item getItem() {
-        return item;
+        return grid.getItem(slotNumber);
     }
 
     /**
@@ -31,7 +44,7 @@ public class ItemSlot {
      * @param item the item of the slot
      */
     public void setItem(Item item) {
-        this.item = item;
+        grid.setItem(slotNumber, item);
     }
 
     /**
@@ -40,7 +53,7 @@ public class ItemSlot {
      * @return the quantity of the item of the slot
      */
     public int getQuantity() {
-        return quantity;
+        return grid.getQuantity(slotNumber);
     }
 
     /**
@@ -49,7 +62,16 @@ public class ItemSlot {
      * @param quantity the quantity of an item of a slot
      */
     public void setQuantity(int quantity) {
-        this.quantity = quantity;
+        grid.setQuantity(slotNumber, quantity);
+    }
+
+    /**
+     * Gets the maximum quantity of the slot
+     * 
+     * @return the capacity of the slot
+     */
+    public int getCapacity() {
+        return grid.getCapacity(slotNumber);
     }
 
     /**
@@ -60,22 +82,20 @@ public class ItemSlot {
      * @param quantity the quantity to be deducted
      */
     public void decreaseItemQuantity(int quantity) {
-        this.quantity -= quantity;
-        if (this.quantity < 0) {
-            this.quantity = 0;
-        }
+        grid.setQuantity(slotNumber, Math.max(grid.getQuantity(slotNumber) - quantity, 0));
     }
 
     /**
      * Adds the quantity of an item of a slot given the amount to be added
-     * If quantity to be added is less than 10, it proceeds with adding since
-     * maximum
-     * capacity of a slot is 10
+     * If the slot is below its capacity, it proceeds with adding, but the quantity
+     * never goes over the capacity of the slot
      * 
      * @param quantity the quantity to be added
      */
     public void addItemQuantity(int quantity) {
-        if (this.quantity < 10)
-            this.quantity += quantity;
+        int capacity = grid.getCapacity(slotNumber);
+        int current = grid.getQuantity(slotNumber);
+        if (current < capacity)
+            grid.setQuantity(slotNumber, quantity >= capacity - current ? capacity : current + quantity);
     }
 }
@@ -0,0 +1,301 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the small JSON reader and writer used by the HTTP
+ * endpoint of the vending machine. Objects are read as maps, arrays as lists,
+ * whole numbers as longs and other numbers as BigDecimals, so amounts of money
+ * are read exactly.
+ */
+public class Json {
+    private String text;
+    private int position;
+
+    /**
+     * This is the constructor of a reader of the given text. Text is read with
+     * the static parse method.
+     */
+    private Json(String text) {
+        this.text = text;
+        this.position = 0;
+    }
+
+    /**
+     * Reads a JSON value
+     *
+     * @param text the JSON text
+     * @return the value (a map, list, string, long, BigDecimal, boolean or null)
+     * @throws IllegalArgumentException if the text is not valid JSON
+     */
+    public static Object parse(String text) {
+        Json reader = new Json(text);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.position != text.length()) {
+            throw reader.error("Unexpected text after the value");
+        }
+        return value;
+    }
+
+    /**
+     * Appends a string to a JSON text, with quotes and escapes
+     *
+     * @param json  the JSON text being written
+     * @param value the string
+     * @return the JSON text
+     */
+    public static StringBuilder appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * Appends an array of whole numbers to a JSON text
+     *
+     * @param json   the JSON text being written
+     * @param values the numbers
+     * @return the JSON text
+     */
+    public static StringBuilder appendArray(StringBuilder json, int[] values) {
+        json.append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(values[i]);
+        }
+        return json.append(']');
+    }
+
+    /**
+     * Reads the value at the current position
+     *
+     * @return the value
+     */
+    private Object readValue() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end of text");
+        }
+        char c = text.charAt(position);
+        switch (c) {
+            case '{':
+                return readObject();
+            case '[':
+                return readArray();
+            case '"':
+                return readString();
+            case 't':
+                return readWord("true", Boolean.TRUE);
+            case 'f':
+                return readWord("false", Boolean.FALSE);
+            case 'n':
+                return readWord("null", null);
+            default:
+                return readNumber();
+        }
+    }
+
+    /**
+     * Reads an object at the current position
+     *
+     * @return the members of the object, in the order they were written
+     */
+    private Map<String, Object> readObject() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        position++;
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return members;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected a member name");
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            members.put(name, readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return members;
+            }
+        }
+    }
+
+    /**
+     * Reads an array at the current position
+     *
+     * @return the elements of the array
+     */
+    private List<Object> readArray() {
+        List<Object> elements = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return elements;
+        }
+        while (true) {
+            elements.add(readValue());
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return elements;
+            }
+        }
+    }
+
+    /**
+     * Reads a string at the current position
+     *
+     * @return the string, without quotes and escapes
+     */
+    private String readString() {
+        StringBuilder value = new StringBuilder();
+        position++;
+        while (true) {
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(position++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (position >= text.length()) {
+                throw error("Unterminated string");
+            }
+            char escape = text.charAt(position++);
+            switch (escape) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error("Invalid escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    value.append(escape);
+            }
+        }
+    }
+
+    /**
+     * Reads a number at the current position
+     *
+     * @return the number, as a long if it is whole or a BigDecimal if not
+     */
+    private Object readNumber() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        String number = text.substring(start, position);
+        try {
+            if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                return Long.parseLong(number);
+            }
+            return new BigDecimal(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid value");
+        }
+    }
+
+    /**
+     * Reads a keyword at the current position
+     *
+     * @param word  the keyword
+     * @param value the value of the keyword
+     * @return the value
+     */
+    private Object readWord(String word, Object value) {
+        if (!text.startsWith(word, position)) {
+            throw error("Invalid value");
+        }
+        position += word.length();
+        return value;
+    }
+
+    /**
+     * Skips spaces, tabs and line breaks
+     */
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    /**
+     * Gets the character at the current position
+     *
+     * @return the character, or 0 at the end of the text
+     */
+    private char peek() {
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    /**
+     * Reads the given character at the current position
+     *
+     * @param c the expected character
+     */
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    /**
+     * Makes the error thrown when the text is not valid JSON
+     *
+     * @param message the reason
+     * @return the error
+     */
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+}
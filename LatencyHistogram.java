@@ -0,0 +1,148 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class represents a histogram of the latencies of an operation, in
+ * nanoseconds. Like an HDR histogram, values are counted in buckets whose width
+ * grows with the value: every power of two is split into SUB_BUCKETS / 2
+ * buckets, so any latency from a nanosecond to hours is kept with a relative
+ * error of at most 1 / (SUB_BUCKETS / 2), in a fixed number of buckets.
+ * Recording a value only increments counters, without locks or allocation, so
+ * it can be done by every thread on the hot path. Reading the histogram while
+ * values are recorded gives counts that may be off by the values being
+ * recorded at the time.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (64 - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private AtomicLongArray buckets;
+    private LongAdder count;
+    private LongAdder sum;
+    private AtomicLong max;
+
+    /**
+     * This is the constructor of an empty latency histogram
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a latency
+     *
+     * @param nanos the latency (in nanoseconds); negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Gets the number of latencies recorded
+     *
+     * @return the number of latencies
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the mean of the latencies recorded
+     *
+     * @return the mean (in nanoseconds), or 0 if nothing was recorded
+     */
+    public long getMean() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : sum.sum() / recorded;
+    }
+
+    /**
+     * Gets the largest latency recorded
+     *
+     * @return the largest latency (in nanoseconds)
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets a percentile of the latencies recorded. The value given is the upper
+     * end of the bucket the percentile falls in, so it is never below the
+     * exact percentile by more than the bucket width.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the latency at the percentile (in nanoseconds), or 0 if nothing
+     *         was recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Finds the bucket of a value. Values below SUB_BUCKETS have a bucket each;
+     * above that, the value is shifted until it has SUB_BUCKET_BITS bits, and
+     * the shift chooses the group and the remaining bits the bucket in it.
+     *
+     * @param value the value, not negative
+     * @return the index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + subBucket - HALF_SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the highest value counted in a bucket. The top bucket ends beyond
+     * the largest long, so its highest value is Long.MAX_VALUE.
+     *
+     * @param bucket the index of the bucket
+     * @return the highest value of the bucket
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        if (subBucket >= Long.MAX_VALUE >>> shift) {
+            return Long.MAX_VALUE;
+        }
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,303 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class represents the metrics of a vending machine: counters of what
+ * happened to purchases, a latency histogram for each operation on the hot
+ * path, and gauges of the state of the machine.
+ * Counters and histograms are written by the threads doing the operations,
+ * without locks. Gauges are not written at all: each is a function read only
+ * when the metrics are, so keeping them costs nothing while nobody is looking.
+ * Timing an operation costs more than counting it (two reads of the clock),
+ * so latencies are only recorded once somebody asks for them: the first read
+ * of a histogram or of the latencies as text (by the console, the maintenance
+ * window or the MXBean) turns timing on, and says so in the text. Operations
+ * before that are counted but not timed. setTiming turns timing on or off at
+ * any time.
+ * The metrics can be read one by one or as a text snapshot, one metric per
+ * line.
+ */
+public class MachineMetrics {
+    public static final int SALES = 0;
+    public static final int STOCKOUTS = 1;
+    public static final int CHANGE_FAILURES = 2;
+    public static final int INSUFFICIENT_PAYMENTS = 3;
+    public static final int INVALID_REQUESTS = 4;
+
+    public static final int SELL_ITEM = 0;
+    public static final int SELL_MEAL = 1;
+    public static final int CHANGE_CHECK = 2;
+    public static final int RESTOCK = 3;
+    public static final int REPLENISH = 4;
+    public static final int COLLECT = 5;
+
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final String[] COUNTER_NAMES = { "sales", "stockouts", "change_failures",
+            "insufficient_payments", "invalid_requests" };
+    private static final String[] OPERATION_NAMES = { "sell_item", "sell_meal", "change_check", "restock",
+            "replenish", "collect" };
+
+    private LongAdder[] counters;
+    private LatencyHistogram[] histograms;
+    private Map<String, LongSupplier> gauges;
+    private volatile boolean timing;
+
+    /**
+     * This is the constructor of the metrics of a machine, with every counter
+     * and histogram at zero and no gauges
+     */
+    public MachineMetrics() {
+        this.counters = new LongAdder[COUNTER_NAMES.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        this.histograms = new LatencyHistogram[OPERATION_NAMES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        this.gauges = new LinkedHashMap<>();
+        this.timing = false;
+    }
+
+    /**
+     * Counts one more of a counter
+     *
+     * @param counter the counter, e.g. SALES
+     */
+    public void increment(int counter) {
+        counters[counter].increment();
+    }
+
+    /**
+     * Counts the result of a purchase in the counter it belongs to
+     *
+     * @param result the result of the purchase
+     */
+    public void countResult(VendingResult result) {
+        switch (result.getStatus()) {
+            case SUCCESS:
+                increment(SALES);
+                break;
+            case EMPTY_SLOT:
+            case OUT_OF_STOCK:
+                increment(STOCKOUTS);
+                break;
+            case NO_CHANGE:
+                increment(CHANGE_FAILURES);
+                break;
+            case INSUFFICIENT_PAYMENT:
+                increment(INSUFFICIENT_PAYMENTS);
+                break;
+            default:
+                increment(INVALID_REQUESTS);
+        }
+    }
+
+    /**
+     * Gets the time an operation starts at, to be given to record when it ends
+     *
+     * @return the time (from System.nanoTime), or a time that is not recorded
+     *         if latencies are not being timed
+     */
+    public long start() {
+        return timing ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * Records the latency of an operation that started at the given time
+     *
+     * @param operation the operation, e.g. SELL_ITEM
+     * @param start     the time the operation started, from start
+     */
+    public void record(int operation, long start) {
+        if (start != NOT_TIMED) {
+            histograms[operation].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Turns the timing of operations on or off. While timing is off the
+     * histograms keep what they have.
+     *
+     * @param timing true to record latencies, false to stop
+     */
+    public void setTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+    /**
+     * Checks if operations are being timed
+     *
+     * @return true if latencies are recorded
+     */
+    public boolean isTiming() {
+        return timing;
+    }
+
+    /**
+     * Adds a gauge, replacing the gauge of the same name if there is one.
+     * Gauges are listed in the order they were first added.
+     *
+     * @param name  the name of the gauge
+     * @param gauge the function giving the value of the gauge when it is read
+     */
+    public void addGauge(String name, LongSupplier gauge) {
+        synchronized (gauges) {
+            gauges.put(name, gauge);
+        }
+    }
+
+    /**
+     * Gets the value of a counter
+     *
+     * @param counter the counter, e.g. SALES
+     * @return the value of the counter
+     */
+    public long getCount(int counter) {
+        return counters[counter].sum();
+    }
+
+    /**
+     * Gets the latency histogram of an operation. Operations are timed from
+     * then on.
+     *
+     * @param operation the operation, e.g. SELL_ITEM
+     * @return the histogram
+     */
+    public LatencyHistogram getHistogram(int operation) {
+        timing = true;
+        return histograms[operation];
+    }
+
+    /**
+     * Reads the value of a gauge
+     *
+     * @param name the name of the gauge
+     * @return the value of the gauge, or 0 if there is no gauge of that name
+     */
+    public long getGauge(String name) {
+        LongSupplier gauge;
+        synchronized (gauges) {
+            gauge = gauges.get(name);
+        }
+        return gauge == null ? 0 : gauge.getAsLong();
+    }
+
+    /**
+     * Gets the name of a counter as used in the text snapshot
+     *
+     * @param counter the counter
+     * @return the name of the counter
+     */
+    public static String getCounterName(int counter) {
+        return COUNTER_NAMES[counter];
+    }
+
+    /**
+     * Gets the name of an operation as used in the text snapshot
+     *
+     * @param operation the operation
+     * @return the name of the operation
+     */
+    public static String getOperationName(int operation) {
+        return OPERATION_NAMES[operation];
+    }
+
+    /**
+     * Gets the number of counters
+     *
+     * @return the number of counters
+     */
+    public static int getCounterCount() {
+        return COUNTER_NAMES.length;
+    }
+
+    /**
+     * Gets the number of operations with a latency histogram
+     *
+     * @return the number of operations
+     */
+    public static int getOperationCount() {
+        return OPERATION_NAMES.length;
+    }
+
+    /**
+     * Gets the names of the gauges, in order
+     *
+     * @return the names of the gauges
+     */
+    public String[] getGaugeNames() {
+        synchronized (gauges) {
+            return gauges.keySet().toArray(new String[0]);
+        }
+    }
+
+    /**
+     * Makes a text snapshot of the metrics, one metric per line as its name and
+     * value separated by a space. Latencies are in nanoseconds, and each
+     * histogram is given as its count, mean, max and percentiles. Operations
+     * are timed from then on.
+     *
+     * @return the text snapshot
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("# vending machine metrics at ").append(System.currentTimeMillis()).append('\n');
+        for (int i = 0; i < counters.length; i++) {
+            text.append(COUNTER_NAMES[i]).append("_total ").append(getCount(i)).append('\n');
+        }
+        appendLatencies(text);
+        // gauges are read outside the lock of the map, since they may take the
+        // locks of the machine
+        List<Map.Entry<String, LongSupplier>> entries;
+        synchronized (gauges) {
+            entries = new ArrayList<>(gauges.entrySet());
+        }
+        for (Map.Entry<String, LongSupplier> gauge : entries) {
+            text.append(gauge.getKey()).append(' ').append(gauge.getValue().getAsLong()).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Makes a text snapshot of the latency histograms only, in the same form as
+     * toText. No lock of the machine is taken. Operations are timed from then
+     * on.
+     *
+     * @return the text snapshot
+     */
+    public String latenciesToText() {
+        return appendLatencies(new StringBuilder()).toString();
+    }
+
+    /**
+     * Writes every latency histogram to a text snapshot, and turns timing on if
+     * it was off
+     *
+     * @param text the text snapshot
+     * @return the text snapshot
+     */
+    private StringBuilder appendLatencies(StringBuilder text) {
+        if (!timing) {
+            text.append("# latencies are recorded from now on\n");
+            timing = true;
+        }
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            String name = OPERATION_NAMES[i] + "_latency_ns";
+            text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+            text.append(name).append("_mean ").append(histogram.getMean()).append('\n');
+            text.append(name).append("_p50 ").append(histogram.getPercentile(50)).append('\n');
+            text.append(name).append("_p90 ").append(histogram.getPercentile(90)).append('\n');
+            text.append(name).append("_p99 ").append(histogram.getPercentile(99)).append('\n');
+            text.append(name).append("_p999 ").append(histogram.getPercentile(99.9)).append('\n');
+            text.append(name).append("_max ").append(histogram.getMax()).append('\n');
+        }
+        return text;
+    }
+}
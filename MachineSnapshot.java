@@ -0,0 +1,374 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * This class represents a snapshot of the whole state of a vending machine: its
+ * slots, item catalog, money, sales and transactions, and the position in the
+ * transaction journal up to which the snapshot is complete.
+ * A snapshot is saved to and loaded from a compact binary file through a
+ * memory-mapped buffer, so a machine can be restored at startup without
+ * replaying the whole journal.
+ */
+public class MachineSnapshot {
+    private static final int MAGIC = 0x564d5332;
+    private static final int HEADER_SIZE = 16;
+
+    private int rows;
+    private int columns;
+    private Item[] items;
+    private boolean[] mealItems;
+    private int[] itemIds;
+    private int[] quantities;
+    private int[] capacities;
+    private int[] moneyQuantities;
+    private long balance;
+    private long totalSales;
+    private int[] transactionItemIds;
+    private int[] transactionQuantities;
+    private long[] transactionAmounts;
+    private long[] transactionTimestamps;
+    private long journalPosition;
+
+    /**
+     * This is the constructor of a machine snapshot given the state of the
+     * machine. The arrays are kept as they are, so they must not be changed
+     * afterwards.
+     *
+     * @param rows                  number of rows of the slot grid
+     * @param columns               number of columns of the slot grid
+     * @param items                 the item catalog, indexed by item id
+     * @param mealItems             which items of the catalog are meals
+     * @param itemIds               the item id of each slot (SlotGrid.EMPTY if
+     *                              empty)
+     * @param quantities            the quantity of each slot
+     * @param capacities            the capacity of each slot
+     * @param moneyQuantities       the quantity of each denomination
+     * @param balance               the balance of the machine (in centavos)
+     * @param totalSales            the total sales not yet collected (in
+     *                              centavos)
+     * @param transactionItemIds    the item id of each transaction
+     * @param transactionQuantities the quantity of each transaction
+     * @param transactionAmounts    the amount of each transaction (in centavos)
+     * @param transactionTimestamps the time of each transaction (in
+     *                              milliseconds since the epoch)
+     * @param journalPosition       the journal position the snapshot is complete
+     *                              up to (in bytes)
+     */
+    public MachineSnapshot(int rows, int columns, Item[] items, boolean[] mealItems, int[] itemIds,
+            int[] quantities, int[] capacities, int[] moneyQuantities, long balance, long totalSales,
+            int[] transactionItemIds, int[] transactionQuantities, long[] transactionAmounts,
+            long[] transactionTimestamps, long journalPosition) {
+        this.rows = rows;
+        this.columns = columns;
+        this.items = items;
+        this.mealItems = mealItems;
+        this.itemIds = itemIds;
+        this.quantities = quantities;
+        this.capacities = capacities;
+        this.moneyQuantities = moneyQuantities;
+        this.balance = balance;
+        this.totalSales = totalSales;
+        this.transactionItemIds = transactionItemIds;
+        this.transactionQuantities = transactionQuantities;
+        this.transactionAmounts = transactionAmounts;
+        this.transactionTimestamps = transactionTimestamps;
+        this.journalPosition = journalPosition;
+    }
+
+    /**
+     * Saves the snapshot to a file. The snapshot is first written to a temporary
+     * file next to it, which then replaces the file, so a crash while saving
+     * leaves the previous snapshot intact.
+     *
+     * @param path the file of the snapshot
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path path) throws IOException {
+        byte[][] names = new byte[items.length][];
+        long size = HEADER_SIZE + 3 * 4;
+        for (int i = 0; i < items.length; i++) {
+            names[i] = items[i].getName().getBytes(StandardCharsets.UTF_8);
+            size += 8 + 8 + 1 + 4 + names[i].length;
+        }
+        size += 12L * itemIds.length;
+        size += 4 + 4L * moneyQuantities.length + 8 + 8 + 8;
+        size += 4 + 24L * transactionAmounts.length;
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC);
+            buffer.putInt(0);
+            buffer.putLong(size);
+
+            buffer.putInt(rows);
+            buffer.putInt(columns);
+            buffer.putInt(items.length);
+            for (int i = 0; i < items.length; i++) {
+                buffer.putLong(items[i].getPrice());
+                buffer.putDouble(items[i].getCalories());
+                buffer.put((byte) (mealItems[i] ? 1 : 0));
+                buffer.putInt(names[i].length);
+                buffer.put(names[i]);
+            }
+            for (int i = 0; i < itemIds.length; i++) {
+                buffer.putInt(itemIds[i]);
+                buffer.putInt(quantities[i]);
+                buffer.putInt(capacities[i]);
+            }
+
+            buffer.putInt(moneyQuantities.length);
+            for (int quantity : moneyQuantities) {
+                buffer.putInt(quantity);
+            }
+            buffer.putLong(balance);
+            buffer.putLong(totalSales);
+            buffer.putLong(journalPosition);
+
+            buffer.putInt(transactionAmounts.length);
+            for (int i = 0; i < transactionAmounts.length; i++) {
+                buffer.putInt(transactionItemIds[i]);
+                buffer.putInt(transactionQuantities[i]);
+                buffer.putLong(transactionAmounts[i]);
+                buffer.putLong(transactionTimestamps[i]);
+            }
+
+            buffer.putInt(4, checksum(buffer, size));
+            buffer.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads a snapshot from a file
+     *
+     * @param path the file of the snapshot
+     * @return the snapshot
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static MachineSnapshot load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Snapshot is too short");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a vending machine snapshot");
+            }
+            int expectedChecksum = buffer.getInt();
+            if (buffer.getLong() != size || checksum(buffer, size) != expectedChecksum) {
+                throw new IOException("Snapshot is damaged");
+            }
+
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            int itemCount = buffer.getInt();
+            Item[] items = new Item[itemCount];
+            boolean[] mealItems = new boolean[itemCount];
+            for (int i = 0; i < itemCount; i++) {
+                long price = buffer.getLong();
+                double calories = buffer.getDouble();
+                mealItems[i] = buffer.get() != 0;
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                items[i] = new Item(new String(name, StandardCharsets.UTF_8), price, calories);
+            }
+
+            int slotCount = rows * columns;
+            int[] itemIds = new int[slotCount];
+            int[] quantities = new int[slotCount];
+            int[] capacities = new int[slotCount];
+            for (int i = 0; i < slotCount; i++) {
+                itemIds[i] = buffer.getInt();
+                quantities[i] = buffer.getInt();
+                capacities[i] = buffer.getInt();
+            }
+
+            int[] moneyQuantities = new int[buffer.getInt()];
+            for (int i = 0; i < moneyQuantities.length; i++) {
+                moneyQuantities[i] = buffer.getInt();
+            }
+            long balance = buffer.getLong();
+            long totalSales = buffer.getLong();
+            long journalPosition = buffer.getLong();
+
+            int transactionCount = buffer.getInt();
+            int[] transactionItemIds = new int[transactionCount];
+            int[] transactionQuantities = new int[transactionCount];
+            long[] transactionAmounts = new long[transactionCount];
+            long[] transactionTimestamps = new long[transactionCount];
+            for (int i = 0; i < transactionCount; i++) {
+                transactionItemIds[i] = buffer.getInt();
+                transactionQuantities[i] = buffer.getInt();
+                transactionAmounts[i] = buffer.getLong();
+                transactionTimestamps[i] = buffer.getLong();
+            }
+
+            return new MachineSnapshot(rows, columns, items, mealItems, itemIds, quantities, capacities,
+                    moneyQuantities, balance, totalSales, transactionItemIds, transactionQuantities,
+                    transactionAmounts, transactionTimestamps, journalPosition);
+        }
+    }
+
+    /**
+     * Computes the checksum of everything in a snapshot buffer after its header
+     *
+     * @param buffer the buffer of the snapshot
+     * @param size   the size of the snapshot (in bytes)
+     * @return the checksum
+     */
+    private static int checksum(ByteBuffer buffer, long size) {
+        ByteBuffer content = buffer.duplicate();
+        content.position(HEADER_SIZE).limit((int) size);
+        CRC32 checksum = new CRC32();
+        checksum.update(content);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Gets the number of rows of the slot grid
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns of the slot grid
+     *
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the item catalog
+     *
+     * @return the items, indexed by item id
+     */
+    public Item[] getItems() {
+        return items;
+    }
+
+    /**
+     * Gets which items of the catalog are meals
+     *
+     * @return true for each item id that is a meal
+     */
+    public boolean[] getMealItems() {
+        return mealItems;
+    }
+
+    /**
+     * Gets the item id of each slot
+     *
+     * @return the item ids, indexed by slot number (SlotGrid.EMPTY if empty)
+     */
+    public int[] getItemIds() {
+        return itemIds;
+    }
+
+    /**
+     * Gets the quantity of each slot
+     *
+     * @return the quantities, indexed by slot number
+     */
+    public int[] getQuantities() {
+        return quantities;
+    }
+
+    /**
+     * Gets the capacity of each slot
+     *
+     * @return the capacities, indexed by slot number
+     */
+    public int[] getCapacities() {
+        return capacities;
+    }
+
+    /**
+     * Gets the quantity of each denomination
+     *
+     * @return the quantities, in the order of Money's denominations
+     */
+    public int[] getMoneyQuantities() {
+        return moneyQuantities;
+    }
+
+    /**
+     * Gets the balance of the machine
+     *
+     * @return the balance (in centavos)
+     */
+    public long getBalance() {
+        return balance;
+    }
+
+    /**
+     * Gets the total sales not yet collected
+     *
+     * @return the total sales (in centavos)
+     */
+    public long getTotalSales() {
+        return totalSales;
+    }
+
+    /**
+     * Gets the item id of each transaction
+     *
+     * @return the item ids, in the order of the transactions
+     */
+    public int[] getTransactionItemIds() {
+        return transactionItemIds;
+    }
+
+    /**
+     * Gets the quantity of each transaction
+     *
+     * @return the quantities, in the order of the transactions
+     */
+    public int[] getTransactionQuantities() {
+        return transactionQuantities;
+    }
+
+    /**
+     * Gets the amount of each transaction
+     *
+     * @return the amounts (in centavos), in the order of the transactions
+     */
+    public long[] getTransactionAmounts() {
+        return transactionAmounts;
+    }
+
+    /**
+     * Gets the time of each transaction
+     *
+     * @return the times (in milliseconds since the epoch), in the order of the
+     *         transactions
+     */
+    public long[] getTransactionTimestamps() {
+        return transactionTimestamps;
+    }
+
+    /**
+     * Gets the position in the journal up to which the snapshot is complete.
+     * Only the records after it have to be replayed.
+     *
+     * @return the journal position (in bytes)
+     */
+    public long getJournalPosition() {
+        return journalPosition;
+    }
+}
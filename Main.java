@@ -1,4 +1,7 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
+import javax.management.JMException;
 
 /**
  * The Main class represents the driver of the vending machine program.
@@ -6,7 +9,19 @@ import java.util.Scanner;
 public class Main {
     public static void main(String[] args) {
         RegularVendingMachine vendingMachine = new RegularVendingMachine();
+        try {
+            vendingMachine.openJournal(Paths.get(RegularVendingMachine.JOURNAL_FILE),
+                    Paths.get(RegularVendingMachine.SNAPSHOT_FILE));
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not open the transaction journal: " + e.getMessage());
+        }
         SpecialVendingMachine specialVendingMachine = new SpecialVendingMachine(vendingMachine);
+        VendingService vendingService = specialVendingMachine.getVendingService();
+        try {
+            new VendingMachineMBeans(vendingService).register();
+        } catch (JMException e) {
+            System.out.println("ERROR: Could not register the management beans: " + e.getMessage());
+        }
         Scanner scanner = new Scanner(System.in);
 
         while (true) {
@@ -15,13 +30,13 @@ public class Main {
             int choice = scanner.nextInt();
             switch (choice) {
                 case 1:
-                    handleBuyOption(scanner, vendingMachine);
+                    handleBuyOption(scanner, vendingService);
                     break;
                 case 2:
                     handlePrepareMealOption(scanner, specialVendingMachine);
                     break;
                 case 3:
-                    handleMaintenanceOption(scanner, vendingMachine);
+                    handleMaintenanceOption(scanner, vendingService);
                     break;
                 case 4:
                     handleExitOption(vendingMachine);
@@ -48,9 +63,10 @@ public class Main {
      * Handles the Buy Option of the main menu.
      * 
      * @param scanner        the scanner used to get user input
-     * @param vendingMachine the vending machine used
+     * @param vendingService the vending service used
      */
-    private static void handleBuyOption(Scanner scanner, RegularVendingMachine vendingMachine) {
+    private static void handleBuyOption(Scanner scanner, VendingService vendingService) {
+        RegularVendingMachine vendingMachine = vendingService.getVendingMachine();
         vendingMachine.displayItems();
         System.out.print("Enter the slot number: ");
         int slotNumber = scanner.nextInt();
@@ -60,93 +76,98 @@ public class Main {
             Item item = itemSlot.getItem();
 
             System.out.println("Item selected: " + item.getName());
-            System.out.println("Price: PHP" + item.getPrice());
+            System.out.println("Price: PHP" + Money.format(item.getPrice()));
             System.out.println("Quantity: " + itemSlot.getQuantity());
 
             System.out.print("Enter the quantity: ");
             int quantity = scanner.nextInt();
-            int amount = 0;
-            double totalPrice = item.getPrice() * quantity;
-
-            System.out.println("Total price: PHP" + totalPrice);
-            System.out.print("How many [PHP 1] coins: ");
-            int quantity1 = scanner.nextInt();
-            amount += quantity1 * 1;
-
-            System.out.print("How many [PHP 5] coins : ");
-            int quantity2 = scanner.nextInt();
-            amount += quantity2 * 5;
-
-            System.out.print("How many [PHP 10] coins: ");
-            int quantity3 = scanner.nextInt();
-            amount += quantity3 * 10;
-
-            System.out.print("How many [PHP 20] bills: ");
-            int quantity4 = scanner.nextInt();
-            amount += quantity4 * 20;
+            long totalPrice = item.getPrice() * quantity;
 
-            System.out.print("How many [PHP 50] bills: ");
-            int quantity5 = scanner.nextInt();
-            amount += quantity5 * 50;
-
-            System.out.print("How many [PHP 100] bills: ");
-            int quantity6 = scanner.nextInt();
-            amount += quantity6 * 100;
-
-            System.out.print("How many [PHP 200] bills: ");
-            int quantity7 = scanner.nextInt();
-            amount += quantity7 * 200;
-
-            System.out.print("How many [PHP 500] bills: ");
-            int quantity8 = scanner.nextInt();
-            amount += quantity8 * 500;
-
-            vendingMachine.replenishMoney(1, quantity1);
-            vendingMachine.replenishMoney(5, quantity2);
-            vendingMachine.replenishMoney(10, quantity3);
-            vendingMachine.replenishMoney(20, quantity4);
-            vendingMachine.replenishMoney(50, quantity5);
-            vendingMachine.replenishMoney(100, quantity6);
-            vendingMachine.replenishMoney(200, quantity7);
-            vendingMachine.replenishMoney(500, quantity8);
+            System.out.println("Total price: PHP" + Money.format(totalPrice));
+            scanner.nextLine();
+            CoinEscrow escrow = CashInsertion.ask(scanner, vendingService, totalPrice);
+            if (escrow == null) {
+                return;
+            }
 
-            vendingMachine.sellItem(slotNumber, quantity, amount, totalPrice);
+            VendingResult result = vendingService.buyItem(new PurchaseRequest(slotNumber, quantity, escrow));
+            if (result.isSuccessful()) {
+                System.out.println("Change: PHP" + Money.format(result.getChange()));
+                System.out.println("Change breakdown: " + vendingService.describePieces(result.getChangePieces()));
+            } else if (result.getReturnedPieces().length > 0) {
+                System.out.println("Money returned: " + vendingService.describePieces(result.getReturnedPieces()));
+            }
+            System.out.println(result.getMessage());
         } else {
             System.out.println("Slot " + slotNumber + " is empty. Please select a valid slot.");
         }
     }
 
+    /**
+     * Asks the number of pieces of each denomination
+     * 
+     * @param scanner        the scanner used to get user input
+     * @param vendingService the vending service used
+     * @param prompt         the prompt, given the denomination in pesos and
+     *                       whether it is coins or bills
+     * @return the pieces of each denomination
+     */
+    private static int[] askPieces(Scanner scanner, VendingService vendingService, String prompt) {
+        long[] denominations = vendingService.getDenominations();
+        int[] pieces = new int[denominations.length];
+        for (int i = 0; i < denominations.length; i++) {
+            String kind = denominations[i] < Money.pesos(20) ? "coins" : "bills";
+            System.out.printf(prompt, denominations[i] / Money.CENTAVOS_PER_PESO, kind);
+            pieces[i] = scanner.nextInt();
+            scanner.nextLine();
+        }
+        return pieces;
+    }
+
     /**
      * Handles the Maintenance Option of the main menu.
      * 
      * @param scanner        the scanner used to get user input
-     * @param vendingMachine the vending machine used
+     * @param vendingService the vending service used
      */
-    private static void handleMaintenanceOption(Scanner scanner, RegularVendingMachine vendingMachine) {
+    private static void handleMaintenanceOption(Scanner scanner, VendingService vendingService) {
+        RegularVendingMachine vendingMachine = vendingService.getVendingMachine();
         System.out.println("========== MAINTENANCE ==========");
         System.out.println("1. Restock an item");
         System.out.println("2. Collect money");
         System.out.println("3. View transaction summary");
         System.out.println("4. Replenish Money");
-        System.out.println("5. Back to main menu");
+        System.out.println("5. Export transactions");
+        System.out.println("6. Reconcile cash");
+        System.out.println("7. View metrics");
+        System.out.println("8. Back to main menu");
         System.out.print("Enter your choice: ");
         int choice = scanner.nextInt();
 
         switch (choice) {
             case 1:
                 vendingMachine.displayItems();
-                handleRestockOption(scanner, vendingMachine);
+                handleRestockOption(scanner, vendingService);
                 break;
             case 2:
-                handleCollectMoneyOption(vendingMachine);
+                handleCollectMoneyOption(vendingService);
                 break;
             case 3:
                 handleTransactionSummaryOption(vendingMachine);
                 break;
             case 4:
-                handleMoneyOption(scanner, vendingMachine);
+                handleMoneyOption(scanner, vendingService);
                 break;
             case 5:
+                handleExportOption(scanner, vendingMachine);
+                break;
+            case 6:
+                System.out.print(vendingMachine.getCashReconciliation());
+                break;
+            case 7:
+                System.out.print(vendingMachine.getMetrics().toText());
+                break;
+            case 8:
                 break;
             default:
                 System.out.println("ERROR: INPUT NOT A VALID CHOICE!");
@@ -157,9 +178,10 @@ public class Main {
      * Handles the Restock option of the Maintenance Feature.
      * 
      * @param scanner        the scanner used to get user input
-     * @param vendingMachine the vending machine used
+     * @param vendingService the vending service used
      */
-    private static void handleRestockOption(Scanner scanner, RegularVendingMachine vendingMachine) {
+    private static void handleRestockOption(Scanner scanner, VendingService vendingService) {
+        RegularVendingMachine vendingMachine = vendingService.getVendingMachine();
         System.out.print("Enter the slot number to restock: ");
         int slotNumber = scanner.nextInt();
 
@@ -172,10 +194,11 @@ public class Main {
             System.out.print("Enter the quantity to add: ");
             int quantity = scanner.nextInt();
 
-            vendingMachine.restock(item, quantity, slotNumber);
-            itemSlot = vendingMachine.getSlot(slotNumber); // Get the updated ItemSlot after restocking
-            System.out.println("Restock successful!");
-            System.out.println("New quantity: " + itemSlot.getQuantity()); // print the updated quantity
+            VendingResult result = vendingService.restock(new RestockRequest(slotNumber, item, quantity));
+            System.out.println(result.getMessage());
+            if (result.isSuccessful()) {
+                System.out.println("New quantity: " + result.getAmount());
+            }
         } else {
             System.out.println("Slot " + slotNumber + " is empty. Please select a valid slot.");
         }
@@ -184,11 +207,13 @@ public class Main {
     /**
      * Handles the Collect Money Option of the Maintenance Feature.
      * 
-     * @param vendingMachine the vending machine used
+     * @param vendingService the vending service used
      */
-    private static void handleCollectMoneyOption(RegularVendingMachine vendingMachine) {
-        double collectedMoney = vendingMachine.collectMoney();
-        System.out.println("Collected money: PHP" + collectedMoney);
+    private static void handleCollectMoneyOption(VendingService vendingService) {
+        VendingResult result = vendingService.collect();
+        System.out.println("Collected money: PHP" + Money.format(result.getAmount()));
+        System.out.println(result.getMessage());
+        System.out.println("Current balance: PHP" + Money.format(vendingService.getVendingMachine().getBalance()));
     }
 
     /**
@@ -201,51 +226,40 @@ public class Main {
         System.out.println("=========================================");
     }
 
-    private static void handleMoneyOption(Scanner scanner, RegularVendingMachine vendingMachine) {
-        System.out.println("========== REPLENISH MONEY ==========");
-        System.out.print("Enter the amount to replenish [PHP 1]: ");
-        int quantity1 = scanner.nextInt();
-        scanner.nextLine();
-
-        System.out.print("Enter the amount to replenish [PHP 5] : ");
-        int quantity2 = scanner.nextInt();
-        scanner.nextLine();
-
-        System.out.print("Enter the amount to replenish [PHP 10]: ");
-        int quantity3 = scanner.nextInt();
-        scanner.nextLine();
-
-        System.out.print("Enter the amount to replenish [PHP 20]: ");
-        int quantity4 = scanner.nextInt();
-        scanner.nextLine();
-
-        System.out.print("Enter the amount to replenish [PHP 50]: ");
-        int quantity5 = scanner.nextInt();
-        scanner.nextLine();
-
-        System.out.print("Enter the amount to replenish [PHP 100]: ");
-        int quantity6 = scanner.nextInt();
-        scanner.nextLine();
-
-        System.out.print("Enter the amount to replenish [PHP 200]: ");
-        int quantity7 = scanner.nextInt();
-        scanner.nextLine();
-
-        System.out.print("Enter the amount to replenish [PHP 500]: ");
-        int quantity8 = scanner.nextInt();
-        scanner.nextLine();
+    /**
+     * Handles the Export Transactions option of the Maintenance Feature.
+     * Files ending in .json or .ndjson are exported as NDJSON, others as CSV.
+     * 
+     * @param scanner        the scanner used to get user input
+     * @param vendingMachine the vending machine used
+     */
+    private static void handleExportOption(Scanner scanner, RegularVendingMachine vendingMachine) {
+        System.out.print("Enter the file to export to: ");
+        String fileName = scanner.next();
+        int format = fileName.endsWith(".json") || fileName.endsWith(".ndjson") ? TransactionExporter.NDJSON
+                : TransactionExporter.CSV;
+
+        try {
+            int exported = new TransactionExporter(vendingMachine).export(Paths.get(fileName), format);
+            System.out.println(exported + " transactions exported to " + fileName);
+        } catch (IOException e) {
+            System.out.println("ERROR: Could not export the transactions: " + e.getMessage());
+        }
+    }
 
-        vendingMachine.replenishMoney(1, quantity1);
-        vendingMachine.replenishMoney(5, quantity2);
-        vendingMachine.replenishMoney(10, quantity3);
-        vendingMachine.replenishMoney(20, quantity4);
-        vendingMachine.replenishMoney(50, quantity5);
-        vendingMachine.replenishMoney(100, quantity6);
-        vendingMachine.replenishMoney(200, quantity7);
-        vendingMachine.replenishMoney(500, quantity8);
+    /**
+     * Handles the Replenish Money option of the Maintenance Feature.
+     * 
+     * @param scanner        the scanner used to get user input
+     * @param vendingService the vending service used
+     */
+    private static void handleMoneyOption(Scanner scanner, VendingService vendingService) {
+        System.out.println("========== REPLENISH MONEY ==========");
+        int[] pieces = askPieces(scanner, vendingService, "Enter the amount to replenish [PHP %d]: ");
 
-        System.out.println("Money replenished successfully!");
-        System.out.println("Current balance: PHP" + vendingMachine.getBalance());
+        VendingResult result = vendingService.replenish(new ReplenishRequest(pieces));
+        System.out.println(result.getMessage());
+        System.out.println("Current balance: PHP" + Money.format(vendingService.getVendingMachine().getBalance()));
     }
 
     /**
@@ -256,7 +270,7 @@ public class Main {
     private static void handleExitOption(RegularVendingMachine vendingMachine) {
         System.out.println("Exiting program...");
         System.out.println("Thank you for using the vending machine!");
-
+        vendingMachine.closeJournal();
     }
 
     /**
@@ -311,25 +325,25 @@ public class Main {
 
         switch (choice) {
             case 1:
-                vendingMachine.prepareMeal("Halo Halo");
+                vendingMachine.prepareMeal(0);
                 break;
             case 2:
-                vendingMachine.prepareMeal("Ube Milkshake");
+                vendingMachine.prepareMeal(1);
                 break;
             case 3:
-                vendingMachine.prepareMeal("Special Turon");
+                vendingMachine.prepareMeal(2);
                 break;
             case 4:
-                vendingMachine.prepareMeal("Banana Milk");
+                vendingMachine.prepareMeal(3);
                 break;
             case 5:
-                vendingMachine.prepareMeal("Ube Banana Split");
+                vendingMachine.prepareMeal(4);
                 break;
             case 6:
-                vendingMachine.prepareMeal("Jackfruit Delight");
+                vendingMachine.prepareMeal(5);
                 break;
             case 7:
-                vendingMachine.prepareMeal("Red Bean Milk Tea");
+                vendingMachine.prepareMeal(6);
                 break;
             case 8:
                 break;
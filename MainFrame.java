@@ -1,6 +1,9 @@
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.nio.file.Paths;
+import javax.management.JMException;
 import javax.swing.*;
 
 /**
@@ -24,7 +27,20 @@ public class MainFrame {
 
         // Initialize the vending machines
         this.vendingMachine = new RegularVendingMachine();
+        try {
+            this.vendingMachine.openJournal(Paths.get(RegularVendingMachine.JOURNAL_FILE),
+                    Paths.get(RegularVendingMachine.SNAPSHOT_FILE));
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "Could not open the transaction journal: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
         this.specialVendingMachine = new SpecialVendingMachine(vendingMachine);
+        try {
+            new VendingMachineMBeans(specialVendingMachine.getVendingService()).register();
+        } catch (JMException e) {
+            JOptionPane.showMessageDialog(null, "Could not register the management beans: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+        }
 
         initializeHeader();
         initializeMainMenu();
@@ -109,7 +125,7 @@ public class MainFrame {
      * Method linked to Buy Button to handle Buy Frame and its operations.
      */
     private void handleBuyOption() {
-        BuyFrame buyFrame = new BuyFrame(vendingMachine);
+        BuyFrame buyFrame = new BuyFrame(specialVendingMachine.getVendingService());
         buyFrame.setVisible(true);
     }
 
@@ -118,7 +134,7 @@ public class MainFrame {
      * operations.
      */
     private void handleMaintenanceOption() {
-        MaintenanceFrame maintenanceFrame = new MaintenanceFrame(vendingMachine);
+        MaintenanceFrame maintenanceFrame = new MaintenanceFrame(specialVendingMachine.getVendingService());
         maintenanceFrame.setVisible(true);
     }
 
@@ -136,6 +152,7 @@ public class MainFrame {
      */
     private void handleExitOption() {
         this.mainFrame.dispose();
+        this.vendingMachine.closeJournal();
         System.exit(0);
     }
 }
\ No newline at end of file
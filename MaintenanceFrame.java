@@ -2,25 +2,32 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 /**
  * This class represent the Maintenance Frame in the Main Frame for
  * the GUI of the vending machine application.
  */
 public class MaintenanceFrame extends JFrame {
+    private VendingService vendingService;
     private RegularVendingMachine vendingMachine;
+    private InventoryTableModel inventoryTableModel;
 
     /**
      * Constructs the Maintenance Frame for the vending machine's GUI.
      * 
-     * @param vendingMachine the RegularVendingMachine instance used for the
-     *                       application.
+     * @param vendingService the vending service used to maintain the machine
      */
-    public MaintenanceFrame(RegularVendingMachine vendingMachine) {
-        this.vendingMachine = vendingMachine;
+    public MaintenanceFrame(VendingService vendingService) {
+        this.vendingService = vendingService;
+        this.vendingMachine = vendingService.getVendingMachine();
+        this.inventoryTableModel = new InventoryTableModel(vendingMachine);
 
         setTitle("Alishaimma Vending Machine: Maintenance");
-        setSize(400, 300);
+        setSize(400, 400);
         setLocationRelativeTo(null);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
 
@@ -31,9 +38,14 @@ public class MaintenanceFrame extends JFrame {
         maintenanceLabel.setHorizontalAlignment(SwingConstants.CENTER);
 
         JButton restockButton = new JButton("Restock an Item");
+        JButton changePriceButton = new JButton("Change a Price");
         JButton collectMoneyButton = new JButton("Collect Money");
         JButton transactionSummaryButton = new JButton("View Transaction Summary");
+        JButton salesReportButton = new JButton("View Sales Report");
+        JButton exportButton = new JButton("Export Transactions");
         JButton replenishMoneyButton = new JButton("Replenish Money");
+        JButton reconcileButton = new JButton("Reconcile Cash");
+        JButton metricsButton = new JButton("View Metrics");
         JButton backToMainMenuButton = new JButton("Back to Main Menu");
 
         restockButton.addActionListener(new ActionListener() {
@@ -43,6 +55,13 @@ public class MaintenanceFrame extends JFrame {
             }
         });
 
+        changePriceButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleChangePriceOption();
+            }
+        });
+
         collectMoneyButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -57,6 +76,20 @@ public class MaintenanceFrame extends JFrame {
             }
         });
 
+        salesReportButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                viewSalesReport();
+            }
+        });
+
+        exportButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleExportOption();
+            }
+        });
+
         replenishMoneyButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -64,6 +97,20 @@ public class MaintenanceFrame extends JFrame {
             }
         });
 
+        reconcileButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                viewCashReconciliation();
+            }
+        });
+
+        metricsButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                viewMetrics();
+            }
+        });
+
         backToMainMenuButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -71,12 +118,17 @@ public class MaintenanceFrame extends JFrame {
             }
         });
 
-        JPanel buttonPanel = new JPanel(new GridLayout(5, 1, 0, 10));
+        JPanel buttonPanel = new JPanel(new GridLayout(10, 1, 0, 10));
         buttonPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
         buttonPanel.add(restockButton);
+        buttonPanel.add(changePriceButton);
         buttonPanel.add(collectMoneyButton);
         buttonPanel.add(transactionSummaryButton);
+        buttonPanel.add(salesReportButton);
+        buttonPanel.add(exportButton);
         buttonPanel.add(replenishMoneyButton);
+        buttonPanel.add(reconcileButton);
+        buttonPanel.add(metricsButton);
         buttonPanel.add(backToMainMenuButton);
 
         mainPanel.add(maintenanceLabel, BorderLayout.NORTH);
@@ -86,32 +138,30 @@ public class MaintenanceFrame extends JFrame {
     }
 
     /**
-     * Handles the restock feature of the Maintence Frame.
+     * Stops showing the changes of the slots and closes the frame
      */
-    private void handleRestockOption() {
-        // Update the available items with current quantities
-        StringBuilder itemsText = new StringBuilder();
-        itemsText.append("*===========================================================*\n");
-        itemsText.append("│                     AVAILABLE ITEMS                       │\n");
-        itemsText.append("*============================================================*\n");
-        itemsText.append("| Slot  |      Item      |  Quantity  |  Price  |  Calories |\n");
-        itemsText.append("=============================================================\n");
-
-        for (int slotNumber = 0; slotNumber < 9; slotNumber++) {
-            ItemSlot itemSlot = vendingMachine.getSlot(slotNumber);
-            if (itemSlot != null) {
-                Item item = itemSlot.getItem();
-                itemsText.append(String.format("|  %-3d  |  %-13s |  %-9d |  P%-5.2f |  %-8.2f  |\n",
-                        slotNumber, item.getName(), itemSlot.getQuantity(), item.getPrice(), item.getCalories()));
-            }
-        }
-
-        itemsText.append("=============================================================\n");
+    @Override
+    public void dispose() {
+        inventoryTableModel.close();
+        super.dispose();
+    }
 
-        JTextArea textArea = new JTextArea(itemsText.toString());
-        textArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(textArea);
+    /**
+     * Shows the slots of the vending machine. The table is kept up to date by
+     * inventory events while it is shown.
+     */
+    private void showAvailableItems() {
+        JTable table = new JTable(inventoryTableModel);
+        JScrollPane scrollPane = new JScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(450, 250));
         JOptionPane.showMessageDialog(this, scrollPane, "Available Items", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Handles the restock feature of the Maintence Frame.
+     */
+    private void handleRestockOption() {
+        showAvailableItems();
 
         String slotNumberInput = JOptionPane.showInputDialog("Enter the slot number to restock:");
         String quantityInput = JOptionPane.showInputDialog("Enter the quantity to add:");
@@ -120,34 +170,23 @@ public class MaintenanceFrame extends JFrame {
             int slotNumber = Integer.parseInt(slotNumberInput);
             int quantityToAdd = Integer.parseInt(quantityInput);
 
-            if (slotNumber >= 0 && slotNumber < 9) {
-                ItemSlot slot = vendingMachine.getSlot(slotNumber);
-                if (slot != null) {
-                    int currentQuantity = slot.getQuantity();
-                    int maxCapacity = 10;
-
-                    if (currentQuantity + quantityToAdd <= maxCapacity) {
-                        Item item = slot.getItem();
-                        vendingMachine.restock(item, quantityToAdd, slotNumber);
-                        slot = vendingMachine.getSlot(slotNumber);
-
-                        String successMessage = "Restock successful!\n"
-                                + "Item: " + item.getName() + "\n"
-                                + "Current quantity: " + slot.getQuantity() + "\n"
-                                + "Added quantity: " + quantityToAdd + "\n"
-                                + "New quantity: " + slot.getQuantity();
-                        JOptionPane.showMessageDialog(this, successMessage, "Restock Successful",
-                                JOptionPane.INFORMATION_MESSAGE);
-                    } else {
-                        // When slot is full
-                        String errorMessage = "Slot " + slotNumber + " is full. Cannot add more items.";
-                        JOptionPane.showMessageDialog(this, errorMessage, "Restock Error", JOptionPane.ERROR_MESSAGE);
-                    }
+            if (vendingMachine.isSlotOccupied(slotNumber)) {
+                VendingResult result = vendingService.restock(new RestockRequest(slotNumber, null, quantityToAdd));
+                if (result.isSuccessful()) {
+                    String successMessage = "Restock successful!\n"
+                            + "Item: " + vendingMachine.getSlot(slotNumber).getItem().getName() + "\n"
+                            + "Added quantity: " + quantityToAdd + "\n"
+                            + "New quantity: " + result.getAmount();
+                    JOptionPane.showMessageDialog(this, successMessage, "Restock Successful",
+                            JOptionPane.INFORMATION_MESSAGE);
                 } else {
-                    // when slot is empty
-                    String errorMessage = "Slot " + slotNumber + " is empty. Please select a valid slot.";
-                    JOptionPane.showMessageDialog(this, errorMessage, "Restock Error", JOptionPane.ERROR_MESSAGE);
+                    JOptionPane.showMessageDialog(this, result.getMessage(), "Restock Error",
+                            JOptionPane.ERROR_MESSAGE);
                 }
+            } else if (slotNumber >= 0 && slotNumber < vendingMachine.getSlotCount()) {
+                // when slot is empty
+                String errorMessage = "Slot " + slotNumber + " is empty. Please select a valid slot.";
+                JOptionPane.showMessageDialog(this, errorMessage, "Restock Error", JOptionPane.ERROR_MESSAGE);
             } else {
                 // when slot is invalid
                 String errorMessage = "Invalid slot number. Please select a valid slot.";
@@ -159,60 +198,214 @@ public class MaintenanceFrame extends JFrame {
         }
     }
 
+    /**
+     * Handles the change price feature of the Maintenance Frame.
+     */
+    private void handleChangePriceOption() {
+        showAvailableItems();
+
+        String slotNumberInput = JOptionPane.showInputDialog("Enter the slot number of the item:");
+        String priceInput = JOptionPane.showInputDialog("Enter the new price:");
+        if (slotNumberInput == null || priceInput == null) {
+            return;
+        }
+
+        try {
+            int slotNumber = Integer.parseInt(slotNumberInput.trim());
+            long price = Money.parse(priceInput.trim());
+
+            VendingResult result = vendingService.changePrice(slotNumber, price);
+            if (result.isSuccessful()) {
+                JOptionPane.showMessageDialog(this, result.getMessage() + "\nNew price: PHP "
+                        + Money.format(result.getAmount()), "Price Changed", JOptionPane.INFORMATION_MESSAGE);
+            } else {
+                JOptionPane.showMessageDialog(this, result.getMessage(), "Price Error", JOptionPane.ERROR_MESSAGE);
+            }
+        } catch (NumberFormatException ex) {
+            String errorMessage = "Invalid input. Please enter a valid slot number and price.";
+            JOptionPane.showMessageDialog(this, errorMessage, "Price Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
     /**
      * Handles the collect money feature of the Maintenance Frame.
      */
     private void handleCollectMoneyOption() {
-        double collectedMoney = vendingMachine.collectMoney();
-        JOptionPane.showMessageDialog(this, "Collected Money: PHP " + collectedMoney, "Collect Money",
-                JOptionPane.INFORMATION_MESSAGE);
+        VendingResult result = vendingService.collect();
+        JOptionPane.showMessageDialog(this, "Collected Money: PHP " + Money.format(result.getAmount()) + "\n"
+                + result.getMessage(), "Collect Money", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Displays the cash reconciliation for the Maintenance Frame GUI: the pieces
+     * of each denomination the ledger expects against the pieces in the machine,
+     * and the cash box and sales totals
+     */
+    private void viewCashReconciliation() {
+        JTextArea textArea = new JTextArea(vendingMachine.getCashReconciliation());
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        textArea.setEditable(false);
+        JScrollPane scrollPane = new JScrollPane(textArea);
+        JOptionPane.showMessageDialog(this, scrollPane, "Cash Reconciliation", JOptionPane.INFORMATION_MESSAGE);
     }
 
     /**
      * Displays transaction summary for the Maintenance Frame GUI
      */
     private void viewTransactionSummary() {
-        StringBuilder transactionSummaryBuilder = new StringBuilder();
-        transactionSummaryBuilder.append("*=====================================*\n");
-        transactionSummaryBuilder.append("│          TRANSACTION SUMMARY        │\n");
-        transactionSummaryBuilder.append("*=====================================*\n");
-        transactionSummaryBuilder.append("| Item Name      | Quantity Sold       |\n");
-        transactionSummaryBuilder.append("=======================================\n");
-        for (Transaction transaction : vendingMachine.getTransactions()) {
-            Item item = transaction.getItem();
-            int quantity = transaction.getQuantity();
-            transactionSummaryBuilder.append(String.format("| %-15s | %-18d |\n", item.getName(), quantity));
+        TransactionSummaryFrame transactionSummaryFrame = new TransactionSummaryFrame(vendingMachine);
+        transactionSummaryFrame.setVisible(true);
+    }
+
+    /**
+     * Displays the sales report for the Maintenance Frame GUI: the revenue over
+     * recent periods, the split between meals and single items, today's revenue
+     * by hour and the best sellers
+     */
+    private void viewSalesReport() {
+        SalesAnalytics analytics = vendingMachine.getSalesAnalytics();
+        long now = System.currentTimeMillis();
+        long startOfToday = analytics.getStartOfDay(now);
+        long hour = 60L * 60 * 1000;
+        long day = 24 * hour;
+
+        StringBuilder reportBuilder = new StringBuilder();
+        reportBuilder.append("*==================================================*\n");
+        reportBuilder.append("│                   SALES REPORT                   │\n");
+        reportBuilder.append("*==================================================*\n");
+        reportBuilder.append(String.format("| %-28s | P%-17s |\n", "Last hour",
+                Money.format(analytics.getRevenue(now - hour, now + 1))));
+        reportBuilder.append(String.format("| %-28s | P%-17s |\n", "Today",
+                Money.format(analytics.getRevenue(startOfToday, now + 1))));
+        reportBuilder.append(String.format("| %-28s | P%-17s |\n", "Last 7 days",
+                Money.format(analytics.getRevenue(startOfToday - 6 * day, now + 1))));
+        reportBuilder.append(String.format("| %-28s | P%-17s |\n", "Last 30 days",
+                Money.format(analytics.getRevenue(startOfToday - 29 * day, now + 1))));
+        reportBuilder.append("====================================================\n");
+        reportBuilder.append(String.format("| %-28s | P%-17s |\n", "Meals (last 30 days)",
+                Money.format(analytics.getMealRevenue(startOfToday - 29 * day, now + 1))));
+        reportBuilder.append(String.format("| %-28s | P%-17s |\n", "Single items (last 30 days)",
+                Money.format(analytics.getSingleItemRevenue(startOfToday - 29 * day, now + 1))));
+        reportBuilder.append("====================================================\n");
+        reportBuilder.append("| Today by hour                                    |\n");
+        long[] hourlyRevenue = analytics.getBuckets(SalesAnalytics.HOUR, SalesAnalytics.REVENUE, startOfToday,
+                startOfToday + day);
+        for (int i = 0; i < hourlyRevenue.length; i++) {
+            if (hourlyRevenue[i] > 0) {
+                reportBuilder.append(String.format("| %02d:00 - %02d:59 %-14s | P%-17s |\n", i, i, "",
+                        Money.format(hourlyRevenue[i])));
+            }
         }
-        transactionSummaryBuilder.append("=======================================\n");
-        double totalSales = vendingMachine.getTotalSales();
-        transactionSummaryBuilder.append("Total Amount Collected: " + totalSales + "\n");
+        reportBuilder.append("====================================================\n");
+        reportBuilder.append("| Top Sellers       | Quantity Sold | Revenue      |\n");
+        long[] revenues = analytics.getRevenueByItem();
+        TransactionStore transactions = vendingMachine.getTransactionStore();
+        for (int itemId : analytics.getTopSellers(5)) {
+            reportBuilder.append(String.format("| %-17s | %-13d | P%-11s |\n",
+                    vendingMachine.getCatalogItem(itemId).getName(), transactions.getSoldQuantity(itemId),
+                    Money.format(revenues[itemId])));
+        }
+        reportBuilder.append("====================================================\n");
 
-        JTextArea textArea = new JTextArea(transactionSummaryBuilder.toString());
+        JTextArea textArea = new JTextArea(reportBuilder.toString());
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
         textArea.setEditable(false);
         JScrollPane scrollPane = new JScrollPane(textArea);
-        JOptionPane.showMessageDialog(this, scrollPane, "Transaction Summary", JOptionPane.INFORMATION_MESSAGE);
+        JOptionPane.showMessageDialog(this, scrollPane, "Sales Report", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Displays the metrics of the vending machine for the Maintenance Frame GUI:
+     * the purchase counters, the latencies of each operation and the gauges of
+     * the money and slots. The metrics are read again on Refresh, and the text
+     * shown can be saved to a file. Operations are only timed from the first
+     * time the metrics are read, so the latencies fill in from Refresh on.
+     */
+    private void viewMetrics() {
+        Object[] options = { "Refresh", "Save Snapshot", "Close" };
+        while (true) {
+            String snapshot = vendingMachine.getMetrics().toText();
+            JTextArea textArea = new JTextArea(snapshot, 25, 50);
+            textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+            textArea.setEditable(false);
+            JScrollPane scrollPane = new JScrollPane(textArea);
+            int choice = JOptionPane.showOptionDialog(this, scrollPane, "Metrics", JOptionPane.DEFAULT_OPTION,
+                    JOptionPane.INFORMATION_MESSAGE, null, options, options[0]);
+            if (choice == 1) {
+                saveMetricsSnapshot(snapshot);
+            } else if (choice != 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Saves a text snapshot of the metrics to a file chosen by the user
+     *
+     * @param snapshot the text snapshot
+     */
+    private void saveMetricsSnapshot(String snapshot) {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File("metrics.txt"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File file = fileChooser.getSelectedFile();
+        try {
+            Files.write(file.toPath(), snapshot.getBytes(StandardCharsets.UTF_8));
+            JOptionPane.showMessageDialog(this, "Metrics saved to " + file.getName(), "Metrics",
+                    JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not save the metrics: " + e.getMessage(), "Metrics",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Handles the export transactions feature of the Maintenance Frame. Files
+     * ending in .json or .ndjson are exported as NDJSON, others as CSV.
+     */
+    private void handleExportOption() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File("transactions.csv"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        File file = fileChooser.getSelectedFile();
+        String fileName = file.getName();
+        int format = fileName.endsWith(".json") || fileName.endsWith(".ndjson") ? TransactionExporter.NDJSON
+                : TransactionExporter.CSV;
+        try {
+            int exported = new TransactionExporter(vendingMachine).export(file.toPath(), format);
+            JOptionPane.showMessageDialog(this, exported + " transactions exported to " + fileName,
+                    "Export Transactions", JOptionPane.INFORMATION_MESSAGE);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not export the transactions: " + e.getMessage(),
+                    "Export Transactions", JOptionPane.ERROR_MESSAGE);
+        }
     }
 
     /**
      * Handles replenish money option of the Maintenance Frame for the GUI
      */
     private void handleReplenishMoneyOption() {
-        String[] denominations = { "PHP 1", "PHP 5", "PHP 10", "PHP 20", "PHP 50", "PHP 100", "PHP 200", "PHP 500" };
-        double[] amounts = { 1, 5, 10, 20, 50, 100, 200, 500 };
+        long[] denominations = vendingService.getDenominations();
+        int[] pieces = new int[denominations.length];
 
         for (int i = 0; i < denominations.length; i++) {
-            String input = JOptionPane.showInputDialog("Enter the quantity to replenish [" + denominations[i] + "]:");
+            String input = JOptionPane.showInputDialog(
+                    "Enter the quantity to replenish [PHP " + denominations[i] / Money.CENTAVOS_PER_PESO + "]:");
             try {
-                int quantity = Integer.parseInt(input);
-                if (quantity > 0) {
-                    vendingMachine.replenishMoney(amounts[i], quantity);
-                }
+                pieces[i] = Math.max(Integer.parseInt(input), 0);
             } catch (NumberFormatException e) {
                 // Do nothing if input is not more than 0 and a non integer value
             }
         }
 
-        JOptionPane.showMessageDialog(this, "Money replenished successfully!", "Replenish Money",
-                JOptionPane.INFORMATION_MESSAGE);
+        VendingResult result = vendingService.replenish(new ReplenishRequest(pieces));
+        JOptionPane.showMessageDialog(this, result.getMessage(), "Replenish Money",
+                result.isSuccessful() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.ERROR_MESSAGE);
     }
 }
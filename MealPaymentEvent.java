@@ -0,0 +1,48 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class represents the Flight Recorder event of the payment of a custom
+ * meal, from its recipe being made to its result and preparation steps being
+ * shown. The sale and the preparation of the meal are recorded as events of
+ * their own within it, so the time left over is spent on the recipe and on
+ * printing.
+ */
+@Name("vending.MealPayment")
+@Label("Meal Payment")
+@Category({ "Vending Machine", "Meals" })
+@Description("The payment of a custom meal")
+class MealPaymentEvent extends jdk.jfr.Event {
+    @Label("Items")
+    @Description("The number of items chosen for the meal")
+    private int itemCount;
+
+    @Label("Amount Paid")
+    @Description("The amount paid by the customer (in centavos)")
+    private long amountPaid;
+
+    @Label("Escrowed")
+    @Description("Whether the money was held in an escrow for the meal")
+    private boolean escrowed;
+
+    @Label("Sold")
+    @Description("Whether the meal was sold")
+    private boolean sold;
+
+    /**
+     * Fills in the event with the payment of a meal and its result
+     *
+     * @param itemCount the number of items chosen for the meal
+     * @param amount    the amount paid by the customer (in centavos)
+     * @param escrowed  true if the money was held in an escrow
+     * @param sold      true if the meal was sold
+     */
+    void set(int itemCount, long amount, boolean escrowed, boolean sold) {
+        this.itemCount = itemCount;
+        this.amountPaid = amount;
+        this.escrowed = escrowed;
+        this.sold = sold;
+    }
+}
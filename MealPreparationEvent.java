@@ -0,0 +1,33 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class represents the Flight Recorder event of the preparation steps of
+ * a meal being shown.
+ */
+@Name("vending.MealPreparation")
+@Label("Meal Preparation")
+@Category({ "Vending Machine", "Meals" })
+@Description("The preparation steps of a meal being shown")
+class MealPreparationEvent extends jdk.jfr.Event {
+    @Label("Meal")
+    @Description("The name of the meal")
+    private String meal;
+
+    @Label("Steps")
+    @Description("The number of item preparation steps shown")
+    private int stepCount;
+
+    /**
+     * Fills in the event with the meal prepared
+     *
+     * @param mealName  the name of the meal
+     * @param stepCount the number of item preparation steps shown
+     */
+    void set(String mealName, int stepCount) {
+        this.meal = mealName;
+        this.stepCount = stepCount;
+    }
+}
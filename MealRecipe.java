@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the recipe of a meal that can be prepared by the
+ * special vending machine. A recipe lists the slots of the regular vending
+ * machine it takes items from and how many pieces it takes from each. Its
+ * total price and calories are added up from the items in those slots when the
+ * recipe is made. The calories cannot change, since a slot keeps its item, but
+ * the price is added up again by refreshPrice, which the meal recipe registry
+ * calls when the price of an item of the recipe changes. A checkout of the
+ * meal always charges the prices of the moment.
+ * The slots of a recipe cannot be changed once it is made.
+ */
+public class MealRecipe {
+    private final int id;
+    private final String name;
+    private final int[] slotNumbers;
+    private final int[] quantities;
+    private final int pieceCount;
+    private final RegularVendingMachine vendingMachine;
+    private final double totalCalories;
+    private volatile long totalPrice;
+
+    /**
+     * This is the constructor of a meal recipe given the pieces it is made of.
+     * Each entry of the pieces is one item taken from that slot, so a slot can
+     * appear more than once.
+     *
+     * @param id             the id of the recipe (-1 for a custom meal)
+     * @param name           the name of the meal
+     * @param vendingMachine the regular vending machine whose slots are used
+     * @param pieces         the slot number of each item of the meal
+     */
+    public MealRecipe(int id, String name, RegularVendingMachine vendingMachine, int... pieces) {
+        ItemSlot[] slots = vendingMachine.getSlots();
+        int[] slotQuantities = new int[slots.length];
+        int slotCount = 0;
+
+        for (int slotNumber : pieces) {
+            if (slotNumber < 0 || slotNumber >= slots.length || slots[slotNumber] == null) {
+                throw new IllegalArgumentException("Invalid slot number in meal " + name + ": " + slotNumber);
+            }
+            if (slotQuantities[slotNumber] == 0) {
+                slotCount++;
+            }
+            slotQuantities[slotNumber]++;
+        }
+
+        this.id = id;
+        this.name = name;
+        this.slotNumbers = new int[slotCount];
+        this.quantities = new int[slotCount];
+        this.pieceCount = pieces.length;
+        this.vendingMachine = vendingMachine;
+
+        int index = 0;
+        for (int i = 0; i < slotQuantities.length; i++) {
+            if (slotQuantities[i] > 0) {
+                slotNumbers[index] = i;
+                quantities[index] = slotQuantities[i];
+                index++;
+            }
+        }
+
+        double calories = 0;
+        for (int i = 0; i < slotNumbers.length; i++) {
+            calories += slots[slotNumbers[i]].getItem().getCalories() * quantities[i];
+        }
+        this.totalCalories = calories;
+        refreshPrice();
+    }
+
+    /**
+     * Gets the id of the recipe
+     *
+     * @return the id of the recipe (-1 for a custom meal)
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the name of the meal
+     *
+     * @return the name of the meal
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of different slots used by the recipe
+     *
+     * @return the number of slots used
+     */
+    public int getSlotCount() {
+        return slotNumbers.length;
+    }
+
+    /**
+     * Gets the slot number of one of the slots used by the recipe. Slot numbers
+     * are in increasing order.
+     *
+     * @param index the index of the slot in the recipe
+     * @return the slot number
+     */
+    public int getSlotNumber(int index) {
+        return slotNumbers[index];
+    }
+
+    /**
+     * Gets the number of pieces taken from one of the slots used by the recipe
+     *
+     * @param index the index of the slot in the recipe
+     * @return the quantity taken from the slot
+     */
+    public int getQuantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Gets the total number of pieces in the meal
+     *
+     * @return the number of pieces
+     */
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    /**
+     * Checks if the recipe takes items from a slot
+     *
+     * @param slotNumber the slot number
+     * @return true if the recipe uses the slot
+     */
+    public boolean usesSlot(int slotNumber) {
+        return Arrays.binarySearch(slotNumbers, slotNumber) >= 0;
+    }
+
+    /**
+     * Gets the total price of the meal, as of the last time it was added up
+     *
+     * @return the total price (in centavos)
+     */
+    public long getTotalPrice() {
+        return totalPrice;
+    }
+
+    /**
+     * Gets the total calories of the meal from the items in its slots
+     *
+     * @return the total calories
+     */
+    public double getTotalCalories() {
+        return totalCalories;
+    }
+
+    /**
+     * Adds up the total price of the meal again from the current prices of its
+     * items. Refreshes are made one at a time, so the last one to finish has
+     * read the latest prices.
+     */
+    synchronized void refreshPrice() {
+        long price = 0;
+        for (int i = 0; i < slotNumbers.length; i++) {
+            price += vendingMachine.getSlot(slotNumbers[i]).getItem().getPrice() * quantities[i];
+        }
+        totalPrice = price;
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the list of predefined meals of the special vending
+ * machine. The recipes are made once when the registry is created, and can then
+ * be found by id or by name. The registry listens to the stock of the machine
+ * and has a recipe add up its price again when the price of one of its items
+ * changes.
+ */
+public class MealRecipeRegistry implements InventoryListener {
+    private MealRecipe[] recipes;
+    private Map<String, MealRecipe> recipesByName;
+
+    /**
+     * This is the constructor of a meal recipe registry given the recipes in it.
+     * The id of each recipe must be its index in the array.
+     *
+     * @param recipes the recipes of the predefined meals
+     */
+    public MealRecipeRegistry(MealRecipe[] recipes) {
+        this.recipes = recipes.clone();
+        this.recipesByName = new HashMap<>();
+
+        for (int i = 0; i < recipes.length; i++) {
+            if (recipes[i].getId() != i) {
+                throw new IllegalArgumentException("Recipe " + recipes[i].getName() + " should have id " + i);
+            }
+            recipesByName.put(recipes[i].getName(), recipes[i]);
+            recipesByName.put(recipes[i].getName().toLowerCase(), recipes[i]);
+        }
+    }
+
+    /**
+     * Creates the registry of the predefined meals using the default slots of the
+     * regular vending machine. A meal that needs a slot the machine does not
+     * have, or an empty one, is left out, and the meals after it take the next
+     * ids. The registry is added to the inventory listeners of the machine.
+     *
+     * @param vendingMachine the regular vending machine whose slots are used
+     * @return the registry of the predefined meals
+     */
+    public static MealRecipeRegistry createDefault(RegularVendingMachine vendingMachine) {
+        List<MealRecipe> recipes = new ArrayList<>();
+        addRecipe(recipes, "Halo Halo", vendingMachine, 0, 1, 2, 3, 4, 5, 6, 7, 8);
+        addRecipe(recipes, "Ube Milkshake", vendingMachine, 1, 1, 8, 8, 8, 8);
+        addRecipe(recipes, "Special Turon", vendingMachine, 0, 3, 3, 6);
+        addRecipe(recipes, "Banana Milk", vendingMachine, 3, 3, 8, 8, 8, 8);
+        addRecipe(recipes, "Ube Banana Split", vendingMachine, 1, 1, 3, 3, 2);
+        addRecipe(recipes, "Jackfruit Delight", vendingMachine, 6, 6, 8, 2, 4, 5);
+        addRecipe(recipes, "Red Bean Milk Tea", vendingMachine, 0, 8, 8, 8);
+
+        MealRecipeRegistry registry = new MealRecipeRegistry(recipes.toArray(new MealRecipe[0]));
+        vendingMachine.addInventoryListener(registry);
+        return registry;
+    }
+
+    /**
+     * Adds a recipe with the next id to a list of recipes, unless the machine
+     * is missing one of its slots
+     *
+     * @param recipes        the recipes made so far
+     * @param name           the name of the meal
+     * @param vendingMachine the regular vending machine whose slots are used
+     * @param pieces         the slot number of each item of the meal
+     */
+    private static void addRecipe(List<MealRecipe> recipes, String name, RegularVendingMachine vendingMachine,
+            int... pieces) {
+        for (int slotNumber : pieces) {
+            if (slotNumber >= vendingMachine.getSlotCount() || vendingMachine.getSlot(slotNumber) == null) {
+                return;
+            }
+        }
+        recipes.add(new MealRecipe(recipes.size(), name, vendingMachine, pieces));
+    }
+
+    /**
+     * Has every recipe using a slot add up its price again when the price or
+     * the item of the slot changes
+     *
+     * @param event the change of the slot
+     */
+    @Override
+    public void slotChanged(InventoryEvent event) {
+        if (!event.isChanged(InventoryEvent.PRICE | InventoryEvent.ITEM)) {
+            return;
+        }
+        for (MealRecipe recipe : recipes) {
+            if (recipe.usesSlot(event.getSlotNumber())) {
+                recipe.refreshPrice();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of recipes in the registry
+     *
+     * @return the number of recipes
+     */
+    public int getRecipeCount() {
+        return recipes.length;
+    }
+
+    /**
+     * Gets a recipe by its id
+     *
+     * @param id the id of the recipe
+     * @return the recipe, or null if there is no recipe with that id
+     */
+    public MealRecipe getRecipe(int id) {
+        if (id >= 0 && id < recipes.length) {
+            return recipes[id];
+        }
+        return null;
+    }
+
+    /**
+     * Gets a recipe by its name, ignoring upper and lower case
+     *
+     * @param name the name of the meal
+     * @return the recipe, or null if there is no recipe with that name
+     */
+    public MealRecipe getRecipe(String name) {
+        MealRecipe recipe = recipesByName.get(name);
+        if (recipe == null) {
+            recipe = recipesByName.get(name.toLowerCase());
+        }
+        return recipe;
+    }
+}
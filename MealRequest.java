@@ -0,0 +1,161 @@
+/**
+ * This class represents a request to buy a meal, with the money inserted by
+ * the user. The meal is either a predefined meal, found by id or by name, a
+ * custom meal made of the given pieces, or a recipe already made. The money is
+ * given either as its pieces or as the escrow it was inserted into.
+ */
+public class MealRequest {
+    private MealRecipe recipe;
+    private int mealId;
+    private String mealName;
+    private int[] pieces;
+    private int[] payment;
+    private CoinEscrow escrow;
+
+    /**
+     * This is the constructor of a meal request. Meal requests are made with
+     * the static methods of this class.
+     */
+    private MealRequest(MealRecipe recipe, int mealId, String mealName, int[] pieces, int[] payment,
+            CoinEscrow escrow) {
+        this.recipe = recipe;
+        this.mealId = mealId;
+        this.mealName = mealName;
+        this.pieces = pieces;
+        this.payment = payment;
+        this.escrow = escrow;
+    }
+
+    /**
+     * Makes a request for a predefined meal given its id
+     * 
+     * @param mealId  the id of the predefined meal
+     * @param payment the pieces of each denomination inserted
+     * @return the meal request
+     */
+    public static MealRequest predefined(int mealId, int[] payment) {
+        return new MealRequest(null, mealId, null, null, payment, null);
+    }
+
+    /**
+     * Makes a request for a predefined meal given its name
+     * 
+     * @param mealName the name of the predefined meal
+     * @param payment  the pieces of each denomination inserted
+     * @return the meal request
+     */
+    public static MealRequest predefined(String mealName, int[] payment) {
+        return new MealRequest(null, -1, mealName, null, payment, null);
+    }
+
+    /**
+     * Makes a request for a custom meal
+     * 
+     * @param pieces  the slot number of each item of the meal (a slot can appear
+     *                more than once)
+     * @param payment the pieces of each denomination inserted
+     * @return the meal request
+     */
+    public static MealRequest custom(int[] pieces, int[] payment) {
+        return new MealRequest(null, -1, null, pieces, payment, null);
+    }
+
+    /**
+     * Makes a request for a custom meal paid with the money in an escrow
+     * 
+     * @param pieces the slot number of each item of the meal (a slot can appear
+     *               more than once)
+     * @param escrow the escrow holding the money inserted
+     * @return the meal request
+     */
+    public static MealRequest custom(int[] pieces, CoinEscrow escrow) {
+        return new MealRequest(null, -1, null, pieces, null, escrow);
+    }
+
+    /**
+     * Makes a request for the meal of a recipe
+     * 
+     * @param recipe  the recipe of the meal
+     * @param payment the pieces of each denomination inserted
+     * @return the meal request
+     */
+    public static MealRequest of(MealRecipe recipe, int[] payment) {
+        return new MealRequest(recipe, recipe.getId(), null, null, payment, null);
+    }
+
+    /**
+     * Makes a request for the meal of a recipe paid with the money in an escrow
+     * 
+     * @param recipe the recipe of the meal
+     * @param escrow the escrow holding the money inserted
+     * @return the meal request
+     */
+    public static MealRequest of(MealRecipe recipe, CoinEscrow escrow) {
+        return new MealRequest(recipe, recipe.getId(), null, null, null, escrow);
+    }
+
+    /**
+     * Gets the recipe of the meal
+     * 
+     * @return the recipe, or null if the meal is given by id, by name or by its
+     *         pieces
+     */
+    public MealRecipe getRecipe() {
+        return recipe;
+    }
+
+    /**
+     * Checks if the request is for a custom meal
+     * 
+     * @return true if the meal is a custom meal, false if it is predefined
+     */
+    public boolean isCustom() {
+        return pieces != null;
+    }
+
+    /**
+     * Gets the id of the predefined meal
+     * 
+     * @return the id, or -1 if the meal is given by name or is a custom meal
+     */
+    public int getMealId() {
+        return mealId;
+    }
+
+    /**
+     * Gets the name of the predefined meal
+     * 
+     * @return the name, or null if the meal is given by id or is a custom meal
+     */
+    public String getMealName() {
+        return mealName;
+    }
+
+    /**
+     * Gets the items of the custom meal
+     * 
+     * @return the slot number of each item, or null for a predefined meal
+     */
+    public int[] getPieces() {
+        return pieces;
+    }
+
+    /**
+     * Gets the money inserted by the user
+     * 
+     * @return the pieces of each denomination, or null if the money is in an
+     *         escrow
+     */
+    public int[] getPayment() {
+        return payment;
+    }
+
+    /**
+     * Gets the escrow holding the money inserted by the user
+     * 
+     * @return the escrow, or null if the money is given as its pieces
+     */
+    public CoinEscrow getEscrow() {
+        return escrow;
+    }
+}
@@ -1,37 +1,97 @@
 /**
  * This class represent the money of the users and the money in the vending
- * machine
+ * machine. All amounts of money are kept in centavos (1 PHP = 100 centavos) so
+ * that prices, payments and totals are always exact.
  */
 public class Money {
-    private int[] denominations;
+    public static final long CENTAVOS_PER_PESO = 100;
+
+    private long[] denominations;
     private int[] quantities;
 
     /**
      * This is the constructor of a money object with the valid money denominations
      * and quantity
-     * 
+     *
      */
     public Money() {
-        denominations = new int[] { 1, 5, 10, 20, 50, 100, 200, 500 };
+        denominations = new long[] { pesos(1), pesos(5), pesos(10), pesos(20), pesos(50), pesos(100), pesos(200),
+                pesos(500) };
         quantities = new int[denominations.length];
     }
 
     /**
      * Gets the array of valid denominations
-     * 
-     * @return the array of denominations
+     *
+     * @return the array of denominations (in centavos)
      */
-    public int[] getDenominations() {
+    public long[] getDenominations() {
         return denominations;
     }
 
     /**
      * Gets the corresponding quantities of the denominations array
-     * 
+     *
      * @return the array of quantites
      */
     public int[] getQuantities() {
         return quantities;
     }
 
+    /**
+     * Converts a whole peso amount to centavos
+     *
+     * @param pesos the amount in pesos
+     * @return the amount in centavos
+     */
+    public static long pesos(long pesos) {
+        return pesos * CENTAVOS_PER_PESO;
+    }
+
+    /**
+     * Reads an amount in pesos with up to two decimal places (e.g. "12.50"
+     * becomes 1250)
+     *
+     * @param pesos the amount in pesos
+     * @return the amount in centavos
+     * @throws NumberFormatException if the text is not such an amount
+     */
+    public static long parse(String pesos) {
+        int point = pesos.indexOf('.');
+        if (point < 0) {
+            return pesos(Long.parseLong(pesos));
+        }
+
+        String fraction = pesos.substring(point + 1);
+        if (fraction.isEmpty() || fraction.length() > 2 || !Character.isDigit(fraction.charAt(0))
+                || !Character.isDigit(fraction.charAt(fraction.length() - 1))) {
+            throw new NumberFormatException("Invalid amount: " + pesos);
+        }
+        String whole = pesos.substring(0, point);
+        long wholeCentavos = pesos(whole.isEmpty() ? 0 : Long.parseLong(whole));
+        long fractionCentavos = Long.parseLong(fraction.length() == 1 ? fraction + "0" : fraction);
+        return whole.startsWith("-") ? wholeCentavos - fractionCentavos : wholeCentavos + fractionCentavos;
+    }
+
+    /**
+     * Formats an amount in centavos as pesos with two decimal places (e.g. 1250
+     * becomes "12.50")
+     *
+     * @param centavos the amount in centavos
+     * @return the formatted amount
+     */
+    public static String format(long centavos) {
+        StringBuilder formatted = new StringBuilder();
+        if (centavos < 0) {
+            formatted.append('-');
+            centavos = -centavos;
+        }
+
+        long fraction = centavos % CENTAVOS_PER_PESO;
+        formatted.append(centavos / CENTAVOS_PER_PESO).append('.');
+        if (fraction < 10) {
+            formatted.append('0');
+        }
+        return formatted.append(fraction).toString();
+    }
 }
@@ -34,15 +34,10 @@ public class PredefinedMealFrame extends JFrame {
 
         JPanel mainPanel = new JPanel(new BorderLayout());
 
-        String[] predefinedMeals = {
-                "Halo Halo",
-                "Ube Milkshake",
-                "Special Turon",
-                "Banana Milk",
-                "Ube Banana Split",
-                "Jackfruit Delight",
-                "Red Bean Milk Tea"
-        };
+        String[] predefinedMeals = new String[vendingMachine.getPredefinedMealCount()];
+        for (int i = 0; i < predefinedMeals.length; i++) {
+            predefinedMeals[i] = vendingMachine.getPredefinedMeal(i).getName();
+        }
 
         JList<String> mealsList = new JList<>(predefinedMeals);
         mealsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -54,8 +49,7 @@ public class PredefinedMealFrame extends JFrame {
             public void actionPerformed(ActionEvent e) {
                 int selectedIndex = mealsList.getSelectedIndex();
                 if (selectedIndex >= 0 && selectedIndex < predefinedMeals.length) {
-                    String selectedMeal = predefinedMeals[selectedIndex];
-                    handlePredefinedMeal(selectedMeal);
+                    handlePredefinedMeal(vendingMachine.getPredefinedMeal(selectedIndex));
                 } else {
                     JOptionPane.showMessageDialog(PredefinedMealFrame.this,
                             "Please select a valid meal from the list.", "Error", JOptionPane.ERROR_MESSAGE);
@@ -83,188 +77,79 @@ public class PredefinedMealFrame extends JFrame {
     /**
      * Handles the purchase of a predefined meal
      * 
-     * @param selectedMeal the specific predefined meal chosen
+     * @param recipe the recipe of the specific predefined meal chosen
      */
-    private void handlePredefinedMeal(String selectedMeal) {
-        ItemSlot[] mealItems = vendingMachine.getPredefinedMealItems(selectedMeal);
-        double totalPrice = calculateTotalPrice(mealItems);
-        double totalCalories = calculateTotalCalories(mealItems);
-    
+    private void handlePredefinedMeal(MealRecipe recipe) {
         // Display the items used to make the predefined meal
         StringBuilder summaryText = new StringBuilder();
         summaryText.append("===== MEAL SUMMARY =====\n");
         summaryText.append("Selected items for your meal:\n");
         summaryText.append("Item Name      |  Quantity  |  Price  |  Calories\n");
-    
-        for (ItemSlot itemSlot : mealItems) {
-            Item item = itemSlot.getItem();
-            int quantity = itemSlot.getQuantity();
-            double price = item.getPrice();
-            double calories = item.getCalories();
-            summaryText.append(String.format("%-15s |   %-8d |  P%-5.2f |  %-8.2f\n",
-                    item.getName(), quantity, price, calories));
+
+        for (int i = 0; i < recipe.getSlotCount(); i++) {
+            Item item = regularVendingMachine.getSlot(recipe.getSlotNumber(i)).getItem();
+            summaryText.append(String.format("%-15s |   %-8d |  P%-6s|  %-8.2f\n",
+                    item.getName(), recipe.getQuantity(i), Money.format(item.getPrice()), item.getCalories()));
         }
-    
-        summaryText.append("Total Price: PHP ").append(totalPrice).append("\n");
-        summaryText.append("Total Calories: ").append(totalCalories).append("\n");
-    
+
+        summaryText.append("Total Price: PHP ").append(Money.format(recipe.getTotalPrice())).append("\n");
+        summaryText.append("Total Calories: ").append(recipe.getTotalCalories()).append("\n");
+
         JOptionPane.showMessageDialog(this, summaryText.toString(), "Meal Summary", JOptionPane.INFORMATION_MESSAGE);
         this.toFront();
-    
+
         // Payment process of checkout
-        double amountPaid = askPaymentAmount();
-        vendingMachine.handlePaymentCustomMeal(mealItems, amountPaid);
-    
-        // handles sellItem method so that variables are updated (quantity, total sales, etc)
-        for (ItemSlot itemSlot : mealItems) {
-            Item item = itemSlot.getItem();
-            String itemName = item.getName();
-            int quantity = itemSlot.getQuantity();
-    
-            int slotNumber = -1;
-            for (int i = 0; i < 9; i++) { // find slot number based on item name
-                ItemSlot slot = regularVendingMachine.getSlot(i);
-                if (slot != null && slot.getItem().getName().equals(itemName)) {
-                    slotNumber = i;
-                    break;
-                }
-            }
-    
-            if (slotNumber != -1) {
-                // handles sellItem method so that variables are updated (quantity, total sales, etc)
-                regularVendingMachine.sellItem(slotNumber, quantity, amountPaid, totalPrice);
-            } else {
-                System.out.println("Item not found in the vending machine: " + itemName);
+        VendingService vendingService = vendingMachine.getVendingService();
+        CoinEscrow escrow = CashPanel.askPayment(this, vendingService, recipe.getTotalPrice());
+        if (escrow == null) {
+            return;
+        }
+
+        // the purchase takes the payment, dispenses the items and gives the change
+        // in one transaction, or gives the payment back, in the background
+        MealRequest request = MealRequest.of(recipe, escrow);
+        new CheckoutWorker(this, () -> vendingService.buyMeal(request),
+                result -> showResult(vendingService, recipe, result)).start();
+    }
+
+    /**
+     * Shows the result of the purchase and the preparation steps of the meal if it
+     * was successful
+     * 
+     * @param vendingService the vending service used for the purchase
+     * @param recipe         the recipe of the meal bought
+     * @param result         the result of the purchase
+     */
+    private void showResult(VendingService vendingService, MealRecipe recipe, VendingResult result) {
+        if (!result.isSuccessful()) {
+            String message = result.getMessage();
+            if (result.getReturnedPieces().length > 0) {
+                message += "\nMoney returned: " + vendingService.describePieces(result.getReturnedPieces());
             }
+            JOptionPane.showMessageDialog(this, message, "Purchase Error", JOptionPane.ERROR_MESSAGE);
+            return;
         }
-    
+        JOptionPane.showMessageDialog(this,
+                "Payment successful!\nTotal Price: PHP " + Money.format(result.getTotalPrice()) + "\nChange: PHP "
+                        + Money.format(result.getChange()) + "\nChange breakdown: "
+                        + vendingService.describePieces(result.getChangePieces()),
+                "Payment Successful", JOptionPane.INFORMATION_MESSAGE);
+
         StringBuilder preparationStepsText = new StringBuilder();
         preparationStepsText.append("===== PREPARATION STEPS =====\n");
-    
+
         // Preparation steps based on items used
-        for (ItemSlot itemSlot : mealItems) {
-            Item item = itemSlot.getItem();
-            String itemName = item.getName();
-    
-            switch (itemName.toLowerCase()) {
-                case "red bean":
-                    preparationStepsText.append("Preparing the tender Red Beans with care...\n");
-                    break;
-                case "ube ice cream":
-                    preparationStepsText.append("Scooping out the velvety Ube Ice Cream...\n");
-                    break;
-                case "leche flan":
-                    preparationStepsText.append("Whisking the Leche Flan to a silky perfection...\n");
-                    break;
-                case "banana":
-                    preparationStepsText.append("Peeling and slicing the ripe Banana...\n");
-                    break;
-                case "nata de coco":
-                    preparationStepsText.append("Cutting the chewy Nata de Coco into delightful cubes...\n");
-                    break;
-                case "kaong":
-                    preparationStepsText.append("Rinsing and picking out the succulent Kaong...\n");
-                    break;
-                case "jackfruit":
-                    preparationStepsText.append("Carefully removing the sweet Jackfruit pods...\n");
-                    break;
-                case "pinipig":
-                    preparationStepsText.append("Toasting the crunchy Pinipig to a golden delight...\n");
-                    break;
-                case "milk":
-                    preparationStepsText.append("Pouring the creamy Milk into a jug...\n");
-                    break;
-                default:
-                    preparationStepsText.append("Preparing ").append(itemName).append(" with a pinch of magic...\n");
-                    break;
-            }
+        for (int i = 0; i < recipe.getSlotCount(); i++) {
+            String itemName = regularVendingMachine.getSlot(recipe.getSlotNumber(i)).getItem().getName();
+            preparationStepsText.append(vendingMachine.getPreparationStep(itemName)).append("\n");
         }
-    
+
         preparationStepsText.append("Putting it all together with love and care...\n");
         preparationStepsText.append("Meal Done! Enjoy your creation!\n");
-    
+
         JOptionPane.showMessageDialog(this, preparationStepsText.toString(), "Preparation Steps",
                 JOptionPane.INFORMATION_MESSAGE);
         JOptionPane.showMessageDialog(this, "Meal preparation is complete. Enjoy your creation!", "Done",
                 JOptionPane.INFORMATION_MESSAGE);
     }
-    
-
-    /**
-     * Asks for the payment in specific denominations using the GUI
-     * 
-     * @return amount paid
-     */
-    private double askPaymentAmount() {
-        double amount = 0;
-        String input;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 1] coins:");
-        int quantity1 = Integer.parseInt(input);
-        amount += quantity1 * 1;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 5] coins:");
-        int quantity2 = Integer.parseInt(input);
-        amount += quantity2 * 5;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 10] coins:");
-        int quantity3 = Integer.parseInt(input);
-        amount += quantity3 * 10;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 20] bills:");
-        int quantity4 = Integer.parseInt(input);
-        amount += quantity4 * 20;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 50] bills:");
-        int quantity5 = Integer.parseInt(input);
-        amount += quantity5 * 50;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 100] bills:");
-        int quantity6 = Integer.parseInt(input);
-        amount += quantity6 * 100;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 200] bills:");
-        int quantity7 = Integer.parseInt(input);
-        amount += quantity7 * 200;
-
-        input = JOptionPane.showInputDialog(this, "Enter the number of [PHP 500] bills:");
-        int quantity8 = Integer.parseInt(input);
-        amount += quantity8 * 500;
-
-        return amount;
-    }
-
-    /**
-     * Calculates total price of items in chosen predfined meal
-     * 
-     * @param items items in chosen predfined meal
-     * @return total price of predefined meal purchased
-     */
-    private double calculateTotalPrice(ItemSlot[] items) {
-        double totalPrice = 0;
-        for (ItemSlot itemSlot : items) {
-            Item item = itemSlot.getItem();
-            double price = item.getPrice();
-            int quantity = itemSlot.getQuantity();
-            totalPrice += price * quantity;
-        }
-        return totalPrice;
-    }
-
-    /**
-     * Calculates total calories of items in chosen predfined meal
-     * 
-     * @param items items in chosen predfined meal
-     * @return total calories of predefined meal purchased
-     */
-    private double calculateTotalCalories(ItemSlot[] items) {
-        double totalCalories = 0;
-        for (ItemSlot itemSlot : items) {
-            Item item = itemSlot.getItem();
-            double calories = item.getCalories();
-            int quantity = itemSlot.getQuantity();
-            totalCalories += calories * quantity;
-        }
-        return totalCalories;
-    }
 }
@@ -86,7 +86,7 @@ public class PrepareMealFrame extends JFrame {
      * Creates method to access Custom Meal Frame
      */
     private void customMeal() {
-        CustomMealFrame customMealFrame = new CustomMealFrame(regularVendingMachine);
+        CustomMealFrame customMealFrame = new CustomMealFrame(specialVendingMachine.getVendingService());
         customMealFrame.setVisible(true);
 
     }
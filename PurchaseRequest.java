@@ -0,0 +1,78 @@
+/**
+ * This class represents a request to buy an item from a slot of the vending
+ * machine, with the money inserted by the user. The money is given either as
+ * its pieces or as the escrow it was inserted into.
+ */
+public class PurchaseRequest {
+    private int slotNumber;
+    private int quantity;
+    private int[] payment;
+    private CoinEscrow escrow;
+
+    /**
+     * This is the constructor of a purchase request
+     * 
+     * @param slotNumber the slot number of the desired item
+     * @param quantity   the quantity of the desired item
+     * @param payment    the pieces of each denomination inserted, in the order
+     *                   of Money's denominations
+     */
+    public PurchaseRequest(int slotNumber, int quantity, int[] payment) {
+        this.slotNumber = slotNumber;
+        this.quantity = quantity;
+        this.payment = payment;
+        this.escrow = null;
+    }
+
+    /**
+     * This is the constructor of a purchase request paid with the money in an
+     * escrow
+     * 
+     * @param slotNumber the slot number of the desired item
+     * @param quantity   the quantity of the desired item
+     * @param escrow     the escrow holding the money inserted
+     */
+    public PurchaseRequest(int slotNumber, int quantity, CoinEscrow escrow) {
+        this.slotNumber = slotNumber;
+        this.quantity = quantity;
+        this.payment = null;
+        this.escrow = escrow;
+    }
+
+    /**
+     * Gets the slot number of the desired item
+     * 
+     * @return the slot number
+     */
+    public int getSlotNumber() {
+        return slotNumber;
+    }
+
+    /**
+     * Gets the quantity of the desired item
+     * 
+     * @return the quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Gets the money inserted by the user
+     * 
+     * @return the pieces of each denomination, or null if the money is in an
+     *         escrow
+     */
+    public int[] getPayment() {
+        return payment;
+    }
+
+    /**
+     * Gets the escrow holding the money inserted by the user
+     * 
+     * @return the escrow, or null if the money is given as its pieces
+     */
+    public CoinEscrow getEscrow() {
+        return escrow;
+    }
+}
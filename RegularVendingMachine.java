@@ -1,38 +1,150 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
 /**
- * This class represents a regular vending machine
+ * This class represents a regular vending machine.
+ * The machine can be used by several purchase channels at the same time. Each
+ * slot has its own lock, and the money (denominations, balance and change)
+ * has one lock that is held while change is checked and paid out. When both
+ * are needed, slot locks are taken first in increasing slot number, then the
+ * money lock.
+ * Every movement of the money is also posted to a cash ledger, which the
+ * money, balance and sales of the machine can be reconciled against.
+ * Purchases, change checks, restocks and money movements are counted and
+ * timed in the machine's metrics. Sales, change checks and change payouts
+ * are also emitted as Flight Recorder events, so a recording (e.g. started
+ * with -XX:StartFlightRecording) shows where the time of a purchase goes.
+ * An event is only filled in when its shouldCommit() says a recording wants
+ * it, here and in the special vending machine, so the events cost next to
+ * nothing while no recording is running.
+ * When a transaction journal is opened, every change to the stock, sales and
+ * money is also appended to it, and replaying it rebuilds the machine. A
+ * snapshot of the machine can be saved next to the journal, so that only the
+ * records after the snapshot have to be replayed.
  */
 public class RegularVendingMachine {
+    public static final String JOURNAL_FILE = "vending-machine.journal";
+    public static final String SNAPSHOT_FILE = "vending-machine.snapshot";
+    public static final long SNAPSHOT_INTERVAL = 60;
+    private static final int SNAPSHOT_CHUNK = 4096;
+
+    private SlotGrid grid;
     private ItemSlot[] slots;
-    private double balance;
-    private List<Transaction> transactions;
-    private double totalSales;
+    private ReentrantLock[] slotLocks;
+    private Map<String, int[]> slotNumbersByName;
+    private long balance;
+    private TransactionStore transactions;
+    private AtomicLong totalSales;
     private Money money;
+    private ChangeMaker changeMaker;
+    private CashLedger ledger;
+    private MachineMetrics metrics;
+    private ReentrantLock moneyLock;
+    private Map<String, Item> mealItems;
+    private SalesAnalytics salesAnalytics;
+    private TransactionJournal journal;
+    private Path snapshotPath;
+    private ScheduledExecutorService snapshotExecutor;
+    private List<InventoryListener> inventoryListeners;
+    private Set<CoinEscrow> openEscrows;
 
     /**
      * This is the constructor of a regular vending machine object with that
      * contains slots for items,
      * machine's balance, a list of transactions, and total sales.
+     * All prices and amounts of money are in centavos.
+     * The machine has 3 x 3 slots of 10 items each, stocked with the default
+     * items.
      */
     public RegularVendingMachine() {
-        slots = new ItemSlot[9];
-        balance = 0.0;
-        transactions = new ArrayList<>();
-        totalSales = 0.0;
+        this(3, 3, 10);
+
+        restock(new Item("Red Bean", Money.pesos(5), 50), 10, 0);
+        restock(new Item("Ube Ice Cream", Money.pesos(65), 200), 10, 1);
+        restock(new Item("Leche Flan", Money.pesos(8), 80), 10, 2);
+        restock(new Item("Banana", Money.pesos(12), 30), 10, 3);
+        restock(new Item("Nata de Coco", Money.pesos(15), 20), 10, 4);
+        restock(new Item("Kaong", Money.pesos(20), 25), 10, 5);
+        restock(new Item("Jackfruit", Money.pesos(10), 30), 10, 6);
+        restock(new Item("Pinipig", Money.pesos(5), 40), 10, 7);
+        restock(new Item("Milk", Money.pesos(30), 40), 10, 8);
+    }
+
+    /**
+     * This is the constructor of an empty regular vending machine given the size
+     * of its slot grid.
+     * 
+     * @param rows     number of rows of slots
+     * @param columns  number of columns of slots
+     * @param capacity maximum quantity of each slot
+     */
+    public RegularVendingMachine(int rows, int columns, int capacity) {
+        grid = new SlotGrid(rows, columns, capacity);
+        slots = new ItemSlot[grid.getSlotCount()];
+        slotLocks = new ReentrantLock[slots.length];
+        slotNumbersByName = new ConcurrentHashMap<>();
+        balance = 0;
+        transactions = new TransactionStore();
+        totalSales = new AtomicLong();
         money = new Money();
+        changeMaker = new ChangeMaker(money);
+        ledger = new CashLedger(money.getDenominations());
+        metrics = new MachineMetrics();
+        moneyLock = new ReentrantLock();
+        mealItems = new ConcurrentHashMap<>();
+        salesAnalytics = new SalesAnalytics(this);
+        journal = null;
+        snapshotPath = null;
+        snapshotExecutor = null;
+        inventoryListeners = new CopyOnWriteArrayList<>();
+        openEscrows = ConcurrentHashMap.newKeySet();
+
+        for (int i = 0; i < slotLocks.length; i++) {
+            slotLocks[i] = new ReentrantLock();
+        }
+        addGauges();
+    }
+
+    /**
+     * Adds the gauges of the machine's money and sales, and of every slot, to
+     * its metrics. Slots already with gauges keep them.
+     */
+    private void addGauges() {
+        metrics.addGauge("balance_centavos", this::getBalance);
+        metrics.addGauge("escrowed_centavos", this::getEscrowedAmount);
+        metrics.addGauge("sales_to_collect_centavos", totalSales::get);
+        metrics.addGauge("max_payable_change_centavos", this::getMaxPayableChange);
+        metrics.addGauge("journal_failed", () -> isJournalFailed() ? 1 : 0);
+        for (int i = 0; i < slots.length; i++) {
+            int slotNumber = i;
+            metrics.addGauge("slot_" + i + "_quantity",
+                    () -> slotNumber < slots.length && slots[slotNumber] != null ? grid.getQuantity(slotNumber) : 0);
+            metrics.addGauge("slot_" + i + "_capacity",
+                    () -> slotNumber < slots.length ? grid.getCapacity(slotNumber) : 0);
+        }
+    }
 
-        slots[0] = new ItemSlot(new Item("Red Bean", 5, 50), 10);
-        slots[1] = new ItemSlot(new Item("Ube Ice Cream", 65, 200), 10);
-        slots[2] = new ItemSlot(new Item("Leche Flan", 8, 80), 10);
-        slots[3] = new ItemSlot(new Item("Banana", 12, 30), 10);
-        slots[4] = new ItemSlot(new Item("Nata de Coco", 15, 20), 10);
-        slots[5] = new ItemSlot(new Item("Kaong", 20, 25), 10);
-        slots[6] = new ItemSlot(new Item("Jackfruit", 10, 30), 10);
-        slots[7] = new ItemSlot(new Item("Pinipig", 5, 40), 10);
-        slots[8] = new ItemSlot(new Item("Milk", 30, 40), 10);
+    /**
+     * Gets the metrics of the machine
+     * 
+     * @return the metrics
+     */
+    public MachineMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -50,22 +162,328 @@ public class RegularVendingMachine {
         }
     }
 
+    /**
+     * Gets the number of slots of the vending machine
+     * 
+     * @return the number of slots
+     */
+    public int getSlotCount() {
+        return slots.length;
+    }
+
+    /**
+     * Gets the number of columns of slots of the vending machine
+     * 
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return grid.getColumns();
+    }
+
+    /**
+     * Gets the maximum quantity of a slot
+     * 
+     * @param slotNumber the slot number
+     * @return the capacity of the slot, or 0 if slotNumber does not exist
+     */
+    public int getSlotCapacity(int slotNumber) {
+        if (slotNumber >= 0 && slotNumber < slots.length) {
+            return grid.getCapacity(slotNumber);
+        }
+        return 0;
+    }
+
+    /**
+     * Finds the slot number of an item given its name
+     * 
+     * @param itemName the name of the item
+     * @return the lowest slot number holding the item, or -1 if no slot has the
+     *         item
+     */
+    public int findSlotNumber(String itemName) {
+        int[] slotNumbers = slotNumbersByName.get(itemName);
+        return slotNumbers == null ? -1 : slotNumbers[0];
+    }
+
+    /**
+     * Finds every slot holding an item given its name
+     * 
+     * @param itemName the name of the item
+     * @return the slot numbers holding the item in increasing order, or an
+     *         empty array if no slot has the item
+     */
+    public int[] findSlotNumbers(String itemName) {
+        int[] slotNumbers = slotNumbersByName.get(itemName);
+        return slotNumbers == null ? new int[0] : slotNumbers.clone();
+    }
+
+    /**
+     * Adds a slot to the slots of an item in the index of slots by item name.
+     * The slots of a name are kept in an array in increasing order that is
+     * replaced, never changed, so readers need no lock.
+     * 
+     * @param itemName   the name of the slot's item
+     * @param slotNumber the slot number
+     */
+    private void indexSlot(String itemName, int slotNumber) {
+        slotNumbersByName.merge(itemName, new int[] { slotNumber }, (slotNumbers, added) -> {
+            int index = Arrays.binarySearch(slotNumbers, slotNumber);
+            if (index >= 0) {
+                return slotNumbers;
+            }
+            index = -index - 1;
+            int[] merged = new int[slotNumbers.length + 1];
+            System.arraycopy(slotNumbers, 0, merged, 0, index);
+            merged[index] = slotNumber;
+            System.arraycopy(slotNumbers, index, merged, index + 1, slotNumbers.length - index);
+            return merged;
+        });
+    }
+
+    /**
+     * Opens the transaction journal of the machine and replays it, so the stock,
+     * sales and money of the machine are the same as before it was last closed.
+     * Replaying starts from the state the machine was created with, so the
+     * machine must be created the same way every time.
+     * 
+     * @param path the file of the journal
+     * @throws IOException if the journal cannot be opened or read
+     */
+    public void openJournal(Path path) throws IOException {
+        openJournal(path, null);
+    }
+
+    /**
+     * Opens the transaction journal of the machine together with its snapshot.
+     * If the snapshot exists, the machine is restored from it and only the
+     * journal records written after it are replayed. A new snapshot is then
+     * saved every SNAPSHOT_INTERVAL seconds and when the journal is closed.
+     * 
+     * @param journalPath  the file of the journal
+     * @param snapshotPath the file of the snapshot, or null to replay the whole
+     *                     journal without snapshots
+     * @throws IOException if the journal cannot be opened or read
+     */
+    public void openJournal(Path journalPath, Path snapshotPath) throws IOException {
+        long position = 0;
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            try {
+                MachineSnapshot snapshot = MachineSnapshot.load(snapshotPath);
+                restoreSnapshot(snapshot);
+                position = snapshot.getJournalPosition();
+            } catch (IOException e) {
+                System.out.println("ERROR: Could not load the snapshot, replaying the whole journal: "
+                        + e.getMessage());
+            }
+        }
+
+        TransactionJournal newJournal = new TransactionJournal(journalPath);
+        try {
+            newJournal.replay(position, new JournalReplayer());
+        } catch (IOException e) {
+            newJournal.close();
+            throw e;
+        }
+        journal = newJournal;
+
+        // the ledger starts over from the money recovered
+        moneyLock.lock();
+        try {
+            ledger.open(money.getQuantities(), totalSales.get());
+        } finally {
+            moneyLock.unlock();
+        }
+
+        if (snapshotPath != null) {
+            this.snapshotPath = snapshotPath;
+            snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "machine-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotExecutor.scheduleWithFixedDelay(this::saveSnapshot, SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL,
+                    TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Checks if the transaction journal failed to write or force a record.
+     * Sales made since are not in the journal, and only a snapshot taken since
+     * keeps them.
+     *
+     * @return true if there is a journal and it failed
+     */
+    public boolean isJournalFailed() {
+        TransactionJournal current = journal;
+        return current != null && current.isFailed();
+    }
+
+    /**
+     * Saves a snapshot of the machine to the snapshot file given when the
+     * journal was opened. Nothing is saved if there is no snapshot file.
+     */
+    public void saveSnapshot() {
+        Path path = snapshotPath;
+        TransactionJournal current = journal;
+        if (path != null && current != null) {
+            try {
+                createSnapshot(current).save(path);
+            } catch (IOException e) {
+                System.out.println("ERROR: Could not save the snapshot: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Saves a last snapshot, forces the last records of the transaction journal
+     * to the disk and closes it. Nothing is journaled afterwards.
+     */
+    public void closeJournal() {
+        if (snapshotExecutor != null) {
+            // a snapshot being saved writes the same file, so it is waited for first
+            snapshotExecutor.shutdown();
+            try {
+                snapshotExecutor.awaitTermination(SNAPSHOT_INTERVAL, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            snapshotExecutor = null;
+        }
+        saveSnapshot();
+        snapshotPath = null;
+
+        TransactionJournal oldJournal = journal;
+        journal = null;
+        if (oldJournal != null) {
+            try {
+                oldJournal.close();
+            } catch (IOException e) {
+                System.out.println("ERROR: Could not close the transaction journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the transaction journal of the machine
+     * 
+     * @return the journal, or null if no journal is open
+     */
+    protected TransactionJournal getJournal() {
+        return journal;
+    }
+
     /**
      * Gets the balance of the vending machine
      * 
-     * @return the balance of the machine when called
+     * @return the balance of the machine when called (in centavos)
+     */
+    public long getBalance() {
+        moneyLock.lock();
+        try {
+            return balance;
+        } finally {
+            moneyLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of pieces of each denomination in the machine
+     * 
+     * @return a copy of the pieces of each denomination, in the order of
+     *         getDenominations
+     */
+    public int[] getMoneyQuantities() {
+        moneyLock.lock();
+        try {
+            return money.getQuantities().clone();
+        } finally {
+            moneyLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of pieces of each denomination in the machine without
+     * taking the money lock, for monitoring that must not hold up purchases.
+     * Each count is one the machine really had: the quantities only ever hold
+     * the machine's own pieces, since escrowed pieces are counted in a copy
+     * while change is planned. The counts are copied one by one while a payment
+     * may be taken, so they can be from either side of it: a copy made during a
+     * purchase may have the payment's pieces without its change taken out yet,
+     * or the other way round, and then does not add up to the balance.
+     * 
+     * @return a copy of the pieces of each denomination, in the order of
+     *         getDenominations
      */
-    public double getBalance() {
-        return balance;
+    public int[] peekMoneyQuantities() {
+        return money.getQuantities().clone();
     }
 
     /**
-     * Gets the transactions of the vending machine
+     * Gets the transactions of the vending machine. A transaction object is made
+     * for every transaction, so getTransactionStore should be used instead when
+     * going through a long history.
      * 
      * @return the transactions of the machine when called
      */
     public List<Transaction> getTransactions() {
-        return new ArrayList<>(transactions);
+        synchronized (transactions) {
+            List<Transaction> list = new ArrayList<>(transactions.size());
+            for (int i = 0; i < transactions.size(); i++) {
+                int itemId = transactions.getItemId(i);
+                list.add(new Transaction(grid.getCatalogItem(itemId), transactions.getQuantity(i),
+                        transactions.getAmount(i), transactions.getTimestamp(i), isMealItem(itemId)));
+            }
+            return list;
+        }
+    }
+
+    /**
+     * Gets the transaction log of the vending machine, which also keeps the
+     * quantity sold and revenue of every item
+     * 
+     * @return the transaction log of the machine
+     */
+    public TransactionStore getTransactionStore() {
+        return transactions;
+    }
+
+    /**
+     * Gets the sales analytics of the vending machine
+     * 
+     * @return the sales analytics of the machine
+     */
+    public SalesAnalytics getSalesAnalytics() {
+        return salesAnalytics;
+    }
+
+    /**
+     * Checks if an item of the machine's item catalog is a meal
+     * 
+     * @param itemId the item id
+     * @return true if the item is a meal, false if it is a single item
+     */
+    public boolean isMealItem(int itemId) {
+        Item item = grid.getCatalogItem(itemId);
+        return item != null && mealItems.get(item.getName()) == item;
+    }
+
+    /**
+     * Gets an item of the machine's item catalog by its id
+     * 
+     * @param itemId the item id
+     * @return the item
+     */
+    public Item getCatalogItem(int itemId) {
+        return grid.getCatalogItem(itemId);
+    }
+
+    /**
+     * Gets the number of items in the machine's item catalog
+     * 
+     * @return the number of items
+     */
+    public int getCatalogItemCount() {
+        return grid.getItemCount();
     }
 
     /**
@@ -78,13 +496,218 @@ public class RegularVendingMachine {
      */
     public void restock(Item item, int quantity, int slotNumber) {
         if (slotNumber >= 0 && slotNumber < slots.length) {
+            long start = metrics.start();
+            int changes;
+            slotLocks[slotNumber].lock();
+            try {
+                changes = stockSlot(item, quantity, slotNumber);
+            } finally {
+                slotLocks[slotNumber].unlock();
+            }
+            metrics.record(MachineMetrics.RESTOCK, start);
+            fireSlotChanged(slotNumber, changes);
+        }
+    }
+
+    /**
+     * Puts items in a slot and journals the new quantity. The slot's lock must be
+     * held.
+     * 
+     * @param item       the item to be added in slot, used if the slot is empty
+     * @param quantity   quantity to be added
+     * @param slotNumber slot number of item to be restocked
+     * @return the parts of the slot that changed, for the inventory event
+     */
+    private int stockSlot(Item item, int quantity, int slotNumber) {
+        int changes = InventoryEvent.QUANTITY;
+        ItemSlot slot = slots[slotNumber];
+        if (slot == null) {
+            changes |= InventoryEvent.ITEM | InventoryEvent.PRICE;
+            registerItem(item);
+            grid.setItem(slotNumber, item);
+            grid.setQuantity(slotNumber, Math.min(quantity, grid.getCapacity(slotNumber)));
+            slot = new ItemSlot(grid, slotNumber);
+            slots[slotNumber] = slot;
+            indexSlot(item.getName(), slotNumber);
+        } else {
+            slot.addItemQuantity(quantity);
+        }
+        if (journal != null) {
+            journal.appendRestock(slotNumber, grid.getItemId(slotNumber), slot.getQuantity());
+        }
+        return changes;
+    }
+
+    /**
+     * Restocks a slot, checking the request while holding the slot's lock so a
+     * sale or another restock cannot change the slot in between. An empty slot
+     * needs the item to put in it; an occupied slot can only be restocked with
+     * the item it already has. Nothing is added if the quantity does not fit in
+     * the slot.
+     * 
+     * @param request the restock request
+     * @return the result of the restock, whose amount is the new quantity of the
+     *         slot
+     */
+    public VendingResult restock(RestockRequest request) {
+        long start = metrics.start();
+        VendingResult result = stock(request);
+        metrics.record(MachineMetrics.RESTOCK, start);
+        return result;
+    }
+
+    /**
+     * Restocks a slot as asked by a restock request
+     * 
+     * @param request the restock request
+     * @return the result of the restock
+     */
+    private VendingResult stock(RestockRequest request) {
+        int slotNumber = request.getSlotNumber();
+        int quantity = request.getQuantity();
+        if (slotNumber < 0 || slotNumber >= slots.length) {
+            return VendingResult.failure(VendingResult.Status.INVALID_SLOT,
+                    "Invalid slot number. Please select a valid slot.", null);
+        }
+        if (quantity <= 0) {
+            return VendingResult.failure(VendingResult.Status.INVALID_QUANTITY,
+                    "Invalid quantity. Please enter a valid quantity.", null);
+        }
+
+        VendingResult result;
+        int changes;
+        slotLocks[slotNumber].lock();
+        try {
+            Item item = request.getItem();
             ItemSlot slot = slots[slotNumber];
+            int currentQuantity = 0;
             if (slot == null) {
-                slot = new ItemSlot(item, quantity);
-                slots[slotNumber] = slot;
+                if (item == null || item.getName() == null || item.getName().isEmpty() || item.getPrice() <= 0) {
+                    return VendingResult.failure(VendingResult.Status.INVALID_ITEM,
+                            "Slot " + slotNumber + " is empty. Please give a valid item to stock.", null);
+                }
             } else {
-                slot.addItemQuantity(quantity);
+                if (item != null && !slot.getItem().getName().equalsIgnoreCase(item.getName())) {
+                    return VendingResult.failure(VendingResult.Status.INVALID_ITEM,
+                            "Slot " + slotNumber + " already holds " + slot.getItem().getName() + ".", null);
+                }
+                item = slot.getItem();
+                currentQuantity = slot.getQuantity();
+            }
+            if (quantity > grid.getCapacity(slotNumber) - currentQuantity) {
+                return VendingResult.failure(VendingResult.Status.SLOT_FULL,
+                        "Slot " + slotNumber + " is full. Cannot add more items.", null);
             }
+
+            changes = stockSlot(item, quantity, slotNumber);
+            result = VendingResult.done("Restock successful!", slots[slotNumber].getQuantity());
+        } finally {
+            slotLocks[slotNumber].unlock();
+        }
+        fireSlotChanged(slotNumber, changes);
+        return result;
+    }
+
+    /**
+     * Changes the price of the item of a slot. The item is shared by every slot
+     * holding it, so all slots are locked while the price changes and every
+     * slot holding the item is reported to the inventory listeners.
+     * 
+     * @param slotNumber the slot number of the item
+     * @param price      the new price (in centavos)
+     * @return the result of the change, whose amount is the new price
+     */
+    public VendingResult changePrice(int slotNumber, long price) {
+        if (slotNumber < 0 || slotNumber >= slots.length) {
+            return VendingResult.failure(VendingResult.Status.INVALID_SLOT,
+                    "Invalid slot number. Please select a valid slot.", null);
+        }
+        if (price <= 0) {
+            return VendingResult.failure(VendingResult.Status.INVALID_ITEM,
+                    "Invalid price. Please enter a valid price.", null);
+        }
+
+        List<Integer> changedSlots = new ArrayList<>();
+        int locked = 0;
+        try {
+            for (int i = 0; i < slotLocks.length; i++) {
+                slotLocks[i].lock();
+                locked++;
+            }
+            if (slots[slotNumber] == null) {
+                return VendingResult.failure(VendingResult.Status.EMPTY_SLOT,
+                        "Slot " + slotNumber + " is empty. Please select a valid slot.", null);
+            }
+
+            int itemId = grid.getItemId(slotNumber);
+            synchronized (grid) {
+                Item item = grid.getCatalogItem(itemId);
+                item.setPrice(price);
+                if (journal != null) {
+                    journal.appendItem(itemId, item);
+                }
+            }
+            for (int i = 0; i < slots.length; i++) {
+                if (grid.getItemId(i) == itemId) {
+                    changedSlots.add(i);
+                }
+            }
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                slotLocks[i].unlock();
+            }
+        }
+
+        for (int changedSlot : changedSlots) {
+            fireSlotChanged(changedSlot, InventoryEvent.PRICE);
+        }
+        return VendingResult.done("Price changed successfully!", price);
+    }
+
+    /**
+     * Adds a listener told about every change to the quantity, item or price of a
+     * slot
+     * 
+     * @param listener the listener
+     */
+    public void addInventoryListener(InventoryListener listener) {
+        inventoryListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addInventoryListener
+     * 
+     * @param listener the listener
+     */
+    public void removeInventoryListener(InventoryListener listener) {
+        inventoryListeners.remove(listener);
+    }
+
+    /**
+     * Tells every inventory listener that a slot has changed. This is called
+     * after the slot's lock is released; the state of the slot is read again
+     * under the lock, so the event shows the slot as it is now, which may
+     * include later changes.
+     * 
+     * @param slotNumber the slot number of the changed slot
+     * @param changes    the parts of the slot that changed
+     */
+    private void fireSlotChanged(int slotNumber, int changes) {
+        if (inventoryListeners.isEmpty()) {
+            return;
+        }
+
+        InventoryEvent event;
+        slotLocks[slotNumber].lock();
+        try {
+            Item item = grid.getItem(slotNumber);
+            event = new InventoryEvent(slotNumber, changes, item, grid.getQuantity(slotNumber),
+                    item == null ? 0 : item.getPrice());
+        } finally {
+            slotLocks[slotNumber].unlock();
+        }
+        for (InventoryListener listener : inventoryListeners) {
+            listener.slotChanged(event);
         }
     }
 
@@ -106,51 +729,141 @@ public class RegularVendingMachine {
      * Checks if able to produce change in the right denominations
      * considering the quantity of denomination in the machine
      * 
-     * @param amount     the amount entered by the user as their payment
-     * @param totalPrice the total price of their purchase
+     * @param amount     the amount entered by the user as their payment (in
+     *                   centavos)
+     * @param totalPrice the total price of their purchase (in centavos)
      * @return true if providing change is possible, false if not possible
      */
-    public boolean isChangePossible(double amount, double totalPrice) {
-        int remainingAmount = (int) ((amount - totalPrice) * 100);
-        int[] availableQuantities = Arrays.copyOf(money.getQuantities(), money.getQuantities().length);
-        int[] denominations = money.getDenominations();
-
-        for (int i = denominations.length - 1; i >= 0; i--) {
-            int denomination = denominations[i];
-            int numDenominationNeeded = remainingAmount / (denomination * 100);
-            if (numDenominationNeeded > availableQuantities[i]) {
-                numDenominationNeeded = availableQuantities[i];
-            }
-            remainingAmount -= numDenominationNeeded * (denomination * 100);
+    public boolean isChangePossible(long amount, long totalPrice) {
+        ChangeCheckEvent event = new ChangeCheckEvent();
+        event.begin();
+        long start = metrics.start();
+        boolean possible;
+        moneyLock.lock();
+        try {
+            possible = changeMaker.isPayable(amount - totalPrice);
+        } finally {
+            moneyLock.unlock();
+        }
+        metrics.record(MachineMetrics.CHANGE_CHECK, start);
+        if (event.shouldCommit()) {
+            event.set(amount, totalPrice, false, possible);
+            event.commit();
         }
+        return possible;
+    }
 
-        return remainingAmount == 0 && remainingAmount % 100 == 0;
+    /**
+     * Checks if change can be provided for a payment that is not the machine's
+     * yet. The pieces of the payment are counted with the machine's money, since
+     * the purchase can pay the change with them.
+     * 
+     * @param payment    the pieces of each denomination to be inserted
+     * @param totalPrice the total price of the purchase (in centavos)
+     * @return true if the payment covers the price and the change can be
+     *         provided, false if not
+     */
+    public boolean isChangePossible(int[] payment, long totalPrice) {
+        ChangeCheckEvent event = new ChangeCheckEvent();
+        event.begin();
+        long start = metrics.start();
+        boolean possible = isChangePayable(payment, totalPrice);
+        metrics.record(MachineMetrics.CHANGE_CHECK, start);
+        if (event.shouldCommit()) {
+            event.set(isValidPayment(payment) ? getPaymentAmount(payment) : 0, totalPrice, true, possible);
+            event.commit();
+        }
+        return possible;
     }
 
     /**
-     * Calculates the change and shows a breakdown of it.
+     * Checks if a payment covers a price and its change can be provided,
+     * counting its pieces with the machine's money
      * 
-     * @param change the expected change of the user
+     * @param payment    the pieces of each denomination to be inserted
+     * @param totalPrice the total price of the purchase (in centavos)
+     * @return true if the change can be provided, false if not
      */
-    public void calculateChange(double change) {
-        int[] denominations = { 500, 100, 50, 20, 10, 5, 1 };
-        int[] changeCount = new int[denominations.length];
+    private boolean isChangePayable(int[] payment, long totalPrice) {
+        if (!isValidPayment(payment)) {
+            return false;
+        }
+        long amount = getPaymentAmount(payment);
+        if (amount < totalPrice) {
+            return false;
+        }
 
-        for (int i = 0; i < denominations.length; i++) {
-            if (change >= denominations[i]) {
-                changeCount[i] = (int) (change / denominations[i]);
-                change -= changeCount[i] * denominations[i];
+        moneyLock.lock();
+        try {
+            long change = amount - totalPrice;
+            return changeMaker.isPayable(change) || changeMaker.planWith(change, payment);
+        } finally {
+            moneyLock.unlock();
+        }
+    }
 
-                // Deduct the quantity of denominations from the machine
-                replenishMoney(denominations[i], -changeCount[i]);
+    /**
+     * Gets the largest change the machine can surely give with the money it has.
+     * A payment that leaves more change than this may have to be rejected.
+     * 
+     * @return the largest change that can always be provided (in centavos)
+     */
+    public long getMaxPayableChange() {
+        moneyLock.lock();
+        try {
+            return changeMaker.getMaxPayableChange();
+        } finally {
+            moneyLock.unlock();
+        }
+    }
+
+    /**
+     * Calculates the change and shows a breakdown of it.
+     * The change is paid out following the same plan used by isChangePossible.
+     * 
+     * @param change the expected change of the user (in centavos)
+     */
+    public void calculateChange(long change) {
+        ChangePayoutEvent event = new ChangePayoutEvent();
+        event.begin();
+        int[] changePieces;
+        moneyLock.lock();
+        try {
+            changePieces = takePayment(null, 0, change);
+            if (changePieces != null && journal != null) {
+                long[] denominations = money.getDenominations();
+                for (int i = 0; i < denominations.length; i++) {
+                    if (changePieces[i] > 0) {
+                        journal.appendMoney(i, -changePieces[i], -denominations[i] * changePieces[i]);
+                    }
+                }
             }
+        } finally {
+            moneyLock.unlock();
+        }
+        if (changePieces == null) {
+            System.out.println(
+                    "Change cannot be provided in the required denominations. Please contact maintenance.");
+        } else {
+            printChange(changePieces);
+        }
+        if (event.shouldCommit()) {
+            event.set(change, changePieces);
+            event.commit();
         }
+    }
 
-        // Print the change provided
+    /**
+     * Shows a breakdown of the change given, largest denomination first
+     * 
+     * @param changePieces the pieces of each denomination given as change
+     */
+    private void printChange(int[] changePieces) {
+        long[] denominations = money.getDenominations();
         System.out.println("Change provided:");
-        for (int i = 0; i < denominations.length; i++) {
-            if (changeCount[i] > 0) {
-                System.out.println(changeCount[i] + " x PHP" + denominations[i] + ".0");
+        for (int i = denominations.length - 1; i >= 0; i--) {
+            if (changePieces[i] > 0) {
+                System.out.println(changePieces[i] + " x PHP" + Money.format(denominations[i]));
             }
         }
     }
@@ -159,46 +872,618 @@ public class RegularVendingMachine {
      * Adds transaction to transaction list whenever someone uses the vending
      * machine
      * 
-     * @param item     the item purchased
-     * @param quantity the quantity of the purchased item
+     * @param itemId    the catalog id of the item purchased
+     * @param quantity  the quantity of the purchased item
+     * @param amount    the total price of the purchase (in centavos)
+     * @param timestamp the time of the purchase (in milliseconds since the epoch)
      */
-    private void addTransaction(Item item, int quantity) {
-        Transaction transaction = new Transaction(item, quantity);
-        transactions.add(transaction);
+    private void addTransaction(int itemId, int quantity, long amount, long timestamp) {
+        transactions.add(itemId, quantity, amount, timestamp);
     }
 
     /**
-     * Handles the process of a user's purchase. Sells an item from the specified
-     * slot number,
-     * given the quantity, amount provided by user, and total price of purchase.
+     * Sells an item from a slot, paid with the given money. The money is held in
+     * an escrow for the purchase and can be used for the change; if the purchase
+     * fails, the same money is given back.
      * 
      * @param slotNumber the slot number of the desired item
      * @param quantity   the quantity of the desired item
-     * @param amount     the amount payed by user
-     * @param totalPrice the expected amount payed by the user (total amount due of
-     *                   user's purchase)
+     * @param payment    the pieces of each denomination inserted by the user
+     * @return the result of the purchase
      */
-    public void sellItem(int slotNumber, int quantity, double amount, double totalPrice) {
-        ItemSlot slot = slots[slotNumber];
-        Item item = slot.getItem();
-
-        if (slot.getQuantity() >= quantity) {
-            if (amount >= totalPrice) {
-                if (isChangePossible(amount, totalPrice)) {
-                    slot.decreaseItemQuantity(quantity);
-                    totalSales += totalPrice;
-                    calculateChange(amount - totalPrice);
-                    addTransaction(item, quantity);
-                    System.out.println("Purchase successful!");
-                } else {
-                    System.out.println(
-                            "Change cannot be provided in the required denominations. Please contact maintenance.");
+    public VendingResult sellItem(int slotNumber, int quantity, int[] payment) {
+        if (!isValidPayment(payment)) {
+            return VendingResult.failure(VendingResult.Status.INVALID_PAYMENT, "Invalid payment.", null);
+        }
+        return sellItem(slotNumber, quantity, openEscrow(payment));
+    }
+
+    /**
+     * Sells an item from a slot, paid with the money in an escrow. The money is
+     * added to the machine's money only if the sale succeeds; otherwise it is
+     * given back in full and the escrow is closed.
+     * 
+     * @param slotNumber the slot number of the desired item
+     * @param quantity   the quantity of the desired item
+     * @param escrow     the escrow holding the money inserted by the user
+     * @return the result of the purchase
+     */
+    public VendingResult sellItem(int slotNumber, int quantity, CoinEscrow escrow) {
+        if (!closeEscrow(escrow)) {
+            return VendingResult.failure(VendingResult.Status.INVALID_PAYMENT,
+                    "This payment has already been used.", null);
+        }
+        return settle(escrow,
+                () -> checkout(new int[] { slotNumber }, new int[] { quantity }, null, escrow.getTotal(), escrow));
+    }
+
+    /**
+     * Sells a meal, paid with the given money. The money is held in an escrow
+     * for the purchase and can be used for the change; if the purchase fails,
+     * the same money is given back.
+     *
+     * @param recipe  the recipe of the meal
+     * @param payment the pieces of each denomination inserted by the user
+     * @return the result of the purchase
+     */
+    public VendingResult sellMeal(MealRecipe recipe, int[] payment) {
+        if (!isValidPayment(payment)) {
+            return VendingResult.failure(VendingResult.Status.INVALID_PAYMENT, "Invalid payment.", null);
+        }
+        return sellMeal(recipe, openEscrow(payment));
+    }
+
+    /**
+     * Sells a meal, paid with the money in an escrow. The money is added to the
+     * machine's money only if the sale succeeds; otherwise it is given back in
+     * full and the escrow is closed.
+     *
+     * @param recipe the recipe of the meal
+     * @param escrow the escrow holding the money inserted by the user
+     * @return the result of the purchase
+     */
+    public VendingResult sellMeal(MealRecipe recipe, CoinEscrow escrow) {
+        if (!closeEscrow(escrow)) {
+            return VendingResult.failure(VendingResult.Status.INVALID_PAYMENT,
+                    "This payment has already been used.", null);
+        }
+        return settle(escrow, () -> checkoutMeal(recipe, escrow.getTotal(), escrow));
+    }
+
+    /**
+     * Opens an empty escrow for the money of a purchase. The money inserted into
+     * it stays the customer's until a purchase paid with it succeeds.
+     *
+     * @return the escrow
+     */
+    public CoinEscrow openEscrow() {
+        CoinEscrow escrow = new CoinEscrow(money.getDenominations().clone());
+        openEscrows.add(escrow);
+        return escrow;
+    }
+
+    /**
+     * Opens an escrow holding the given money
+     *
+     * @param pieces the pieces of each denomination inserted
+     * @return the escrow
+     * @throws IllegalArgumentException if the money is not valid
+     */
+    public CoinEscrow openEscrow(int[] pieces) {
+        if (!isValidPayment(pieces)) {
+            throw new IllegalArgumentException("Invalid money");
+        }
+        CoinEscrow escrow = openEscrow();
+        for (int i = 0; i < pieces.length; i++) {
+            escrow.insert(i, pieces[i]);
+        }
+        return escrow;
+    }
+
+    /**
+     * Cancels an escrow, giving back all the money in it
+     *
+     * @param escrow the escrow
+     * @return the pieces given back, or no pieces if the escrow was already
+     *         committed or given back
+     */
+    public int[] cancelEscrow(CoinEscrow escrow) {
+        openEscrows.remove(escrow);
+        return escrow.release();
+    }
+
+    /**
+     * Gets the money held in the escrows of purchases not made yet. This money
+     * is not part of the machine's balance.
+     *
+     * @return the total of the open escrows (in centavos)
+     */
+    public long getEscrowedAmount() {
+        long amount = 0;
+        for (CoinEscrow escrow : openEscrows) {
+            amount += escrow.getTotal();
+        }
+        return amount;
+    }
+
+    /**
+     * Closes an escrow of this machine for its purchase
+     *
+     * @param escrow the escrow
+     * @return true if the escrow was open, false if it cannot be used
+     */
+    private boolean closeEscrow(CoinEscrow escrow) {
+        return escrow != null && openEscrows.contains(escrow) && escrow.close();
+    }
+
+    /**
+     * Makes a purchase paid with the money of an escrow, giving the money back
+     * unless the purchase succeeds. The money is also given back if the purchase
+     * throws, so the escrow is never left closed with the customer's money in it.
+     *
+     * @param escrow   the escrow of the purchase
+     * @param purchase the purchase
+     * @return the result of the purchase
+     */
+    private VendingResult settle(CoinEscrow escrow, Supplier<VendingResult> purchase) {
+        VendingResult result = null;
+        try {
+            result = purchase.get();
+            return result;
+        } finally {
+            if (result == null || !result.isSuccessful()) {
+                cancelEscrow(escrow);
+            }
+        }
+    }
+
+    /**
+     * Gets the valid denominations, in the order used by payments and change
+     *
+     * @return a copy of the denominations (in centavos)
+     */
+    public long[] getDenominations() {
+        return money.getDenominations().clone();
+    }
+
+    /**
+     * Gets the value of the given money
+     * 
+     * @param pieces the pieces of each denomination
+     * @return the value of the money (in centavos)
+     */
+    public long getPaymentAmount(int[] pieces) {
+        long[] denominations = money.getDenominations();
+        long amount = 0;
+        for (int i = 0; i < pieces.length && i < denominations.length; i++) {
+            amount += denominations[i] * pieces[i];
+        }
+        return amount;
+    }
+
+    /**
+     * Checks that money has one count per denomination and no negative count
+     * 
+     * @param pieces the pieces of each denomination
+     * @return true if the money is valid, false if not
+     */
+    private boolean isValidPayment(int[] pieces) {
+        if (pieces == null || pieces.length != money.getDenominations().length) {
+            return false;
+        }
+        for (int count : pieces) {
+            if (count < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sells a meal given its recipe
+     * 
+     * @param recipe the recipe of the meal
+     * @param amount the amount payed by user (in centavos)
+     * @param escrow the escrow of the money inserted by the user
+     * @return the result of the purchase
+     */
+    private VendingResult checkoutMeal(MealRecipe recipe, long amount, CoinEscrow escrow) {
+        int slotCount = recipe.getSlotCount();
+        if (slotCount == 0) {
+            return VendingResult.failure(VendingResult.Status.INVALID_MEAL,
+                    "No ingredients selected. Purchase unsuccessful.", escrow.getPieces());
+        }
+
+        int[] slotNumbers = new int[slotCount];
+        int[] quantities = new int[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slotNumbers[i] = recipe.getSlotNumber(i);
+            quantities[i] = recipe.getQuantity(i);
+        }
+        return checkout(slotNumbers, quantities, recipe.getName(), amount, escrow);
+    }
+
+    /**
+     * Sells the items of one or more slots as a single transaction, then tells
+     * the inventory listeners which slots were sold from
+     * 
+     * @param slotNumbers the slots to take items from, in increasing order
+     * @param quantities  the quantity to take from each slot
+     * @param mealName    the name of the meal, or null for a single item
+     * @param amount      the amount payed by user (in centavos)
+     * @param escrow      the escrow of the money inserted by the user
+     * @return the result of the purchase
+     */
+    private VendingResult checkout(int[] slotNumbers, int[] quantities, String mealName, long amount,
+            CoinEscrow escrow) {
+        SaleEvent event = new SaleEvent();
+        event.begin();
+        long start = metrics.start();
+        VendingResult result = dispense(slotNumbers, quantities, mealName, amount, escrow);
+        metrics.record(mealName == null ? MachineMetrics.SELL_ITEM : MachineMetrics.SELL_MEAL, start);
+        metrics.countResult(result);
+        if (result.isSuccessful()) {
+            for (int slotNumber : slotNumbers) {
+                fireSlotChanged(slotNumber, InventoryEvent.QUANTITY);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.set(slotNumbers, quantities, mealName, amount, result);
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Sells the items of one or more slots as a single transaction. The slots
+     * are locked in increasing slot number and checked before anything is
+     * changed, then the payment is taken and the change paid out under the money
+     * lock, so either everything is dispensed or nothing is. The sale is
+     * journaled under the same lock, as one group with the money it moved.
+     * 
+     * @param slotNumbers the slots to take items from, in increasing order
+     * @param quantities  the quantity to take from each slot
+     * @param mealName    the name of the meal, or null for a single item
+     * @param amount      the amount payed by user (in centavos)
+     * @param escrow      the escrow of the money inserted by the user
+     * @return the result of the purchase
+     */
+    private VendingResult dispense(int[] slotNumbers, int[] quantities, String mealName, long amount,
+            CoinEscrow escrow) {
+        int[] payment = escrow.getPieces();
+        for (int i = 0; i < slotNumbers.length; i++) {
+            if (slotNumbers[i] < 0 || slotNumbers[i] >= slots.length) {
+                return VendingResult.failure(VendingResult.Status.INVALID_SLOT,
+                        "Invalid slot number. Please select a valid slot.", payment);
+            }
+            if (quantities[i] <= 0) {
+                return VendingResult.failure(VendingResult.Status.INVALID_QUANTITY,
+                        "Invalid quantity. Please enter a valid quantity.", payment);
+            }
+        }
+
+        int locked = 0;
+        try {
+            for (int i = 0; i < slotNumbers.length; i++) {
+                slotLocks[slotNumbers[i]].lock();
+                locked++;
+            }
+
+            long totalPrice = 0;
+            double totalCalories = 0;
+            for (int i = 0; i < slotNumbers.length; i++) {
+                ItemSlot slot = slots[slotNumbers[i]];
+                if (slot == null) {
+                    return VendingResult.failure(VendingResult.Status.EMPTY_SLOT,
+                            "Slot " + slotNumbers[i] + " is empty. Please select a valid slot.", payment);
                 }
-            } else {
-                System.out.println("Insufficient amount. Please enter a valid amount.");
+                if (slot.getQuantity() < quantities[i]) {
+                    return VendingResult.failure(VendingResult.Status.OUT_OF_STOCK,
+                            "Insufficient quantity. Purchase unsuccessful.", payment);
+                }
+                totalPrice += slot.getItem().getPrice() * quantities[i];
+                totalCalories += slot.getItem().getCalories() * quantities[i];
+            }
+
+            if (amount < totalPrice) {
+                return VendingResult.failure(VendingResult.Status.INSUFFICIENT_PAYMENT,
+                        "Insufficient amount. Please enter a valid amount.", payment);
+            }
+
+            // the meal's item is journaled before the sale that refers to it
+            int itemId = mealName == null ? grid.getItemId(slotNumbers[0])
+                    : registerItem(getMealItem(mealName, totalPrice, totalCalories));
+            long timestamp = System.currentTimeMillis();
+            int[] changePieces;
+            moneyLock.lock();
+            try {
+                changePieces = takePayment(escrow, totalPrice, amount - totalPrice);
+                if (changePieces == null) {
+                    return VendingResult.failure(VendingResult.Status.NO_CHANGE,
+                            "Change cannot be provided in the required denominations. Please contact maintenance.",
+                            payment);
+                }
+                if (journal != null) {
+                    int[] pieces = new int[changePieces.length];
+                    for (int i = 0; i < pieces.length; i++) {
+                        pieces[i] = payment[i] - changePieces[i];
+                    }
+                    if (mealName == null) {
+                        journal.appendSale(slotNumbers[0], itemId, quantities[0], totalPrice, timestamp, pieces,
+                                money.getDenominations());
+                    } else {
+                        journal.appendMeal(itemId, slotNumbers, quantities, totalPrice, timestamp, pieces,
+                                money.getDenominations());
+                    }
+                }
+            } finally {
+                moneyLock.unlock();
+            }
+
+            // Commit the reserved quantities
+            for (int i = 0; i < slotNumbers.length; i++) {
+                slots[slotNumbers[i]].decreaseItemQuantity(quantities[i]);
+            }
+            addTransaction(itemId, mealName == null ? quantities[0] : 1, totalPrice, timestamp);
+            String itemName = mealName == null ? grid.getCatalogItem(itemId).getName() : mealName;
+            return VendingResult.sale(itemName, slotNumbers, quantities, totalPrice, amount, changePieces);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                slotLocks[slotNumbers[i]].unlock();
+            }
+        }
+    }
+
+    /**
+     * Takes the payment of a purchase and pays out the change while holding the
+     * money lock, so no other purchase can take the same pieces in between. The
+     * change is planned counting the pieces in the escrow, so they can be part
+     * of the change; they are only added to the machine's money once the change
+     * can be provided, and the escrow is committed at the same time. The sale is
+     * added to the sales under the same lock, so the sales and the money always
+     * agree with the cash ledger. Nothing is journaled here: the caller holds the
+     * money lock too and journals the money moved, with its sale if there is
+     * one, before releasing it.
+     * 
+     * @param escrow     the escrow of the money inserted by the user, or null if
+     *                   the money is already in the machine
+     * @param totalPrice the total price of the purchase, or 0 if only change is
+     *                   paid out (in centavos)
+     * @param change     the change to be paid out (in centavos)
+     * @return the pieces of each denomination paid out, or null if the change
+     *         cannot be provided
+     */
+    private int[] takePayment(CoinEscrow escrow, long totalPrice, long change) {
+        long[] denominations = money.getDenominations();
+        int[] quantities = money.getQuantities();
+        int[] payment = escrow == null ? null : escrow.getPieces();
+
+        moneyLock.lock();
+        try {
+            boolean planned = payment == null ? changeMaker.isPayable(change) && changeMaker.plan(change)
+                    : changeMaker.planWith(change, payment);
+            if (!planned) {
+                return null;
+            }
+
+            int[] changePieces = changeMaker.getPlan().clone();
+            if (payment != null) {
+                for (int i = 0; i < denominations.length; i++) {
+                    if (payment[i] > 0) {
+                        quantities[i] += payment[i];
+                        balance += denominations[i] * payment[i];
+                        changeMaker.addQuantity(i, payment[i]);
+                    }
+                }
+                ledger.insert(payment);
+                escrow.commit();
+                openEscrows.remove(escrow);
+            }
+            if (totalPrice > 0) {
+                totalSales.addAndGet(totalPrice);
+                ledger.sale(totalPrice);
+            }
+
+            boolean paidOut = false;
+            for (int i = 0; i < denominations.length; i++) {
+                if (changePieces[i] > 0) {
+                    paidOut = true;
+                    quantities[i] -= changePieces[i];
+                    balance -= denominations[i] * changePieces[i];
+                }
+            }
+            // pieces added by the payment are already in the table
+            if (paidOut) {
+                ledger.dispense(changePieces);
+                changeMaker.invalidate();
+            }
+            return changePieces;
+        } finally {
+            moneyLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the item used in the transactions of a meal. There is one item for
+     * each meal name, made the first time the meal is sold.
+     * 
+     * @param name     the name of the meal
+     * @param price    the price of the meal (in centavos)
+     * @param calories the calories of the meal
+     * @return the item of the meal
+     */
+    private Item getMealItem(String name, long price, double calories) {
+        return mealItems.computeIfAbsent(name, mealName -> new Item(mealName, price, calories));
+    }
+
+    /**
+     * Adds an item to the item catalog of the slot grid, and to the journal if
+     * the item is new, so the catalog ids are the same when the journal is
+     * replayed
+     * 
+     * @param item the item to be added
+     * @return the id of the item in the catalog
+     */
+    private int registerItem(Item item) {
+        synchronized (grid) {
+            int itemCount = grid.getItemCount();
+            int itemId = grid.addItem(item);
+            if (itemId == itemCount && journal != null) {
+                journal.appendItem(itemId, item);
+            }
+            return itemId;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the machine. Every slot, the money and the catalog are
+     * locked while the state is copied, so the snapshot matches the journal
+     * position it records. Only the number of transactions is taken under the
+     * locks: the history only grows at its end, so the transactions up to that
+     * number are copied after the locks are released, a chunk at a time, and
+     * sales go on while the history is copied.
+     * 
+     * @param current the journal whose position the snapshot records
+     * @return the snapshot of the machine
+     * @throws IOException if the journal position cannot be read
+     */
+    private MachineSnapshot createSnapshot(TransactionJournal current) throws IOException {
+        int rows;
+        int columns;
+        Item[] items;
+        boolean[] isMealItem;
+        int[] itemIds;
+        int[] quantities;
+        int[] capacities;
+        int[] moneyQuantities;
+        long snapshotBalance;
+        long sales;
+        long journalPosition;
+        int transactionCount;
+        int locked = 0;
+        try {
+            for (int i = 0; i < slotLocks.length; i++) {
+                slotLocks[i].lock();
+                locked++;
+            }
+            moneyLock.lock();
+            try {
+                synchronized (grid) {
+                    int itemCount = grid.getItemCount();
+                    items = new Item[itemCount];
+                    isMealItem = new boolean[itemCount];
+                    for (int i = 0; i < itemCount; i++) {
+                        items[i] = grid.getCatalogItem(i);
+                        isMealItem[i] = mealItems.get(items[i].getName()) == items[i];
+                    }
+
+                    int slotCount = grid.getSlotCount();
+                    itemIds = new int[slotCount];
+                    quantities = new int[slotCount];
+                    capacities = new int[slotCount];
+                    for (int i = 0; i < slotCount; i++) {
+                        itemIds[i] = grid.getItemId(i);
+                        quantities[i] = grid.getQuantity(i);
+                        capacities[i] = grid.getCapacity(i);
+                    }
+                    rows = grid.getRows();
+                    columns = grid.getColumns();
+                }
+                moneyQuantities = money.getQuantities().clone();
+                snapshotBalance = balance;
+                sales = totalSales.get();
+                transactionCount = transactions.size();
+                journalPosition = current.getPosition();
+            } finally {
+                moneyLock.unlock();
+            }
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                slotLocks[i].unlock();
+            }
+        }
+
+        int[] transactionItemIds = new int[transactionCount];
+        int[] transactionQuantities = new int[transactionCount];
+        long[] transactionAmounts = new long[transactionCount];
+        long[] transactionTimestamps = new long[transactionCount];
+        int[] chunkItemIds = new int[SNAPSHOT_CHUNK];
+        int[] chunkQuantities = new int[SNAPSHOT_CHUNK];
+        long[] chunkAmounts = new long[SNAPSHOT_CHUNK];
+        long[] chunkTimestamps = new long[SNAPSHOT_CHUNK];
+        for (int start = 0; start < transactionCount; start += SNAPSHOT_CHUNK) {
+            int count = transactions.read(start, Math.min(SNAPSHOT_CHUNK, transactionCount - start), chunkItemIds,
+                    chunkQuantities, chunkAmounts, chunkTimestamps);
+            System.arraycopy(chunkItemIds, 0, transactionItemIds, start, count);
+            System.arraycopy(chunkQuantities, 0, transactionQuantities, start, count);
+            System.arraycopy(chunkAmounts, 0, transactionAmounts, start, count);
+            System.arraycopy(chunkTimestamps, 0, transactionTimestamps, start, count);
+        }
+
+        return new MachineSnapshot(rows, columns, items, isMealItem, itemIds, quantities, capacities,
+                moneyQuantities, snapshotBalance, sales, transactionItemIds, transactionQuantities,
+                transactionAmounts, transactionTimestamps, journalPosition);
+    }
+
+    /**
+     * Restores the machine from a snapshot. This is only done when the journal
+     * is opened, before the machine is used.
+     * 
+     * @param snapshot the snapshot of the machine
+     */
+    private void restoreSnapshot(MachineSnapshot snapshot) {
+        SlotGrid newGrid = new SlotGrid(snapshot.getRows(), snapshot.getColumns(), 1);
+        Item[] items = snapshot.getItems();
+        boolean[] isMealItem = snapshot.getMealItems();
+        mealItems.clear();
+        for (int i = 0; i < items.length; i++) {
+            newGrid.addItem(items[i]);
+            if (isMealItem[i]) {
+                mealItems.put(items[i].getName(), items[i]);
+            }
+        }
+
+        int[] itemIds = snapshot.getItemIds();
+        int[] quantities = snapshot.getQuantities();
+        int[] capacities = snapshot.getCapacities();
+        ItemSlot[] newSlots = new ItemSlot[newGrid.getSlotCount()];
+        slotNumbersByName.clear();
+        for (int i = 0; i < newSlots.length; i++) {
+            newGrid.setCapacity(i, capacities[i]);
+            if (itemIds[i] != SlotGrid.EMPTY) {
+                newGrid.setItem(i, items[itemIds[i]]);
+                newGrid.setQuantity(i, quantities[i]);
+                newSlots[i] = new ItemSlot(newGrid, i);
+                indexSlot(items[itemIds[i]].getName(), i);
+            }
+        }
+        if (slotLocks.length != newSlots.length) {
+            slotLocks = new ReentrantLock[newSlots.length];
+            for (int i = 0; i < slotLocks.length; i++) {
+                slotLocks[i] = new ReentrantLock();
+            }
+        }
+        grid = newGrid;
+        slots = newSlots;
+        addGauges();
+
+        int[] moneyQuantities = snapshot.getMoneyQuantities();
+        System.arraycopy(moneyQuantities, 0, money.getQuantities(), 0,
+                Math.min(moneyQuantities.length, money.getQuantities().length));
+        balance = snapshot.getBalance();
+        changeMaker.invalidate();
+        totalSales.set(snapshot.getTotalSales());
+
+        int[] transactionItemIds = snapshot.getTransactionItemIds();
+        int[] transactionQuantities = snapshot.getTransactionQuantities();
+        long[] transactionAmounts = snapshot.getTransactionAmounts();
+        long[] transactionTimestamps = snapshot.getTransactionTimestamps();
+        synchronized (transactions) {
+            transactions.clear();
+            for (int i = 0; i < transactionAmounts.length; i++) {
+                transactions.add(transactionItemIds[i], transactionQuantities[i], transactionAmounts[i],
+                        transactionTimestamps[i]);
             }
-        } else {
-            System.out.println("Insufficient quantity. Purchase unsuccessful.");
         }
     }
 
@@ -207,33 +1492,163 @@ public class RegularVendingMachine {
      * quantity of it.
      * 
      * @param denomination the denominatin of choice from the valid denominations
+     *                     (in centavos)
      * @param quantity     the quantity of the denomination to be replenished
+     * @return true if the money was added, false if the denomination is not
+     *         valid, the quantity is not positive or the machine cannot count
+     *         that many more pieces
      */
-    public void replenishMoney(double denomination, int quantity) {
-        if (denomination > 0 && quantity > 0) {
-            int[] denominations = money.getDenominations();
-            int[] quantities = money.getQuantities();
+    public boolean replenishMoney(long denomination, int quantity) {
+        if (quantity <= 0) {
+            return false;
+        }
+        long[] denominations = money.getDenominations();
+        for (int i = 0; i < denominations.length; i++) {
+            if (denominations[i] == denomination) {
+                int[] pieces = new int[denominations.length];
+                pieces[i] = quantity;
+                return replenishMoney(pieces);
+            }
+        }
+        return false;
+    }
 
+    /**
+     * Replenishes money in the vending machine piece by piece. The counts are
+     * checked under the money lock before anything is added, so either all the
+     * pieces are added or none is.
+     * 
+     * @param pieces the number of pieces of each denomination to be replenished
+     * @return true if the money was added, false if a count is negative or
+     *         would take the pieces of its denomination over Integer.MAX_VALUE
+     */
+    public boolean replenishMoney(int[] pieces) {
+        long[] denominations = money.getDenominations();
+        if (pieces == null || pieces.length != denominations.length) {
+            return false;
+        }
+        long start = metrics.start();
+        int[] quantities = money.getQuantities();
+
+        moneyLock.lock();
+        try {
+            for (int i = 0; i < denominations.length; i++) {
+                if (pieces[i] < 0 || pieces[i] > Integer.MAX_VALUE - quantities[i]) {
+                    return false;
+                }
+            }
             for (int i = 0; i < denominations.length; i++) {
-                if (denominations[i] == denomination) {
-                    quantities[i] += quantity;
-                    balance += denomination * quantity;
-                    break;
+                if (pieces[i] > 0) {
+                    quantities[i] += pieces[i];
+                    balance += denominations[i] * pieces[i];
+                    changeMaker.addQuantity(i, pieces[i]);
+                    ledger.replenish(i, pieces[i]);
+                    if (journal != null) {
+                        journal.appendMoney(i, pieces[i], denominations[i] * pieces[i]);
+                    }
                 }
             }
+        } finally {
+            moneyLock.unlock();
         }
+        metrics.record(MachineMetrics.REPLENISH, start);
+        return true;
     }
 
     /**
-     * Collects money from the machine and resets it to 0 (meaning machine balance
-     * is empty)
+     * Collects the sales from the machine. The pieces worth the sales are taken
+     * out of the machine's money, so the balance goes down by the amount
+     * collected and the money put in for change stays. If the pieces cannot add
+     * up to the sales exactly, the most that can be taken without going over
+     * is collected, largest pieces first, and the rest is left for the next
+     * collection.
      * 
-     * @return the collected amount from the machine
+     * @return the collected amount from the machine (in centavos)
      */
-    public double collectMoney() {
-        double collectedAmount = totalSales;
-        totalSales = 0.0;
-        return collectedAmount;
+    public long collectMoney() {
+        long start = metrics.start();
+        long[] denominations = money.getDenominations();
+        int[] quantities = money.getQuantities();
+
+        moneyLock.lock();
+        try {
+            long sales = totalSales.get();
+            int[] pieces = planCollection(sales);
+            long collected = 0;
+            for (int i = 0; i < denominations.length; i++) {
+                if (pieces[i] > 0) {
+                    quantities[i] -= pieces[i];
+                    balance -= denominations[i] * pieces[i];
+                    collected += denominations[i] * pieces[i];
+                    if (journal != null) {
+                        journal.appendMoney(i, -pieces[i], -denominations[i] * pieces[i]);
+                    }
+                }
+            }
+            changeMaker.invalidate();
+            totalSales.addAndGet(-collected);
+            ledger.collect(pieces);
+            if (journal != null) {
+                journal.appendCollect(collected);
+            }
+            return collected;
+        } finally {
+            moneyLock.unlock();
+            metrics.record(MachineMetrics.COLLECT, start);
+        }
+    }
+
+    /**
+     * Chooses the pieces taken out of the machine for a collection. The money
+     * lock must be held.
+     * 
+     * @param sales the sales to be collected (in centavos)
+     * @return the pieces of each denomination to take out
+     */
+    private int[] planCollection(long sales) {
+        if (changeMaker.isPayable(sales) && changeMaker.plan(sales)) {
+            return changeMaker.getPlan().clone();
+        }
+
+        long[] denominations = money.getDenominations();
+        int[] quantities = money.getQuantities();
+        int[] pieces = new int[denominations.length];
+        long remaining = sales;
+        for (int i = denominations.length - 1; i >= 0; i--) {
+            pieces[i] = (int) Math.min(quantities[i], remaining / denominations[i]);
+            remaining -= denominations[i] * pieces[i];
+        }
+        return pieces;
+    }
+
+    /**
+     * Reconciles the money, balance and sales of the machine against its cash
+     * ledger, denomination by denomination
+     * 
+     * @return the reconciliation report
+     */
+    public String getCashReconciliation() {
+        moneyLock.lock();
+        try {
+            return ledger.reconcile(money.getQuantities(), balance, totalSales.get(), getEscrowedAmount());
+        } finally {
+            moneyLock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the money, balance and sales of the machine agree with its cash
+     * ledger
+     * 
+     * @return true if they agree, false if not
+     */
+    public boolean isCashReconciled() {
+        moneyLock.lock();
+        try {
+            return ledger.isReconciled(money.getQuantities(), balance, totalSales.get());
+        } finally {
+            moneyLock.unlock();
+        }
     }
 
     /**
@@ -252,10 +1667,10 @@ public class RegularVendingMachine {
             if (slot != null) {
                 Item item = slot.getItem();
                 int quantity = slot.getQuantity();
-                double price = item.getPrice();
+                long price = item.getPrice();
                 double calories = item.getCalories();
-                System.out.printf("|  %-4d |  %-13s |   %-8d |  P%-5.2f |  %-8.2f |\n", i, item.getName(), quantity,
-                        price, calories);
+                System.out.printf("|  %-4d |  %-13s |   %-8d |  P%-6s|  %-8.2f |\n", i, item.getName(), quantity,
+                        Money.format(price), calories);
             } else {
                 System.out.printf("|  %-4d |  %-13s |   %-8d |         |          |\n", i, "EMPTY", 0);
             }
@@ -265,31 +1680,36 @@ public class RegularVendingMachine {
 
     /**
      * Displays a summary of transaction.
-     * This basically shows the item name and how many of it has been purchased.
+     * This basically shows the name of every item purchased, how many of it has
+     * been purchased and its revenue, using the totals of the transaction log.
      */
     public void displayTransactionSummary() {
-        System.out.println("*=====================================*");
-        System.out.println("│          TRANSACTION SUMMARY        │");
-        System.out.println("*=====================================*");
-        System.out.println("| Item Name      | Quantity Sold       |");
-        System.out.println("=======================================");
-        for (Transaction transaction : transactions) {
-            Item item = transaction.getItem();
-            int quantity = transaction.getQuantity();
-            System.out.printf("| %-15s | %-18d |\n", item.getName(), quantity);
+        System.out.println("*==================================================*");
+        System.out.println("│                TRANSACTION SUMMARY               │");
+        System.out.println("*==================================================*");
+        System.out.println("| Item Name         | Quantity Sold | Revenue      |");
+        System.out.println("====================================================");
+        long[] soldQuantities = transactions.getSoldQuantities();
+        long[] revenues = transactions.getRevenues();
+        int itemCount = Math.min(soldQuantities.length, grid.getItemCount());
+        for (int i = 0; i < itemCount; i++) {
+            if (soldQuantities[i] > 0) {
+                System.out.printf("| %-17s | %-13d | P%-11s |\n", grid.getCatalogItem(i).getName(), soldQuantities[i],
+                        Money.format(revenues[i]));
+            }
         }
-        System.out.println("=======================================");
-        double totalSales = getTotalSales();
-        System.out.println("Total Amount Collected: " + totalSales);
+        System.out.println("====================================================");
+        long totalSales = getTotalSales();
+        System.out.println("Total Amount Collected: " + Money.format(totalSales));
     }
 
     /**
      * Gets the total sales made using the machine
      * 
-     * @return the total sales amount of the machine when called
+     * @return the total sales amount of the machine when called (in centavos)
      */
-    protected double getTotalSales() {
-        return totalSales;
+    protected long getTotalSales() {
+        return totalSales.get();
     }
 
     /**
@@ -300,4 +1720,94 @@ public class RegularVendingMachine {
     protected ItemSlot[] getSlots() {
         return slots;
     }
+
+    /**
+     * Gets the slot grid of the machine
+     * 
+     * @return the slot grid of the machine
+     */
+    protected SlotGrid getSlotGrid() {
+        return grid;
+    }
+
+    /**
+     * This class represents the receiver of the records of the transaction
+     * journal. Each record is applied to the machine the same way it was applied
+     * when it was written, without being journaled again.
+     */
+    private class JournalReplayer implements TransactionJournal.Replayer {
+        @Override
+        public void item(int itemId, Item item) {
+            synchronized (grid) {
+                if (itemId == grid.getItemCount()) {
+                    grid.addItem(item);
+                } else if (itemId >= 0 && itemId < grid.getItemCount()) {
+                    // a later record of an item is a change of its price
+                    grid.getCatalogItem(itemId).setPrice(item.getPrice());
+                }
+            }
+        }
+
+        @Override
+        public void restock(int slotNumber, int itemId, int quantity) {
+            if (slotNumber < 0 || slotNumber >= slots.length || itemId < 0 || itemId >= grid.getItemCount()) {
+                return;
+            }
+            if (slots[slotNumber] == null) {
+                Item item = grid.getCatalogItem(itemId);
+                grid.setItem(slotNumber, item);
+                slots[slotNumber] = new ItemSlot(grid, slotNumber);
+                indexSlot(item.getName(), slotNumber);
+            }
+            grid.setQuantity(slotNumber, Math.min(quantity, grid.getCapacity(slotNumber)));
+        }
+
+        @Override
+        public void sale(int slotNumber, int itemId, int quantity, long amount, long timestamp) {
+            if (slotNumber >= 0 && slotNumber < slots.length && slots[slotNumber] != null) {
+                slots[slotNumber].decreaseItemQuantity(quantity);
+            }
+            totalSales.addAndGet(amount);
+            if (itemId >= 0 && itemId < grid.getItemCount()) {
+                addTransaction(itemId, quantity, amount, timestamp);
+            }
+        }
+
+        @Override
+        public void meal(int itemId, int[] slotNumbers, int[] quantities, long amount, long timestamp) {
+            for (int i = 0; i < slotNumbers.length; i++) {
+                if (slotNumbers[i] >= 0 && slotNumbers[i] < slots.length && slots[slotNumbers[i]] != null) {
+                    slots[slotNumbers[i]].decreaseItemQuantity(quantities[i]);
+                }
+            }
+            totalSales.addAndGet(amount);
+            if (itemId >= 0 && itemId < grid.getItemCount()) {
+                Item mealItem = grid.getCatalogItem(itemId);
+                mealItems.putIfAbsent(mealItem.getName(), mealItem);
+                addTransaction(itemId, 1, amount, timestamp);
+            }
+        }
+
+        @Override
+        public void money(int denominationIndex, int quantity) {
+            long[] denominations = money.getDenominations();
+            if (denominationIndex < 0 || denominationIndex >= denominations.length) {
+                return;
+            }
+            moneyLock.lock();
+            try {
+                money.getQuantities()[denominationIndex] += quantity;
+                balance += denominations[denominationIndex] * quantity;
+                changeMaker.invalidate();
+            } finally {
+                moneyLock.unlock();
+            }
+        }
+
+        @Override
+        public void collect(long amount) {
+            // the pieces collected are replayed by the money records before it
+            totalSales.addAndGet(-amount);
+        }
+    }
 }
\ No newline at end of file
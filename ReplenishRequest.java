@@ -0,0 +1,26 @@
+/**
+ * This class represents a request to add money to the vending machine so it
+ * can give change.
+ */
+public class ReplenishRequest {
+    private int[] pieces;
+
+    /**
+     * This is the constructor of a replenish request
+     * 
+     * @param pieces the pieces of each denomination to be added, in the order of
+     *               Money's denominations
+     */
+    public ReplenishRequest(int[] pieces) {
+        this.pieces = pieces;
+    }
+
+    /**
+     * Gets the money to be added
+     * 
+     * @return the pieces of each denomination
+     */
+    public int[] getPieces() {
+        return pieces;
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * This class represents a request to restock a slot of the vending machine.
+ */
+public class RestockRequest {
+    private int slotNumber;
+    private Item item;
+    private int quantity;
+
+    /**
+     * This is the constructor of a restock request
+     * 
+     * @param slotNumber the slot number to be restocked
+     * @param item       the item to put in the slot if it is empty, or null to
+     *                   add more of the slot's item
+     * @param quantity   the quantity to be added
+     */
+    public RestockRequest(int slotNumber, Item item, int quantity) {
+        this.slotNumber = slotNumber;
+        this.item = item;
+        this.quantity = quantity;
+    }
+
+    /**
+     * Gets the slot number to be restocked
+     * 
+     * @return the slot number
+     */
+    public int getSlotNumber() {
+        return slotNumber;
+    }
+
+    /**
+     * Gets the item to put in the slot if it is empty
+     * 
+     * @return the item, or null
+     */
+    public Item getItem() {
+        return item;
+    }
+
+    /**
+     * Gets the quantity to be added
+     * 
+     * @return the quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+}
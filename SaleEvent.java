@@ -0,0 +1,72 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * This class represents the Flight Recorder event of a sale of an item or a
+ * meal, from the slots being locked to the inventory listeners being told of
+ * the sale. The event tells which slots were sold from, what was paid and how
+ * the sale ended, so a recording shows which purchases were slow and why.
+ */
+@Name("vending.Sale")
+@Label("Sale")
+@Category({ "Vending Machine", "Purchases" })
+@Description("A sale of an item or a meal")
+class SaleEvent extends jdk.jfr.Event {
+    @Label("Slots")
+    @Description("The slot numbers sold from, separated by commas")
+    private String slots;
+
+    @Label("Items")
+    @Description("The number of items taken from the slots")
+    private int itemCount;
+
+    @Label("Meal")
+    @Description("The name of the meal, or null for a single item")
+    private String meal;
+
+    @Label("Amount Paid")
+    @Description("The amount paid by the customer (in centavos)")
+    private long amountPaid;
+
+    @Label("Total Price")
+    @Description("The total price of the sale (in centavos), or 0 if it failed")
+    private long totalPrice;
+
+    @Label("Change")
+    @Description("The change paid out (in centavos)")
+    private long change;
+
+    @Label("Status")
+    @Description("How the sale ended")
+    private String status;
+
+    /**
+     * Fills in the event with a sale and its result
+     *
+     * @param slotNumbers the slots to take items from
+     * @param quantities  the quantity to take from each slot
+     * @param mealName    the name of the meal, or null for a single item
+     * @param amount      the amount payed by the customer (in centavos)
+     * @param result      the result of the sale
+     */
+    void set(int[] slotNumbers, int[] quantities, String mealName, long amount, VendingResult result) {
+        StringBuilder slots = new StringBuilder();
+        int itemCount = 0;
+        for (int i = 0; i < slotNumbers.length; i++) {
+            if (i > 0) {
+                slots.append(',');
+            }
+            slots.append(slotNumbers[i]);
+            itemCount += quantities[i];
+        }
+        this.slots = slots.toString();
+        this.itemCount = itemCount;
+        this.meal = mealName;
+        this.amountPaid = amount;
+        this.totalPrice = result.isSuccessful() ? result.getTotalPrice() : 0;
+        this.change = result.isSuccessful() ? result.getChange() : 0;
+        this.status = result.getStatus().name();
+    }
+}
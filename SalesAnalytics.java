@@ -0,0 +1,354 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * This class represents the sales analytics of a vending machine, built on the
+ * machine's transaction log.
+ * Sales are added up in buckets of one minute, one hour and one day. Each
+ * bucket keeps the running total of everything sold up to the end of it, so
+ * the sales between two times are one subtraction. Only the most recent
+ * buckets of each size are kept (two days of minutes, ninety days of hours and
+ * ten years of days); older ranges are answered with the larger buckets.
+ * New transactions are read from the log when the analytics are queried, so
+ * selling an item does not cost anything more.
+ */
+public class SalesAnalytics {
+    public static final int MINUTE = 0;
+    public static final int HOUR = 1;
+    public static final int DAY = 2;
+
+    public static final int REVENUE = 0;
+    public static final int QUANTITY = 1;
+    public static final int COUNT = 2;
+    public static final int MEAL_REVENUE = 3;
+    public static final int MEAL_COUNT = 4;
+
+    private static final int METRIC_COUNT = 5;
+    private static final long[] WIDTHS = { 60_000L, 3_600_000L, 86_400_000L };
+    private static final int[] CAPACITIES = { 2 * 24 * 60, 90 * 24, 10 * 366 };
+
+    private RegularVendingMachine vendingMachine;
+    private long offset;
+    private BucketSeries[] series;
+    private int transactionCount;
+
+    /**
+     * This class represents the buckets of one size. The running totals are kept
+     * in a ring, so the oldest buckets are dropped as new ones are added.
+     */
+    private static class BucketSeries {
+        private long width;
+        private int capacity;
+        private long[][] totals;
+        private long[] totalsBeforeOldest;
+        private long oldest;
+        private long latest;
+        private boolean empty;
+
+        /**
+         * This is the constructor of an empty bucket series
+         *
+         * @param width    the length of a bucket (in milliseconds)
+         * @param capacity the number of buckets kept
+         */
+        BucketSeries(long width, int capacity) {
+            this.width = width;
+            this.capacity = capacity;
+            this.totals = new long[METRIC_COUNT][capacity];
+            this.totalsBeforeOldest = new long[METRIC_COUNT];
+            this.empty = true;
+        }
+
+        /**
+         * Adds sales to a bucket
+         *
+         * @param bucket the index of the bucket
+         * @param values the value of each metric
+         */
+        void add(long bucket, long[] values) {
+            if (empty) {
+                oldest = bucket;
+                latest = bucket;
+                empty = false;
+            } else if (bucket > latest) {
+                advance(bucket);
+            }
+
+            if (bucket < oldest) {
+                // Sales older than every bucket kept only move the totals
+                for (int m = 0; m < METRIC_COUNT; m++) {
+                    totalsBeforeOldest[m] += values[m];
+                }
+                bucket = oldest;
+            }
+            for (long b = bucket; b <= latest; b++) {
+                int slot = slot(b);
+                for (int m = 0; m < METRIC_COUNT; m++) {
+                    totals[m][slot] += values[m];
+                }
+            }
+        }
+
+        /**
+         * Adds empty buckets up to a new latest bucket, dropping the oldest ones
+         * when the ring is full
+         *
+         * @param bucket the new latest bucket
+         */
+        private void advance(long bucket) {
+            int latestSlot = slot(latest);
+            long newOldest = Math.max(oldest, bucket - capacity + 1);
+            for (int m = 0; m < METRIC_COUNT; m++) {
+                long latestTotal = totals[m][latestSlot];
+                if (newOldest > oldest) {
+                    totalsBeforeOldest[m] = newOldest - 1 <= latest ? totals[m][slot(newOldest - 1)] : latestTotal;
+                }
+                for (long b = Math.max(latest + 1, newOldest); b <= bucket; b++) {
+                    totals[m][slot(b)] = latestTotal;
+                }
+            }
+            oldest = newOldest;
+            latest = bucket;
+        }
+
+        /**
+         * Gets the running total of a metric at the end of a bucket
+         *
+         * @param metric the metric
+         * @param bucket the index of the bucket
+         * @return the running total
+         */
+        private long totalAt(int metric, long bucket) {
+            if (empty || bucket < oldest) {
+                return totalsBeforeOldest[metric];
+            }
+            return totals[metric][slot(Math.min(bucket, latest))];
+        }
+
+        /**
+         * Gets the sum of a metric over a range of buckets
+         *
+         * @param metric the metric
+         * @param first  the first bucket
+         * @param last   the last bucket
+         * @return the sum
+         */
+        long sum(int metric, long first, long last) {
+            if (empty || first > last) {
+                return 0;
+            }
+            return totalAt(metric, last) - totalAt(metric, first - 1);
+        }
+
+        /**
+         * Checks if a bucket is still kept
+         *
+         * @param bucket the index of the bucket
+         * @return true if the bucket is kept, false if it was dropped
+         */
+        boolean keeps(long bucket) {
+            return empty || bucket >= oldest;
+        }
+
+        /**
+         * Gets the slot of a bucket in the ring
+         *
+         * @param bucket the index of the bucket
+         * @return the slot of the bucket
+         */
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) capacity);
+        }
+    }
+
+    /**
+     * This is the constructor of the sales analytics of a vending machine.
+     * Minutes, hours and days follow the time zone of the system.
+     *
+     * @param vendingMachine the vending machine
+     */
+    public SalesAnalytics(RegularVendingMachine vendingMachine) {
+        this.vendingMachine = vendingMachine;
+        this.offset = ZoneId.systemDefault().getRules().getOffset(Instant.now()).getTotalSeconds() * 1000L;
+        this.series = new BucketSeries[WIDTHS.length];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = new BucketSeries(WIDTHS[i], CAPACITIES[i]);
+        }
+        this.transactionCount = 0;
+    }
+
+    /**
+     * Adds the transactions logged since the last update to the buckets
+     */
+    public synchronized void update() {
+        TransactionStore transactions = vendingMachine.getTransactionStore();
+        int size = transactions.size();
+        if (size < transactionCount) {
+            // The log was replaced (e.g. restored from a snapshot), so start over
+            for (int i = 0; i < series.length; i++) {
+                series[i] = new BucketSeries(WIDTHS[i], CAPACITIES[i]);
+            }
+            transactionCount = 0;
+        }
+        long[] values = new long[METRIC_COUNT];
+        for (int i = transactionCount; i < size; i++) {
+            int itemId = transactions.getItemId(i);
+            boolean meal = vendingMachine.isMealItem(itemId);
+            long amount = transactions.getAmount(i);
+            values[REVENUE] = amount;
+            values[QUANTITY] = transactions.getQuantity(i);
+            values[COUNT] = 1;
+            values[MEAL_REVENUE] = meal ? amount : 0;
+            values[MEAL_COUNT] = meal ? 1 : 0;
+
+            long time = transactions.getTimestamp(i) + offset;
+            for (BucketSeries bucketSeries : series) {
+                bucketSeries.add(Math.floorDiv(time, bucketSeries.width), values);
+            }
+        }
+        transactionCount = size;
+    }
+
+    /**
+     * Gets the total of a metric between two times. The times are rounded to
+     * the smallest bucket size still kept for the start time, so a range is
+     * counted by whole minutes, hours or days.
+     *
+     * @param metric the metric (REVENUE, QUANTITY, COUNT, MEAL_REVENUE or
+     *               MEAL_COUNT)
+     * @param from   the start of the range (in milliseconds since the epoch)
+     * @param to     the end of the range, not included (in milliseconds since
+     *               the epoch)
+     * @return the total of the metric
+     */
+    public synchronized long getTotal(int metric, long from, long to) {
+        update();
+        if (from >= to) {
+            return 0;
+        }
+        for (BucketSeries bucketSeries : series) {
+            long first = Math.floorDiv(from + offset, bucketSeries.width);
+            if (bucketSeries.keeps(first) || bucketSeries == series[series.length - 1]) {
+                long last = Math.floorDiv(to - 1 + offset, bucketSeries.width);
+                return bucketSeries.sum(metric, first, last);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the revenue between two times
+     *
+     * @param from the start of the range (in milliseconds since the epoch)
+     * @param to   the end of the range, not included (in milliseconds since the
+     *             epoch)
+     * @return the revenue (in centavos)
+     */
+    public long getRevenue(long from, long to) {
+        return getTotal(REVENUE, from, to);
+    }
+
+    /**
+     * Gets the revenue of meals between two times
+     *
+     * @param from the start of the range (in milliseconds since the epoch)
+     * @param to   the end of the range, not included (in milliseconds since the
+     *             epoch)
+     * @return the revenue of meals (in centavos)
+     */
+    public long getMealRevenue(long from, long to) {
+        return getTotal(MEAL_REVENUE, from, to);
+    }
+
+    /**
+     * Gets the revenue of single items (sales that are not meals) between two
+     * times
+     *
+     * @param from the start of the range (in milliseconds since the epoch)
+     * @param to   the end of the range, not included (in milliseconds since the
+     *             epoch)
+     * @return the revenue of single items (in centavos)
+     */
+    public long getSingleItemRevenue(long from, long to) {
+        return getTotal(REVENUE, from, to) - getTotal(MEAL_REVENUE, from, to);
+    }
+
+    /**
+     * Gets the value of a metric in each bucket of a range, oldest first.
+     * Buckets that are no longer kept are 0.
+     *
+     * @param granularity the bucket size (MINUTE, HOUR or DAY)
+     * @param metric      the metric
+     * @param from        the start of the range (in milliseconds since the epoch)
+     * @param to          the end of the range, not included (in milliseconds
+     *                    since the epoch)
+     * @return the value of the metric in each bucket
+     */
+    public synchronized long[] getBuckets(int granularity, int metric, long from, long to) {
+        update();
+        if (from >= to) {
+            return new long[0];
+        }
+        BucketSeries bucketSeries = series[granularity];
+        long first = Math.floorDiv(from + offset, bucketSeries.width);
+        long last = Math.floorDiv(to - 1 + offset, bucketSeries.width);
+        long[] values = new long[(int) (last - first + 1)];
+        for (int i = 0; i < values.length; i++) {
+            long bucket = first + i;
+            values[i] = bucketSeries.keeps(bucket) ? bucketSeries.sum(metric, bucket, bucket) : 0;
+        }
+        return values;
+    }
+
+    /**
+     * Gets the start of the day a time is in
+     *
+     * @param time the time (in milliseconds since the epoch)
+     * @return the start of the day (in milliseconds since the epoch)
+     */
+    public long getStartOfDay(long time) {
+        return Math.floorDiv(time + offset, WIDTHS[DAY]) * WIDTHS[DAY] - offset;
+    }
+
+    /**
+     * Gets the revenue of every item since the machine started logging
+     *
+     * @return the revenues (in centavos), indexed by item id
+     */
+    public long[] getRevenueByItem() {
+        return vendingMachine.getTransactionStore().getRevenues();
+    }
+
+    /**
+     * Gets the items that sold the most pieces since the machine started
+     * logging
+     *
+     * @param count the number of items wanted
+     * @return the item ids of the best sellers, best first (fewer if fewer items
+     *         were sold)
+     */
+    public int[] getTopSellers(int count) {
+        long[] soldQuantities = vendingMachine.getTransactionStore().getSoldQuantities();
+        int[] top = new int[Math.max(0, count)];
+        int found = 0;
+
+        // Keep the best items found so far in order, inserting each new one
+        for (int itemId = 0; itemId < soldQuantities.length; itemId++) {
+            if (soldQuantities[itemId] <= 0) {
+                continue;
+            }
+            int position = found;
+            while (position > 0 && soldQuantities[top[position - 1]] < soldQuantities[itemId]) {
+                position--;
+            }
+            if (position < top.length) {
+                int end = Math.min(found, top.length - 1);
+                System.arraycopy(top, position, top, position + 1, end - position);
+                top[position] = itemId;
+                found = Math.min(found + 1, top.length);
+            }
+        }
+        return Arrays.copyOf(top, found);
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents the grid of item slots of a vending machine cabinet.
+ * The grid has a number of rows and columns, and slot numbers go row by row.
+ * The quantity, capacity and item of every slot are kept in arrays indexed by
+ * slot number, and items are kept once in a catalog and referred to by id.
+ */
+public class SlotGrid {
+    public static final int EMPTY = -1;
+
+    private int rows;
+    private int columns;
+    private int[] quantities;
+    private int[] capacities;
+    private int[] itemIds;
+    private Item[] items;
+    private int itemCount;
+    private Map<Item, Integer> itemIdsByItem;
+
+    /**
+     * This is the constructor of a slot grid given its size and the capacity of
+     * every slot. All slots start empty.
+     *
+     * @param rows     number of rows of the grid
+     * @param columns  number of columns of the grid
+     * @param capacity maximum quantity of each slot
+     */
+    public SlotGrid(int rows, int columns, int capacity) {
+        if (rows <= 0 || columns <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Rows, columns and capacity must be positive");
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+        this.quantities = new int[rows * columns];
+        this.capacities = new int[rows * columns];
+        this.itemIds = new int[rows * columns];
+        this.items = new Item[16];
+        this.itemCount = 0;
+        this.itemIdsByItem = new HashMap<>();
+
+        Arrays.fill(capacities, capacity);
+        Arrays.fill(itemIds, EMPTY);
+    }
+
+    /**
+     * Gets the number of rows of the grid
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Gets the number of columns of the grid
+     *
+     * @return the number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the number of slots of the grid
+     *
+     * @return the number of slots
+     */
+    public int getSlotCount() {
+        return quantities.length;
+    }
+
+    /**
+     * Gets the slot number of a slot given its row and column
+     *
+     * @param row    row of the slot
+     * @param column column of the slot
+     * @return the slot number
+     */
+    public int getSlotNumber(int row, int column) {
+        return row * columns + column;
+    }
+
+    /**
+     * Checks if a slot has an item
+     *
+     * @param slotNumber the slot number
+     * @return true if the slot has an item, false if it is empty
+     */
+    public boolean isOccupied(int slotNumber) {
+        return itemIds[slotNumber] != EMPTY;
+    }
+
+    /**
+     * Gets the item id of a slot
+     *
+     * @param slotNumber the slot number
+     * @return the item id, or EMPTY if the slot is empty
+     */
+    public int getItemId(int slotNumber) {
+        return itemIds[slotNumber];
+    }
+
+    /**
+     * Gets the item of a slot
+     *
+     * @param slotNumber the slot number
+     * @return the item, or null if the slot is empty
+     */
+    public Item getItem(int slotNumber) {
+        int itemId = itemIds[slotNumber];
+        return itemId == EMPTY ? null : items[itemId];
+    }
+
+    /**
+     * Puts an item in a slot, adding it to the catalog if needed
+     *
+     * @param slotNumber the slot number
+     * @param item       the item of the slot
+     */
+    public void setItem(int slotNumber, Item item) {
+        itemIds[slotNumber] = addItem(item);
+    }
+
+    /**
+     * Gets the quantity of a slot
+     *
+     * @param slotNumber the slot number
+     * @return the quantity of the slot
+     */
+    public int getQuantity(int slotNumber) {
+        return quantities[slotNumber];
+    }
+
+    /**
+     * Sets the quantity of a slot
+     *
+     * @param slotNumber the slot number
+     * @param quantity   the quantity of the slot
+     */
+    public void setQuantity(int slotNumber, int quantity) {
+        quantities[slotNumber] = quantity;
+    }
+
+    /**
+     * Gets the maximum quantity of a slot
+     *
+     * @param slotNumber the slot number
+     * @return the capacity of the slot
+     */
+    public int getCapacity(int slotNumber) {
+        return capacities[slotNumber];
+    }
+
+    /**
+     * Sets the maximum quantity of a slot
+     *
+     * @param slotNumber the slot number
+     * @param capacity   the capacity of the slot
+     */
+    public void setCapacity(int slotNumber, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        capacities[slotNumber] = capacity;
+    }
+
+    /**
+     * Gets the number of items in the catalog
+     *
+     * @return the number of items
+     */
+    public synchronized int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Gets an item of the catalog by its id
+     *
+     * @param itemId the item id
+     * @return the item
+     */
+    public synchronized Item getCatalogItem(int itemId) {
+        return items[itemId];
+    }
+
+    /**
+     * Adds an item to the catalog if it is not there yet
+     *
+     * @param item the item to be added
+     * @return the id of the item
+     */
+    public synchronized int addItem(Item item) {
+        Integer itemId = itemIdsByItem.get(item);
+        if (itemId != null) {
+            return itemId;
+        }
+
+        if (itemCount == items.length) {
+            items = Arrays.copyOf(items, items.length * 2);
+        }
+        items[itemCount] = item;
+        itemIdsByItem.put(item, itemCount);
+        return itemCount++;
+    }
+}
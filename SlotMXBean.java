@@ -0,0 +1,40 @@
+/**
+ * This interface represents the management view of a slot of a vending
+ * machine, so it can be watched with standard JVM tools (e.g. JConsole).
+ */
+public interface SlotMXBean {
+    /**
+     * Gets the slot number
+     *
+     * @return the slot number
+     */
+    int getSlotNumber();
+
+    /**
+     * Gets the name of the item in the slot
+     *
+     * @return the name, or an empty string if the slot is empty
+     */
+    String getItemName();
+
+    /**
+     * Gets the quantity of the item in the slot
+     *
+     * @return the quantity
+     */
+    int getQuantity();
+
+    /**
+     * Gets the most items the slot can hold
+     *
+     * @return the capacity
+     */
+    int getCapacity();
+
+    /**
+     * Gets the price of the item in the slot
+     *
+     * @return the price (in centavos), or 0 if the slot is empty
+     */
+    long getPrice();
+}
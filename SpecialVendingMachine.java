@@ -1,5 +1,4 @@
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,6 +9,8 @@ import java.util.Scanner;
  */
 public class SpecialVendingMachine {
     private RegularVendingMachine regularVendingMachine;
+    private MealRecipeRegistry mealRecipes;
+    private VendingService vendingService;
 
     /**
      * This is a constructor for a special vending machine provided the regular
@@ -19,6 +20,17 @@ public class SpecialVendingMachine {
      */
     public SpecialVendingMachine(RegularVendingMachine regularVendingMachine) {
         this.regularVendingMachine = regularVendingMachine;
+        this.mealRecipes = MealRecipeRegistry.createDefault(regularVendingMachine);
+        this.vendingService = new VendingService(regularVendingMachine, mealRecipes);
+    }
+
+    /**
+     * Gets the service used to buy items and meals and to maintain the machine
+     * 
+     * @return the vending service
+     */
+    public VendingService getVendingService() {
+        return vendingService;
     }
 
     /**
@@ -32,37 +44,89 @@ public class SpecialVendingMachine {
             return;
         }
 
-        System.out.println("\n===== CUSTOM MEAL =====");
-        System.out.println("Selected items for your meal:");
-        System.out.println("Item Name      |  Quantity  |  Price  |  Calories");
+        MealRecipe recipe = createRecipe("Custom Meal", mealItems);
+        if (recipe != null) {
+            prepareMeal(recipe);
+        }
+    }
 
-        Map<String, Integer> itemQuantityMap = new HashMap<>(); // To store the quantity of each item
-        double totalPrice = 0;
-        double totalCalories = 0;
+    /**
+     * Gets the number of predefined meals
+     * 
+     * @return number of predefined meals
+     */
+    public int getPredefinedMealCount() {
+        return mealRecipes.getRecipeCount();
+    }
 
-        for (ItemSlot itemSlot : mealItems) {
-            Item item = itemSlot.getItem();
-            double price = item.getPrice();
-            double calories = item.getCalories();
-            totalPrice += price; // total price of customized meal
-            totalCalories += calories; // total calories of customized meal
+    /**
+     * Getter for the recipe of a predefined meal
+     * 
+     * @param id id of the predefined meal
+     * @return predefined meal recipe, or null if the id is invalid
+     */
+    public MealRecipe getPredefinedMeal(int id) {
+        return mealRecipes.getRecipe(id);
+    }
 
-            // Update the quantity for each item in the itemQuantityMap
-            String itemName = item.getName();
-            itemQuantityMap.put(itemName, itemQuantityMap.getOrDefault(itemName, 0) + 1);
+    /**
+     * Getter for the recipe of a predefined meal
+     * 
+     * @param mealName name of the predefined meal
+     * @return predefined meal recipe, or null if the name is invalid
+     */
+    public MealRecipe getPredefinedMeal(String mealName) {
+        return mealRecipes.getRecipe(mealName);
+    }
+
+    /**
+     * Handles prepare meal of the predefined meals
+     * 
+     * @param mealName name of the predefined meal
+     */
+    public void prepareMeal(String mealName) {
+        MealRecipe recipe = mealRecipes.getRecipe(mealName);
+        if (recipe == null) {
+            System.out.println("ERROR: Invalid meal name!");
+            return;
         }
 
-        for (Map.Entry<String, Integer> entry : itemQuantityMap.entrySet()) {
-            String itemName = entry.getKey();
-            int quantity = entry.getValue();
-            double price = mealItems[0].getItem().getPrice();
-            double calories = mealItems[0].getItem().getCalories();
+        prepareMeal(recipe);
+    }
 
-            System.out.printf("%-15s |   %-8d |  P%-5.2f |  %-8.2f\n", itemName, quantity, price, calories);
+    /**
+     * Handles prepare meal of the predefined meals
+     * 
+     * @param id id of the predefined meal
+     */
+    public void prepareMeal(int id) {
+        MealRecipe recipe = mealRecipes.getRecipe(id);
+        if (recipe == null) {
+            System.out.println("ERROR: Invalid meal name!");
+            return;
         }
 
-        System.out.println("Total Price: P" + totalPrice);
-        System.out.println("Total Calories: " + totalCalories);
+        prepareMeal(recipe);
+    }
+
+    /**
+     * Shows the items of a meal and asks the user to prepare it or go back
+     * 
+     * @param recipe recipe of the meal
+     */
+    private void prepareMeal(MealRecipe recipe) {
+        System.out.println("\n===== " + recipe.getName().toUpperCase() + " =====");
+        System.out.println("Selected items for your meal:");
+        System.out.println("Item Name      |  Quantity  |  Price  |  Calories");
+
+        for (int i = 0; i < recipe.getSlotCount(); i++) {
+            Item item = regularVendingMachine.getSlot(recipe.getSlotNumber(i)).getItem();
+            System.out.printf("%-15s |   %-8d |  P%-6s|  %-8.2f\n", item.getName(), recipe.getQuantity(i),
+                    Money.format(item.getPrice()), item.getCalories());
+        }
+
+        System.out.println("Total Price: P" + Money.format(recipe.getTotalPrice()));
+        System.out.println("Total Calories: " + recipe.getTotalCalories());
 
         Scanner scanner = new Scanner(System.in);
         while (true) {
@@ -72,8 +136,10 @@ public class SpecialVendingMachine {
             String choice = scanner.nextLine().trim().toUpperCase();
 
             if (choice.equals("P")) {
-                // Implement the payment function here if needed
-                handlePaymentCustomMeal(mealItems, askPaymentAmount());
+                CoinEscrow escrow = askPaymentAmount(scanner, recipe.getTotalPrice());
+                if (escrow != null) {
+                    handlePaymentMeal(recipe, escrow);
+                }
                 break;
             } else if (choice.equals("B")) {
                 System.out.println("Going back to the main menu...");
@@ -86,210 +152,131 @@ public class SpecialVendingMachine {
     }
 
     /**
-     * Getter for the set of predefined meals
-     * 
-     * @param mealName name of the predefined meal
-     * @return predefined meal item
+     * Display items of the regular vending machine
      */
-    public ItemSlot[] getPredefinedMealItems(String mealName) {
-        List<ItemSlot> mealItems = new ArrayList<>();
-
-        // Logic to get items based on the predefined meal name
-        switch (mealName.toLowerCase()) {
-            case "halo halo":
-                mealItems.add(new ItemSlot(new Item("Red Bean", 5.0, 50.0), 1));
-                mealItems.add(new ItemSlot(new Item("Ube Ice Cream", 10.0, 100.0), 1));
-                mealItems.add(new ItemSlot(new Item("Leche Flan", 15.0, 150.0), 1));
-                mealItems.add(new ItemSlot(new Item("Banana", 5.0, 80.0), 1));
-                mealItems.add(new ItemSlot(new Item("Nata de Coco", 15, 20), 1));
-                mealItems.add(new ItemSlot(new Item("Kaong", 20, 25), 1));
-                mealItems.add(new ItemSlot(new Item("Jackfruit", 10, 30), 1));
-                mealItems.add(new ItemSlot(new Item("Jackfruit", 10, 30), 1));
-                mealItems.add(new ItemSlot(new Item("Pinipig", 5, 40), 1));
-                mealItems.add(new ItemSlot(new Item("Milk", 30, 40), 1));
-
-                break;
-            case "ube milkshake":
-                mealItems.add(new ItemSlot(new Item("Ube Ice Cream", 10.0, 100.0), 2));
-                mealItems.add(new ItemSlot(new Item("Milk", 5.0, 50.0), 4));
-                break;
-            case "special turon":
-                mealItems.add(new ItemSlot(new Item("Banana", 5.0, 80.0), 2));
-                mealItems.add(new ItemSlot(new Item("Jackfruit", 10.0, 120.0), 1));
-                mealItems.add(new ItemSlot(new Item("Red Bean", 5.0, 50.0), 1));
-                break;
-            case "banana milk":
-                mealItems.add(new ItemSlot(new Item("Banana", 5.0, 80.0), 2));
-                mealItems.add(new ItemSlot(new Item("Milk", 5.0, 50.0), 4));
-                break;
-            case "ube banana split":
-                mealItems.add(new ItemSlot(new Item("Ube Ice Cream", 10.0, 100.0), 2));
-                mealItems.add(new ItemSlot(new Item("Banana", 5.0, 80.0), 2));
-                mealItems.add(new ItemSlot(new Item("Leche Flan", 15.0, 150.0), 1));
-                break;
-            case "jackfruit delight":
-                mealItems.add(new ItemSlot(new Item("Jackfruit", 10.0, 120.0), 2));
-                mealItems.add(new ItemSlot(new Item("Milk", 5.0, 50.0), 1));
-                mealItems.add(new ItemSlot(new Item("Leche Flan", 15.0, 150.0), 1));
-                mealItems.add(new ItemSlot(new Item("Nata de Coco", 15, 20), 1));
-                mealItems.add(new ItemSlot(new Item("Kaong", 20, 25), 1));
-                break;
-            case "red bean milk tea":
-                mealItems.add(new ItemSlot(new Item("Red Bean", 5.0, 50.0), 1));
-                mealItems.add(new ItemSlot(new Item("Milk", 5.0, 50.0), 3));
-                break;
-            default:
-                System.out.println("ERROR: Invalid meal name!");
-                break;
-        }
+    public void displayItems() {
+        regularVendingMachine.displayItems();
+    }
 
-        // Convert the list to an array
-        return mealItems.toArray(new ItemSlot[0]);
+    /**
+     * Displays transaction summary of the regular vending machine
+     */
+    public void displayTransactionSummary() {
+        regularVendingMachine.displayTransactionSummary();
     }
 
     /**
-     * Handles prepare meal of the predefined meals
+     * Handles payment of custom meal
      * 
-     * @param mealName name of the predefined meal
+     * @param mealItems array of items found in your meal
+     * @param payment   pieces of each denomination inserted by the user
      */
-    public void prepareMeal(String mealName) {
-        ItemSlot[] mealItems;
-
-        switch (mealName.toLowerCase()) {
-            case "halo halo":
-                mealItems = new ItemSlot[] {
-                        regularVendingMachine.getSlot(0),
-                        regularVendingMachine.getSlot(1),
-                        regularVendingMachine.getSlot(2),
-                        regularVendingMachine.getSlot(3),
-                        regularVendingMachine.getSlot(4),
-                        regularVendingMachine.getSlot(5),
-                        regularVendingMachine.getSlot(6),
-                        regularVendingMachine.getSlot(7),
-                        regularVendingMachine.getSlot(8)
-                };
-                break;
-            case "ube milkshake":
-                mealItems = new ItemSlot[] {
-                        regularVendingMachine.getSlot(1),
-                        regularVendingMachine.getSlot(1),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8)
-                };
-                break;
-            case "special turon":
-                mealItems = new ItemSlot[] {
-                        regularVendingMachine.getSlot(0),
-                        regularVendingMachine.getSlot(3),
-                        regularVendingMachine.getSlot(3),
-                        regularVendingMachine.getSlot(6),
-                };
-                break;
-            case "banana milk":
-                mealItems = new ItemSlot[] {
-                        regularVendingMachine.getSlot(3),
-                        regularVendingMachine.getSlot(3),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8)
-                };
-                break;
-            case "ube banana split":
-                mealItems = new ItemSlot[] {
-                        regularVendingMachine.getSlot(1),
-                        regularVendingMachine.getSlot(1),
-                        regularVendingMachine.getSlot(3),
-                        regularVendingMachine.getSlot(3),
-                        regularVendingMachine.getSlot(2)
-                };
-                break;
-            case "jackfruit delight":
-                mealItems = new ItemSlot[] {
-                        regularVendingMachine.getSlot(6),
-                        regularVendingMachine.getSlot(6),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(2),
-                        regularVendingMachine.getSlot(4),
-                        regularVendingMachine.getSlot(5)
-                };
-                break;
-            case "red bean milk tea":
-                mealItems = new ItemSlot[] {
-                        regularVendingMachine.getSlot(0),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8),
-                        regularVendingMachine.getSlot(8)
-                };
-                break;
-            default:
-                System.out.println("ERROR: Invalid meal name!");
-                return;
+    public void handlePaymentCustomMeal(ItemSlot[] mealItems, int[] payment) {
+        MealPaymentEvent event = new MealPaymentEvent();
+        event.begin();
+        MealRecipe recipe = createRecipe("Custom Meal", mealItems);
+        boolean sold = recipe != null && handlePaymentMeal(recipe, payment);
+        if (event.shouldCommit()) {
+            long amount = payment == null ? 0 : regularVendingMachine.getPaymentAmount(payment);
+            event.set(mealItems.length, amount, false, sold);
+            event.commit();
         }
-
-        prepareCustomMeal(mealItems);
     }
 
     /**
-     * Display items of the regular vending machine
+     * Handles payment of custom meal with the money in an escrow. The money is
+     * given back if the meal cannot be made.
+     * 
+     * @param mealItems array of items found in your meal
+     * @param escrow    escrow holding the money inserted by the user
      */
-    public void displayItems() {
-        regularVendingMachine.displayItems();
+    public void handlePaymentCustomMeal(ItemSlot[] mealItems, CoinEscrow escrow) {
+        MealPaymentEvent event = new MealPaymentEvent();
+        event.begin();
+        MealRecipe recipe = createRecipe("Custom Meal", mealItems);
+        boolean sold = false;
+        if (recipe != null) {
+            sold = handlePaymentMeal(recipe, escrow);
+        } else {
+            System.out.println("Money returned: "
+                    + vendingService.describePieces(regularVendingMachine.cancelEscrow(escrow)));
+        }
+        if (event.shouldCommit()) {
+            event.set(mealItems.length, escrow.getTotal(), true, sold);
+            event.commit();
+        }
     }
 
     /**
-     * Displays transaction summary of the regular vending machine
+     * Handles payment of a meal (custom or predefined) and shows its preparation
+     * steps once sold
+     * 
+     * @param recipe  recipe of the meal
+     * @param payment pieces of each denomination inserted by the user
+     * @return true if the meal was sold, false if not
      */
-    public void displayTransactionSummary() {
-        regularVendingMachine.displayTransactionSummary();
+    public boolean handlePaymentMeal(MealRecipe recipe, int[] payment) {
+        return finishMeal(recipe, vendingService.buyMeal(MealRequest.of(recipe, payment)));
     }
 
     /**
-     * Handles payment of custom meal
+     * Handles payment of a meal (custom or predefined) with the money in an
+     * escrow and shows its preparation steps once sold
      * 
-     * @param mealItems  array of items found in your meal
-     * @param amountPaid amount paid by the user
+     * @param recipe recipe of the meal
+     * @param escrow escrow holding the money inserted by the user
+     * @return true if the meal was sold, false if not
      */
-    public void handlePaymentCustomMeal(ItemSlot[] mealItems, double amountPaid) {
-        double totalPrice = calculateTotalPrice(mealItems);
+    public boolean handlePaymentMeal(MealRecipe recipe, CoinEscrow escrow) {
+        return finishMeal(recipe, vendingService.buyMeal(MealRequest.of(recipe, escrow)));
+    }
 
-        if (amountPaid >= totalPrice) {
-            if (isChangePossibleWrapper(amountPaid, totalPrice)) {
-                for (ItemSlot itemSlot : mealItems) {
-                    Item item = itemSlot.getItem();
-                    double price = item.getPrice();
+    /**
+     * Shows the result of the purchase of a meal and its preparation steps once
+     * sold
+     * 
+     * @param recipe recipe of the meal
+     * @param result result of the purchase
+     * @return true if the meal was sold, false if not
+     */
+    private boolean finishMeal(MealRecipe recipe, VendingResult result) {
+        printResult(result);
+        if (!result.isSuccessful()) {
+            return false;
+        }
 
-                    int slotNumber = findSlotNumber(itemSlot);
-                    regularVendingMachine.sellItem(slotNumber, 1, amountPaid, totalPrice);
-                }
-                System.out.println("Purchase successful!");
+        // Preparation steps of the meal
+        displayPreparationSteps(recipe);
+        return true;
+    }
 
-                double change = amountPaid - totalPrice;
-                regularVendingMachine.calculateChange(change);
-                // Preparation steps of the custom meal
-                displayPreparationSteps(Arrays.asList(mealItems));
-            } else {
-                System.out.println(
-                        "Change cannot be provided in the required denominations. Please contact maintenance.");
-            }
-        } else {
-            System.out.println("Insufficient amount. Please enter a valid amount.");
+    /**
+     * Shows the result of a purchase, with the change given or the money
+     * returned
+     * 
+     * @param result result of the purchase
+     */
+    private void printResult(VendingResult result) {
+        if (result.isSuccessful()) {
+            System.out.println("Change: PHP" + Money.format(result.getChange()));
+            System.out.println("Change breakdown: " + vendingService.describePieces(result.getChangePieces()));
+        } else if (result.getReturnedPieces().length > 0) {
+            System.out.println("Money returned: " + vendingService.describePieces(result.getReturnedPieces()));
         }
+        System.out.println(result.getMessage());
     }
 
     /**
      * Calculates the total price of the meal
      * 
      * @param mealItems array of items found in your meal
-     * @return total price of meal
+     * @return total price of meal (in centavos)
      */
-    public double calculateTotalPrice(ItemSlot[] mealItems) {
-        double totalPrice = 0;
+    public long calculateTotalPrice(ItemSlot[] mealItems) {
+        long totalPrice = 0;
         for (ItemSlot itemSlot : mealItems) {
             Item item = itemSlot.getItem();
-            double price = item.getPrice();
+            long price = item.getPrice();
             totalPrice += price;
         }
         return totalPrice;
@@ -298,30 +285,35 @@ public class SpecialVendingMachine {
     /**
      * Handles purchase of an meal (custom or predefined) and the payment
      * 
-     * @param mealItems  array of items found in your meal
-     * @param amountPaid amount paid by user
+     * @param mealItems array of items found in your meal
+     * @param payment   pieces of each denomination inserted by the user
      */
-    public void sellItems(ItemSlot[] mealItems, double amountPaid) {
-        double totalPrice = calculateTotalPrice(mealItems);
-
-        if (amountPaid >= totalPrice) {
-            if (isChangePossibleWrapper(amountPaid, totalPrice)) {
-                for (ItemSlot itemSlot : mealItems) {
-                    int slotNumber = findSlotNumber(itemSlot);
-                    Item item = itemSlot.getItem();
-                    int quantity = itemSlot.getQuantity();
-
-                    regularVendingMachine.sellItem(slotNumber, quantity, amountPaid, totalPrice);
-                    amountPaid -= totalPrice;
-                }
-                System.out.println("Purchase successful! Change: ");
-            } else {
-                System.out.println(
-                        "Change cannot be provided in the required denominations. Please contact maintenance.");
+    public void sellItems(ItemSlot[] mealItems, int[] payment) {
+        MealRecipe recipe = createRecipe("Meal", mealItems);
+        if (recipe != null) {
+            printResult(vendingService.buyMeal(MealRequest.of(recipe, payment)));
+        }
+    }
+
+    /**
+     * Creates the recipe of a meal from the items chosen by the user. Each entry
+     * of the meal items is one piece taken from that slot.
+     * 
+     * @param mealName  name of the meal
+     * @param mealItems array of items found in your meal
+     * @return recipe of the meal, or null if an item is not in the machine
+     */
+    private MealRecipe createRecipe(String mealName, ItemSlot[] mealItems) {
+        int[] pieces = new int[mealItems.length];
+        for (int i = 0; i < mealItems.length; i++) {
+            pieces[i] = findSlotNumber(mealItems[i]);
+            if (pieces[i] == -1) {
+                System.out.println("Item not found in the vending machine: " + mealItems[i].getItem().getName());
+                return null;
             }
-        } else {
-            System.out.println("Insufficient amount. Please enter a valid amount.");
         }
+
+        return new MealRecipe(-1, mealName, regularVendingMachine, pieces);
     }
 
     /**
@@ -343,11 +335,11 @@ public class SpecialVendingMachine {
     /**
      * Overriding is change possible from the regular vending machine
      * 
-     * @param amount     amount paid by user
-     * @param totalPrice total price of purchase
+     * @param amount     amount paid by user (in centavos)
+     * @param totalPrice total price of purchase (in centavos)
      * @return true if change is possible, false if not
      */
-    public boolean isChangePossibleWrapper(double amount, double totalPrice) {
+    public boolean isChangePossibleWrapper(long amount, long totalPrice) {
         return regularVendingMachine.isChangePossible(amount, totalPrice);
     }
 
@@ -358,74 +350,25 @@ public class SpecialVendingMachine {
      * @return slot number the item
      */
     public int findSlotNumber(ItemSlot itemSlot) {
-        ItemSlot[] slots = regularVendingMachine.getSlots();
-        for (int i = 0; i < slots.length; i++) {
-            if (slots[i] == itemSlot) {
-                return i;
-            }
+        int slotNumber = itemSlot.getSlotNumber();
+        if (slotNumber < regularVendingMachine.getSlotCount()
+                && regularVendingMachine.getSlot(slotNumber) == itemSlot) {
+            return slotNumber;
         }
         return -1;
     }
 
     /**
-     * Handles payment process of the purchase
+     * Handles payment process of the purchase. The money is held in an escrow
+     * here; it is put in the machine by the purchase itself.
      * 
-     * @return amount paid by user
+     * @param scanner    the scanner used to get user input
+     * @param totalPrice total price of the purchase (in centavos)
+     * @return escrow holding the money inserted by the user, or null if the
+     *         payment was cancelled
      */
-    private double askPaymentAmount() {
-        double amount = 0;
-        Scanner scanner = new Scanner(System.in);
-
-        System.out.print("How many [PHP 1] coins: ");
-        int quantity1 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity1 * 1;
-
-        System.out.print("How many [PHP 5] coins: ");
-        int quantity2 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity2 * 5;
-
-        System.out.print("How many [PHP 10] coins: ");
-        int quantity3 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity3 * 10;
-
-        System.out.print("How many [PHP 20] bills: ");
-        int quantity4 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity4 * 20;
-
-        System.out.print("How many [PHP 50] bills: ");
-        int quantity5 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity5 * 50;
-
-        System.out.print("How many [PHP 100] bills: ");
-        int quantity6 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity6 * 100;
-
-        System.out.print("How many [PHP 200] bills: ");
-        int quantity7 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity7 * 200;
-
-        System.out.print("How many [PHP 500] bills: ");
-        int quantity8 = scanner.nextInt();
-        scanner.nextLine();
-        amount += quantity8 * 500;
-
-        regularVendingMachine.replenishMoney(1, quantity1);
-        regularVendingMachine.replenishMoney(5, quantity2);
-        regularVendingMachine.replenishMoney(10, quantity3);
-        regularVendingMachine.replenishMoney(20, quantity4);
-        regularVendingMachine.replenishMoney(50, quantity5);
-        regularVendingMachine.replenishMoney(100, quantity6);
-        regularVendingMachine.replenishMoney(200, quantity7);
-        regularVendingMachine.replenishMoney(500, quantity8);
-
-        return amount;
+    private CoinEscrow askPaymentAmount(Scanner scanner, long totalPrice) {
+        return CashInsertion.ask(scanner, vendingService, totalPrice);
     }
 
     /**
@@ -485,7 +428,7 @@ public class SpecialVendingMachine {
         }
 
         ItemSlot[] mealItems = selectedItems.toArray(new ItemSlot[0]);
-        double totalPrice = calculateTotalPrice(mealItems);
+        long totalPrice = calculateTotalPrice(mealItems);
         double totalCalories = calculateTotalCalories(mealItems);
 
         System.out.println("Selected items for your meal:");
@@ -493,16 +436,18 @@ public class SpecialVendingMachine {
 
         for (ItemSlot itemSlot : selectedItems) {
             Item item = itemSlot.getItem();
-            double price = item.getPrice();
+            long price = item.getPrice();
             double calories = item.getCalories();
-            System.out.printf("%-15s |   %-8d |  P%-5.2f |  %-8.2f\n", item.getName(), 1, price, calories);
+            System.out.printf("%-15s |   %-8d |  P%-6s|  %-8.2f\n", item.getName(), 1, Money.format(price), calories);
         }
 
-        System.out.println("Total Price: P" + totalPrice);
+        System.out.println("Total Price: P" + Money.format(totalPrice));
         System.out.println("Total Calories: " + totalCalories);
 
-        double amountPaid = askPaymentAmount();
-        handlePaymentCustomMeal(mealItems, amountPaid);
+        CoinEscrow escrow = askPaymentAmount(scanner, totalPrice);
+        if (escrow != null) {
+            handlePaymentCustomMeal(mealItems, escrow);
+        }
 
     }
 
@@ -512,6 +457,8 @@ public class SpecialVendingMachine {
      * @param selectedItems items used to create the meal
      */
     public void displayPreparationSteps(List<ItemSlot> selectedItems) {
+        MealPreparationEvent event = new MealPreparationEvent();
+        event.begin();
         System.out.println("Shaving the refreshing Ice to perfection...\n");
 
         // Create a map to aggregate quantities of the same items
@@ -523,48 +470,71 @@ public class SpecialVendingMachine {
             itemQuantities.put(itemName, itemQuantities.getOrDefault(itemName, 0) + 1);
         }
 
-        for (Map.Entry<String, Integer> entry : itemQuantities.entrySet()) {
-            String itemName = entry.getKey();
-            int quantity = entry.getValue();
-
-            // Perform specific preparation steps based on the item
-            switch (itemName.toLowerCase()) {
-                case "red bean":
-                    System.out.println("Preparing the tender Red Beans with care...\n");
-                    break;
-                case "ube ice cream":
-                    System.out.println("Scooping out the velvety Ube Ice Cream...\n");
-                    break;
-                case "leche flan":
-                    System.out.println("Whisking the Leche Flan to a silky perfection...\n");
-                    break;
-                case "banana":
-                    System.out.println("Peeling and slicing the ripe Banana...\n");
-                    break;
-                case "nata de coco":
-                    System.out.println("Cutting the chewy Nata de Coco into delightful cubes...\n");
-                    break;
-                case "kaong":
-                    System.out.println("Rinsing and picking out the succulent Kaong...\n");
-                    break;
-                case "jackfruit":
-                    System.out.println("Carefully removing the sweet Jackfruit pods...\n");
-                    break;
-                case "pinipig":
-                    System.out.println("Toasting the crunchy Pinipig to a golden delight...\n");
-                    break;
-                case "milk":
-                    System.out.println("Pouring the creamy Milk into a jug...\n");
-                    break;
-                default:
-                    System.out.println("Preparing " + itemName + " with a pinch of magic...\n");
-                    break;
-            }
+        for (String itemName : itemQuantities.keySet()) {
+            System.out.println(getPreparationStep(itemName) + "\n");
+        }
 
+        System.out.println("Putting it all together with love and care...\n");
+        System.out.println("Meal Done! Enjoy your customized creation!\n");
+        if (event.shouldCommit()) {
+            event.set("Custom Meal", itemQuantities.size());
+            event.commit();
+        }
+    }
+
+    /**
+     * Displays preparation steps depending on items used for the meal
+     * 
+     * @param recipe recipe of the meal
+     */
+    public void displayPreparationSteps(MealRecipe recipe) {
+        MealPreparationEvent event = new MealPreparationEvent();
+        event.begin();
+        System.out.println("Shaving the refreshing Ice to perfection...\n");
+
+        for (int i = 0; i < recipe.getSlotCount(); i++) {
+            String itemName = regularVendingMachine.getSlot(recipe.getSlotNumber(i)).getItem().getName();
+            System.out.println(getPreparationStep(itemName) + "\n");
         }
 
         System.out.println("Putting it all together with love and care...\n");
         System.out.println("Meal Done! Enjoy your customized creation!\n");
+        if (event.shouldCommit()) {
+            event.set(recipe.getName(), recipe.getSlotCount());
+            event.commit();
+        }
+    }
+
+    /**
+     * Gets the preparation step of an item used in a meal
+     * 
+     * @param itemName name of the item
+     * @return preparation step of the item
+     */
+    public String getPreparationStep(String itemName) {
+        // Perform specific preparation steps based on the item
+        switch (itemName.toLowerCase()) {
+            case "red bean":
+                return "Preparing the tender Red Beans with care...";
+            case "ube ice cream":
+                return "Scooping out the velvety Ube Ice Cream...";
+            case "leche flan":
+                return "Whisking the Leche Flan to a silky perfection...";
+            case "banana":
+                return "Peeling and slicing the ripe Banana...";
+            case "nata de coco":
+                return "Cutting the chewy Nata de Coco into delightful cubes...";
+            case "kaong":
+                return "Rinsing and picking out the succulent Kaong...";
+            case "jackfruit":
+                return "Carefully removing the sweet Jackfruit pods...";
+            case "pinipig":
+                return "Toasting the crunchy Pinipig to a golden delight...";
+            case "milk":
+                return "Pouring the creamy Milk into a jug...";
+            default:
+                return "Preparing " + itemName + " with a pinch of magic...";
+        }
     }
 
 }
@@ -4,16 +4,26 @@
 public class Transaction {
     private Item item;
     private int quantity;
+    private long amount;
+    private long timestamp;
+    private boolean meal;
 
     /**
-     * This is the constructor of a transaction given the item and the quantity
+     * This is the constructor of a transaction given the item, the quantity, the
+     * amount paid for it, when it was made and whether it was a meal
      * 
-     * @param item     the item purchased by users
-     * @param quantity the quantity of the item purchased
+     * @param item      the item purchased by users
+     * @param quantity  the quantity of the item purchased
+     * @param amount    the total price of the purchase (in centavos)
+     * @param timestamp the time of the purchase (in milliseconds since the epoch)
+     * @param meal      true if the item is a meal, false if it is a single item
      */
-    public Transaction(Item item, int quantity) {
+    public Transaction(Item item, int quantity, long amount, long timestamp, boolean meal) {
         this.item = item;
         this.quantity = quantity;
+        this.amount = amount;
+        this.timestamp = timestamp;
+        this.meal = meal;
     }
 
     /**
@@ -33,4 +43,31 @@ public class Transaction {
     public int getQuantity() {
         return quantity;
     }
+
+    /**
+     * Gets the total price of the purchase
+     * 
+     * @return the amount of the purchase (in centavos)
+     */
+    public long getAmount() {
+        return amount;
+    }
+
+    /**
+     * Gets the time of the purchase
+     * 
+     * @return the time of the purchase (in milliseconds since the epoch)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Checks if the purchase was a meal
+     * 
+     * @return true if the item is a meal, false if it is a single item
+     */
+    public boolean isMeal() {
+        return meal;
+    }
 }
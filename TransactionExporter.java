@@ -0,0 +1,184 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * This class represents the exporter of a vending machine's transactions to
+ * CSV or NDJSON (one JSON object per line).
+ * Transactions are read from the transaction log a batch at a time and written
+ * straight to the output, so exporting uses the same small amount of memory no
+ * matter how many transactions there are.
+ */
+public class TransactionExporter {
+    public static final int CSV = 0;
+    public static final int NDJSON = 1;
+    public static final int ALL_ITEMS = -1;
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private RegularVendingMachine vendingMachine;
+    private int[] itemIds;
+    private int[] quantities;
+    private long[] amounts;
+    private long[] timestamps;
+    private StringBuilder line;
+
+    /**
+     * This is the constructor of a transaction exporter given the vending
+     * machine whose transactions are exported
+     *
+     * @param vendingMachine the vending machine
+     */
+    public TransactionExporter(RegularVendingMachine vendingMachine) {
+        this.vendingMachine = vendingMachine;
+        this.itemIds = new int[BATCH_SIZE];
+        this.quantities = new int[BATCH_SIZE];
+        this.amounts = new long[BATCH_SIZE];
+        this.timestamps = new long[BATCH_SIZE];
+        this.line = new StringBuilder(256);
+    }
+
+    /**
+     * Exports every transaction to a file, replacing it if it exists
+     *
+     * @param path   the file to export to
+     * @param format the format of the export (CSV or NDJSON)
+     * @return the number of transactions exported
+     * @throws IOException if the file cannot be written
+     */
+    public int export(Path path, int format) throws IOException {
+        return export(path, format, Long.MIN_VALUE, Long.MAX_VALUE, ALL_ITEMS);
+    }
+
+    /**
+     * Exports the transactions made between two times, and optionally of only
+     * one item, to a file, replacing it if it exists
+     *
+     * @param path   the file to export to
+     * @param format the format of the export (CSV or NDJSON)
+     * @param from   the start of the time range (in milliseconds since the epoch)
+     * @param to     the end of the time range, not included (in milliseconds
+     *               since the epoch)
+     * @param itemId the catalog id of the item to export, or ALL_ITEMS
+     * @return the number of transactions exported
+     * @throws IOException if the file cannot be written
+     */
+    public int export(Path path, int format, long from, long to, int itemId) throws IOException {
+        try (OutputStream out = Files.newOutputStream(path)) {
+            return export(out, format, from, to, itemId);
+        }
+    }
+
+    /**
+     * Exports the transactions made between two times, and optionally of only
+     * one item, to an output stream. The stream is flushed but not closed.
+     *
+     * @param out    the stream to export to
+     * @param format the format of the export (CSV or NDJSON)
+     * @param from   the start of the time range (in milliseconds since the epoch)
+     * @param to     the end of the time range, not included (in milliseconds
+     *               since the epoch)
+     * @param itemId the catalog id of the item to export, or ALL_ITEMS
+     * @return the number of transactions exported
+     * @throws IOException if the stream cannot be written
+     */
+    public synchronized int export(OutputStream out, int format, long from, long to, int itemId)
+            throws IOException {
+        if (format != CSV && format != NDJSON) {
+            throw new IllegalArgumentException("Unknown export format: " + format);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (format == CSV) {
+            writer.write("timestamp,item_id,item,quantity,amount,meal\n");
+        }
+
+        TransactionStore transactions = vendingMachine.getTransactionStore();
+        int size = transactions.size();
+        int exported = 0;
+        for (int start = 0; start < size; start += BATCH_SIZE) {
+            int count = transactions.read(start, Math.min(BATCH_SIZE, size - start), itemIds, quantities, amounts,
+                    timestamps);
+            for (int i = 0; i < count; i++) {
+                if (timestamps[i] < from || timestamps[i] >= to || (itemId != ALL_ITEMS && itemIds[i] != itemId)) {
+                    continue;
+                }
+                line.setLength(0);
+                if (format == CSV) {
+                    appendCsv(i);
+                } else {
+                    appendJson(i);
+                }
+                writer.append(line);
+                exported++;
+            }
+        }
+        writer.flush();
+        return exported;
+    }
+
+    /**
+     * Appends a transaction of the current batch to the line as CSV
+     *
+     * @param index the index of the transaction in the batch
+     */
+    private void appendCsv(int index) {
+        Item item = vendingMachine.getCatalogItem(itemIds[index]);
+        line.append(Instant.ofEpochMilli(timestamps[index])).append(',');
+        line.append(itemIds[index]).append(',');
+
+        String name = item.getName();
+        if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || name.indexOf('\n') >= 0) {
+            line.append('"');
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        } else {
+            line.append(name);
+        }
+
+        line.append(',').append(quantities[index]);
+        line.append(',').append(Money.format(amounts[index]));
+        line.append(',').append(vendingMachine.isMealItem(itemIds[index])).append('\n');
+    }
+
+    /**
+     * Appends a transaction of the current batch to the line as a JSON object
+     *
+     * @param index the index of the transaction in the batch
+     */
+    private void appendJson(int index) {
+        Item item = vendingMachine.getCatalogItem(itemIds[index]);
+        line.append("{\"timestamp\":\"").append(Instant.ofEpochMilli(timestamps[index])).append('"');
+        line.append(",\"itemId\":").append(itemIds[index]);
+        line.append(",\"item\":\"");
+
+        String name = item.getName();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+
+        line.append("\",\"quantity\":").append(quantities[index]);
+        line.append(",\"amount\":").append(Money.format(amounts[index]));
+        line.append(",\"meal\":").append(vendingMachine.isMealItem(itemIds[index])).append("}\n");
+    }
+}
@@ -0,0 +1,651 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * This class represents the transaction journal of a vending machine. Every
+ * change to the machine's stock, sales and money is appended to a file as a
+ * fixed-size binary record, so the machine can be rebuilt after a restart by
+ * replaying the file. Records that do not fit in one record are followed by
+ * continuation records: the lines of a meal, and the rest of an item name
+ * longer than NAME_LENGTH bytes. A sale is followed by the money records of
+ * the payment and the change it took, so a sale is replayed together with its
+ * money or not at all.
+ * Records are written to the file right away, while forcing them to the disk
+ * is done in groups by a background thread every few milliseconds. Appends are
+ * made while the machine holds its slot and money locks, so the force is done
+ * outside the journal's monitor and never holds up an append.
+ * If a record cannot be written or forced, the journal is marked failed and
+ * writes nothing more, since a journal with a record missing would replay to a
+ * wrong machine. The failure is kept so the machine can report it.
+ */
+public class TransactionJournal implements Closeable {
+    public static final int RECORD_SIZE = 64;
+
+    public static final byte ITEM = 1;
+    public static final byte RESTOCK = 2;
+    public static final byte SALE = 3;
+    public static final byte MEAL = 4;
+    public static final byte MEAL_LINE = 5;
+    public static final byte MONEY = 6;
+    public static final byte COLLECT = 7;
+    public static final byte ITEM_NAME = 8;
+
+    private static final int MONEY_COUNT_OFFSET = 32;
+    private static final int NAME_OFFSET = 40;
+    private static final int NAME_LENGTH = 20;
+    private static final int NAME_PART_OFFSET = 16;
+    private static final int CHECKSUM_OFFSET = 60;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private CRC32 checksum;
+    private ScheduledExecutorService syncExecutor;
+    private boolean unsynced;
+    private volatile IOException failure;
+
+    /**
+     * This is an interface for receiving the records of a journal while it is
+     * replayed
+     */
+    public interface Replayer {
+        /**
+         * Called for a new item added to the item catalog
+         *
+         * @param itemId the id of the item in the catalog
+         * @param item   the item
+         */
+        void item(int itemId, Item item);
+
+        /**
+         * Called for a slot that was restocked
+         *
+         * @param slotNumber the slot number
+         * @param itemId     the id of the slot's item
+         * @param quantity   the quantity of the slot after restocking
+         */
+        void restock(int slotNumber, int itemId, int quantity);
+
+        /**
+         * Called for an item that was sold
+         *
+         * @param slotNumber the slot number
+         * @param itemId     the id of the item
+         * @param quantity   the quantity sold
+         * @param amount     the total price of the sale (in centavos)
+         * @param timestamp  the time of the sale (in milliseconds since the epoch)
+         */
+        void sale(int slotNumber, int itemId, int quantity, long amount, long timestamp);
+
+        /**
+         * Called for a meal that was sold
+         *
+         * @param itemId      the id of the meal's item
+         * @param slotNumbers the slot numbers the meal took items from
+         * @param quantities  the quantity taken from each slot
+         * @param amount      the total price of the meal (in centavos)
+         * @param timestamp   the time of the sale (in milliseconds since the epoch)
+         */
+        void meal(int itemId, int[] slotNumbers, int[] quantities, long amount, long timestamp);
+
+        /**
+         * Called for money that was added to or taken from the machine
+         *
+         * @param denominationIndex the index of the denomination
+         * @param quantity          the number of pieces added (negative if taken)
+         */
+        void money(int denominationIndex, int quantity);
+
+        /**
+         * Called when the sales were collected
+         *
+         * @param amount the amount collected (in centavos)
+         */
+        void collect(long amount);
+    }
+
+    /**
+     * This is the constructor of a transaction journal given its file and how
+     * often records are forced to the disk
+     *
+     * @param path         the file of the journal
+     * @param syncInterval the time between two forces (in milliseconds)
+     * @throws IOException if the file cannot be opened
+     */
+    public TransactionJournal(Path path, long syncInterval) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(RECORD_SIZE * 64);
+        this.checksum = new CRC32();
+        this.unsynced = false;
+
+        this.syncExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.syncExecutor.scheduleWithFixedDelay(this::syncQuietly, syncInterval, syncInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This is the constructor of a transaction journal given its file. Records
+     * are forced to the disk every 50 milliseconds.
+     *
+     * @param path the file of the journal
+     * @throws IOException if the file cannot be opened
+     */
+    public TransactionJournal(Path path) throws IOException {
+        this(path, 50);
+    }
+
+    /**
+     * Replays the records of the journal starting from a position. A sale is
+     * only replayed once all of its meal lines and money records are read. A
+     * torn record, or an unfinished sale or item name at the end of the file
+     * (left by a crash while writing), is cut off, and new records are appended
+     * after the last good one.
+     *
+     * @param position the position in the file to start from (in bytes)
+     * @param replayer the receiver of the records
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized void replay(long position, Replayer replayer) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        position = Math.min(position, channel.size());
+        long goodPosition = position;
+        long salePosition = -1;
+        byte saleType = 0;
+        int[] saleSlots = null;
+        int[] saleQuantities = null;
+        int saleLines = 0;
+        int saleItemId = 0;
+        long saleAmount = 0;
+        long saleTimestamp = 0;
+        int[] moneyIndexes = null;
+        int[] moneyQuantities = null;
+        int moneyLines = 0;
+        long itemPosition = -1;
+        byte[] itemName = null;
+        int itemNameRead = 0;
+        int itemNameId = 0;
+        long itemPrice = 0;
+        double itemCalories = 0;
+
+        while (true) {
+            record.clear();
+            while (record.hasRemaining() && channel.read(record, position + record.position()) > 0) {
+                // keep reading until the record is full or the file ends
+            }
+            if (record.hasRemaining() || !isValid(record)) {
+                break;
+            }
+            position += RECORD_SIZE;
+
+            byte type = record.get(0);
+            int first = record.getInt(4);
+            int second = record.getInt(8);
+            int itemId = record.getInt(12);
+            long amount = record.getLong(16);
+            long timestamp = record.getLong(24);
+
+            if (saleSlots != null && type != (saleLines < saleSlots.length ? MEAL_LINE : MONEY)
+                    || itemName != null && type != ITEM_NAME) {
+                break;
+            }
+
+            switch (type) {
+                case ITEM:
+                    if (first <= NAME_LENGTH) {
+                        replayer.item(itemId, new Item(readName(record, first), amount, record.getDouble(32)));
+                        break;
+                    }
+                    itemPosition = position - RECORD_SIZE;
+                    itemName = new byte[first];
+                    record.position(NAME_OFFSET);
+                    record.get(itemName, 0, NAME_LENGTH);
+                    itemNameRead = NAME_LENGTH;
+                    itemNameId = itemId;
+                    itemPrice = amount;
+                    itemCalories = record.getDouble(32);
+                    break;
+                case ITEM_NAME:
+                    if (itemName == null) {
+                        break;
+                    }
+                    int partLength = Math.min(CHECKSUM_OFFSET - NAME_PART_OFFSET, itemName.length - itemNameRead);
+                    record.position(NAME_PART_OFFSET);
+                    record.get(itemName, itemNameRead, partLength);
+                    itemNameRead += partLength;
+                    if (itemNameRead == itemName.length) {
+                        replayer.item(itemNameId, new Item(new String(itemName, StandardCharsets.UTF_8), itemPrice,
+                                itemCalories));
+                        itemName = null;
+                    }
+                    break;
+                case RESTOCK:
+                    replayer.restock(first, itemId, second);
+                    break;
+                case SALE:
+                case MEAL:
+                    salePosition = position - RECORD_SIZE;
+                    saleType = type;
+                    saleSlots = new int[type == SALE ? 1 : first];
+                    saleQuantities = new int[saleSlots.length];
+                    saleLines = 0;
+                    if (type == SALE) {
+                        saleSlots[0] = first;
+                        saleQuantities[0] = second;
+                        saleLines = 1;
+                    }
+                    saleItemId = itemId;
+                    saleAmount = amount;
+                    saleTimestamp = timestamp;
+                    moneyIndexes = new int[record.getInt(MONEY_COUNT_OFFSET)];
+                    moneyQuantities = new int[moneyIndexes.length];
+                    moneyLines = 0;
+                    break;
+                case MEAL_LINE:
+                    if (saleSlots == null) {
+                        break;
+                    }
+                    saleSlots[saleLines] = first;
+                    saleQuantities[saleLines] = second;
+                    saleLines++;
+                    break;
+                case MONEY:
+                    if (saleSlots == null) {
+                        replayer.money(first, second);
+                        break;
+                    }
+                    moneyIndexes[moneyLines] = first;
+                    moneyQuantities[moneyLines] = second;
+                    moneyLines++;
+                    break;
+                case COLLECT:
+                    replayer.collect(amount);
+                    break;
+                default:
+                    break;
+            }
+
+            if (saleSlots != null && saleLines == saleSlots.length && moneyLines == moneyIndexes.length) {
+                if (saleType == SALE) {
+                    replayer.sale(saleSlots[0], saleItemId, saleQuantities[0], saleAmount, saleTimestamp);
+                } else {
+                    replayer.meal(saleItemId, saleSlots, saleQuantities, saleAmount, saleTimestamp);
+                }
+                for (int i = 0; i < moneyIndexes.length; i++) {
+                    replayer.money(moneyIndexes[i], moneyQuantities[i]);
+                }
+                saleSlots = null;
+            }
+            if (saleSlots == null && itemName == null) {
+                goodPosition = position;
+            }
+        }
+
+        if (saleSlots != null) {
+            goodPosition = salePosition;
+        }
+        if (itemName != null) {
+            goodPosition = itemPosition;
+        }
+        if (channel.size() > goodPosition) {
+            channel.truncate(goodPosition);
+        }
+        channel.position(goodPosition);
+    }
+
+    /**
+     * Appends an item of the item catalog, when it is added to the catalog or
+     * when its price changes. The length of the name is kept in the record, and
+     * the bytes of the name that do not fit in it are written in ITEM_NAME
+     * records right after it, so the name is never cut.
+     *
+     * @param itemId the id of the item in the catalog
+     * @param item   the item
+     */
+    public synchronized void appendItem(int itemId, Item item) {
+        byte[] name = item.getName().getBytes(StandardCharsets.UTF_8);
+        putRecord(ITEM, name.length, 0, itemId, item.getPrice(), System.currentTimeMillis());
+        int start = buffer.position() - RECORD_SIZE;
+        buffer.putDouble(start + 32, item.getCalories());
+        putName(start + NAME_OFFSET, name, 0, NAME_LENGTH);
+        sealRecord(start);
+
+        for (int offset = NAME_LENGTH; offset < name.length; offset += CHECKSUM_OFFSET - NAME_PART_OFFSET) {
+            if (!buffer.hasRemaining()) {
+                write();
+            }
+            putRecord(ITEM_NAME, 0, 0, itemId, 0, 0);
+            start = buffer.position() - RECORD_SIZE;
+            putName(start + NAME_PART_OFFSET, name, offset, CHECKSUM_OFFSET - NAME_PART_OFFSET);
+            sealRecord(start);
+        }
+        write();
+    }
+
+    /**
+     * Appends a restock of a slot
+     *
+     * @param slotNumber the slot number
+     * @param itemId     the id of the slot's item
+     * @param quantity   the quantity of the slot after restocking
+     */
+    public synchronized void appendRestock(int slotNumber, int itemId, int quantity) {
+        putRecord(RESTOCK, slotNumber, quantity, itemId, 0, System.currentTimeMillis());
+        write();
+    }
+
+    /**
+     * Appends the sale of an item. The sale and the money it moved are written
+     * together.
+     *
+     * @param slotNumber    the slot number
+     * @param itemId        the id of the item
+     * @param quantity      the quantity sold
+     * @param amount        the total price of the sale (in centavos)
+     * @param timestamp     the time of the sale (in milliseconds since the epoch)
+     * @param pieces        the number of pieces of each denomination added by the
+     *                      sale (negative if taken)
+     * @param denominations the value of each denomination (in centavos)
+     */
+    public synchronized void appendSale(int slotNumber, int itemId, int quantity, long amount, long timestamp,
+            int[] pieces, long[] denominations) {
+        putRecord(SALE, slotNumber, quantity, itemId, amount, timestamp);
+        putMoneyCount(pieces);
+        putMoney(pieces, denominations, timestamp);
+        write();
+    }
+
+    /**
+     * Appends the sale of a meal. The meal, all its slots and the money it
+     * moved are written together.
+     *
+     * @param itemId        the id of the meal's item
+     * @param slotNumbers   the slot numbers the meal took items from
+     * @param quantities    the quantity taken from each slot
+     * @param amount        the total price of the meal (in centavos)
+     * @param timestamp     the time of the sale (in milliseconds since the epoch)
+     * @param pieces        the number of pieces of each denomination added by the
+     *                      sale (negative if taken)
+     * @param denominations the value of each denomination (in centavos)
+     */
+    public synchronized void appendMeal(int itemId, int[] slotNumbers, int[] quantities, long amount,
+            long timestamp, int[] pieces, long[] denominations) {
+        putRecord(MEAL, slotNumbers.length, 0, itemId, amount, timestamp);
+        putMoneyCount(pieces);
+        for (int i = 0; i < slotNumbers.length; i++) {
+            if (!buffer.hasRemaining()) {
+                write();
+            }
+            putRecord(MEAL_LINE, slotNumbers[i], quantities[i], itemId, 0, timestamp);
+        }
+        putMoney(pieces, denominations, timestamp);
+        write();
+    }
+
+    /**
+     * Appends money added to or taken from the machine
+     *
+     * @param denominationIndex the index of the denomination
+     * @param quantity          the number of pieces added (negative if taken)
+     * @param amount            the value of the pieces (in centavos)
+     */
+    public synchronized void appendMoney(int denominationIndex, int quantity, long amount) {
+        putRecord(MONEY, denominationIndex, quantity, 0, amount, System.currentTimeMillis());
+        write();
+    }
+
+    /**
+     * Appends the collection of the sales
+     *
+     * @param amount the amount collected (in centavos)
+     */
+    public synchronized void appendCollect(long amount) {
+        putRecord(COLLECT, 0, 0, 0, amount, System.currentTimeMillis());
+        write();
+    }
+
+    /**
+     * Gets the position where the next record will be written
+     *
+     * @return the position in the file (in bytes)
+     * @throws IOException if the position cannot be read
+     */
+    public synchronized long getPosition() throws IOException {
+        return channel.position();
+    }
+
+    /**
+     * Checks if the journal failed to write or force a record. A failed
+     * journal writes nothing more.
+     *
+     * @return true if the journal failed
+     */
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Gets the error that made the journal fail
+     *
+     * @return the error, or null if the journal did not fail
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Forces every record written so far to the disk. Only the check of what
+     * is unsynced is done under the journal's monitor; records can be appended
+     * while the file is forced, since the channel is safe to use from several
+     * threads.
+     *
+     * @throws IOException if the file cannot be forced
+     */
+    public void sync() throws IOException {
+        synchronized (this) {
+            if (!unsynced) {
+                return;
+            }
+            unsynced = false;
+        }
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            synchronized (this) {
+                unsynced = true;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Forces the last records to the disk and closes the journal
+     *
+     * @throws IOException if the file cannot be forced or closed
+     */
+    @Override
+    public void close() throws IOException {
+        // the background thread needs the monitor to finish, so it is waited for first
+        syncExecutor.shutdown();
+        try {
+            syncExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            sync();
+            channel.close();
+        }
+    }
+
+    /**
+     * Puts a record in the write buffer
+     *
+     * @param type      the type of the record
+     * @param first     the slot number, denomination index or number of meal
+     *                  lines
+     * @param second    the quantity of the record
+     * @param itemId    the item id of the record
+     * @param amount    the amount of the record (in centavos)
+     * @param timestamp the time of the record (in milliseconds since the epoch)
+     */
+    private void putRecord(byte type, int first, int second, int itemId, long amount, long timestamp) {
+        int start = buffer.position();
+        for (int i = 0; i < RECORD_SIZE; i += 8) {
+            buffer.putLong(start + i, 0);
+        }
+        buffer.put(start, type);
+        buffer.putInt(start + 4, first);
+        buffer.putInt(start + 8, second);
+        buffer.putInt(start + 12, itemId);
+        buffer.putLong(start + 16, amount);
+        buffer.putLong(start + 24, timestamp);
+        sealRecord(start);
+        buffer.position(start + RECORD_SIZE);
+    }
+
+    /**
+     * Puts the number of money records that follow a sale in the sale's
+     * record, which must be the last record in the write buffer
+     *
+     * @param pieces the number of pieces of each denomination added by the sale
+     */
+    private void putMoneyCount(int[] pieces) {
+        int count = 0;
+        for (int quantity : pieces) {
+            if (quantity != 0) {
+                count++;
+            }
+        }
+        int start = buffer.position() - RECORD_SIZE;
+        buffer.putInt(start + MONEY_COUNT_OFFSET, count);
+        sealRecord(start);
+    }
+
+    /**
+     * Puts a money record in the write buffer for each denomination whose
+     * number of pieces changed
+     *
+     * @param pieces        the number of pieces of each denomination added
+     *                      (negative if taken)
+     * @param denominations the value of each denomination (in centavos)
+     * @param timestamp     the time of the records (in milliseconds since the
+     *                      epoch)
+     */
+    private void putMoney(int[] pieces, long[] denominations, long timestamp) {
+        for (int i = 0; i < pieces.length; i++) {
+            if (pieces[i] != 0) {
+                if (!buffer.hasRemaining()) {
+                    write();
+                }
+                putRecord(MONEY, i, pieces[i], 0, denominations[i] * pieces[i], timestamp);
+            }
+        }
+    }
+
+    /**
+     * Puts part of a name in the write buffer, padded with zeros
+     *
+     * @param position the position in the write buffer
+     * @param name     the bytes of the name
+     * @param offset   the first byte of the name to put
+     * @param length   the number of bytes to put, including the padding
+     */
+    private void putName(int position, byte[] name, int offset, int length) {
+        for (int i = 0; i < length; i++) {
+            buffer.put(position + i, offset + i < name.length ? name[offset + i] : 0);
+        }
+    }
+
+    /**
+     * Computes and puts the checksum of a record in the write buffer
+     *
+     * @param start the position of the record in the write buffer
+     */
+    private void sealRecord(int start) {
+        ByteBuffer content = buffer.duplicate();
+        content.position(start).limit(start + CHECKSUM_OFFSET);
+        checksum.reset();
+        checksum.update(content);
+        buffer.putInt(start + CHECKSUM_OFFSET, (int) checksum.getValue());
+    }
+
+    /**
+     * Writes the records in the write buffer to the file, unless the journal
+     * has failed
+     */
+    private void write() {
+        buffer.flip();
+        if (failure == null) {
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                unsynced = true;
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Marks the journal failed, so that nothing more is written to it
+     *
+     * @param e the error that made the journal fail
+     */
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            System.out.println("ERROR: The transaction journal failed and is no longer written: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks the checksum of a record read from the file
+     *
+     * @param record the record
+     * @return true if the record is complete and unchanged, false if not
+     */
+    private boolean isValid(ByteBuffer record) {
+        checksum.reset();
+        checksum.update(record.array(), 0, CHECKSUM_OFFSET);
+        return record.getInt(CHECKSUM_OFFSET) == (int) checksum.getValue();
+    }
+
+    /**
+     * Reads the item name of an item record whose name fits in it
+     *
+     * @param record the record
+     * @param length the length of the name (in bytes)
+     * @return the name of the item
+     */
+    private String readName(ByteBuffer record, int length) {
+        return new String(record.array(), NAME_OFFSET, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Forces the records to the disk from the background thread
+     */
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            synchronized (this) {
+                fail(e);
+            }
+        }
+    }
+}
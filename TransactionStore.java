@@ -0,0 +1,233 @@
+import java.util.Arrays;
+
+/**
+ * This class represents the transaction log of a vending machine.
+ * Instead of one object per transaction, the item id, quantity, amount and
+ * time of every transaction are kept in columns of primitive arrays. The
+ * columns grow one fixed-size chunk at a time, so adding a transaction never
+ * copies the ones before it.
+ * The store also keeps the quantity sold and the revenue of every item as
+ * transactions are added, so totals per item never need to go through the
+ * whole log.
+ */
+public class TransactionStore {
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private int[][] itemIds;
+    private int[][] quantities;
+    private long[][] amounts;
+    private long[][] timestamps;
+    private int size;
+    private long[] soldQuantities;
+    private long[] revenues;
+
+    /**
+     * This is the constructor of an empty transaction store
+     */
+    public TransactionStore() {
+        this.itemIds = new int[1][];
+        this.quantities = new int[1][];
+        this.amounts = new long[1][];
+        this.timestamps = new long[1][];
+        this.size = 0;
+        this.soldQuantities = new long[16];
+        this.revenues = new long[16];
+    }
+
+    /**
+     * Adds a transaction at the end of the log
+     *
+     * @param itemId    the catalog id of the item purchased
+     * @param quantity  the quantity purchased
+     * @param amount    the total price of the purchase (in centavos)
+     * @param timestamp the time of the purchase (in milliseconds since the epoch)
+     */
+    public synchronized void add(int itemId, int quantity, long amount, long timestamp) {
+        int chunk = size >>> CHUNK_BITS;
+        if (chunk == itemIds.length) {
+            itemIds = Arrays.copyOf(itemIds, chunk * 2);
+            quantities = Arrays.copyOf(quantities, chunk * 2);
+            amounts = Arrays.copyOf(amounts, chunk * 2);
+            timestamps = Arrays.copyOf(timestamps, chunk * 2);
+        }
+        if (itemIds[chunk] == null) {
+            itemIds[chunk] = new int[CHUNK_SIZE];
+            quantities[chunk] = new int[CHUNK_SIZE];
+            amounts[chunk] = new long[CHUNK_SIZE];
+            timestamps[chunk] = new long[CHUNK_SIZE];
+        }
+
+        int index = size & CHUNK_MASK;
+        itemIds[chunk][index] = itemId;
+        quantities[chunk][index] = quantity;
+        amounts[chunk][index] = amount;
+        timestamps[chunk][index] = timestamp;
+        size++;
+
+        if (itemId >= soldQuantities.length) {
+            int length = Math.max(itemId + 1, soldQuantities.length * 2);
+            soldQuantities = Arrays.copyOf(soldQuantities, length);
+            revenues = Arrays.copyOf(revenues, length);
+        }
+        soldQuantities[itemId] += quantity;
+        revenues[itemId] += amount;
+    }
+
+    /**
+     * Gets the number of transactions in the log
+     *
+     * @return the number of transactions
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the item id of a transaction
+     *
+     * @param index the index of the transaction in the log
+     * @return the catalog id of the item purchased
+     */
+    public synchronized int getItemId(int index) {
+        checkIndex(index);
+        return itemIds[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the quantity of a transaction
+     *
+     * @param index the index of the transaction in the log
+     * @return the quantity purchased
+     */
+    public synchronized int getQuantity(int index) {
+        checkIndex(index);
+        return quantities[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the amount of a transaction
+     *
+     * @param index the index of the transaction in the log
+     * @return the total price of the purchase (in centavos)
+     */
+    public synchronized long getAmount(int index) {
+        checkIndex(index);
+        return amounts[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    /**
+     * Gets the time of a transaction
+     *
+     * @param index the index of the transaction in the log
+     * @return the time of the purchase (in milliseconds since the epoch)
+     */
+    public synchronized long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    /**
+     * Copies a run of transactions into arrays, all under one lock
+     *
+     * @param start      the index of the first transaction
+     * @param count      the number of transactions wanted
+     * @param itemIds    the array receiving the item ids
+     * @param quantities the array receiving the quantities
+     * @param amounts    the array receiving the amounts (in centavos)
+     * @param timestamps the array receiving the times (in milliseconds since the
+     *                   epoch)
+     * @return the number of transactions copied, which is less than count if the
+     *         log ends first
+     */
+    public synchronized int read(int start, int count, int[] itemIds, int[] quantities, long[] amounts,
+            long[] timestamps) {
+        int end = Math.min(size, start + count);
+        int copied = 0;
+        for (int index = Math.max(start, 0); index < end;) {
+            int chunk = index >>> CHUNK_BITS;
+            int offset = index & CHUNK_MASK;
+            int length = Math.min(CHUNK_SIZE - offset, end - index);
+            System.arraycopy(this.itemIds[chunk], offset, itemIds, copied, length);
+            System.arraycopy(this.quantities[chunk], offset, quantities, copied, length);
+            System.arraycopy(this.amounts[chunk], offset, amounts, copied, length);
+            System.arraycopy(this.timestamps[chunk], offset, timestamps, copied, length);
+            copied += length;
+            index += length;
+        }
+        return copied;
+    }
+
+    /**
+     * Gets the number of item ids that have totals, which is one more than the
+     * largest item id sold so far (or more)
+     *
+     * @return the number of item ids with totals
+     */
+    public synchronized int getItemIdCount() {
+        return soldQuantities.length;
+    }
+
+    /**
+     * Gets the total quantity sold of an item
+     *
+     * @param itemId the catalog id of the item
+     * @return the quantity sold
+     */
+    public synchronized long getSoldQuantity(int itemId) {
+        return itemId >= 0 && itemId < soldQuantities.length ? soldQuantities[itemId] : 0;
+    }
+
+    /**
+     * Gets the total revenue of an item
+     *
+     * @param itemId the catalog id of the item
+     * @return the revenue (in centavos)
+     */
+    public synchronized long getRevenue(int itemId) {
+        return itemId >= 0 && itemId < revenues.length ? revenues[itemId] : 0;
+    }
+
+    /**
+     * Gets the quantity sold of every item
+     *
+     * @return the quantities sold, indexed by item id
+     */
+    public synchronized long[] getSoldQuantities() {
+        return soldQuantities.clone();
+    }
+
+    /**
+     * Gets the revenue of every item
+     *
+     * @return the revenues (in centavos), indexed by item id
+     */
+    public synchronized long[] getRevenues() {
+        return revenues.clone();
+    }
+
+    /**
+     * Removes every transaction from the log and resets the totals
+     */
+    public synchronized void clear() {
+        itemIds = new int[1][];
+        quantities = new int[1][];
+        amounts = new long[1][];
+        timestamps = new long[1][];
+        size = 0;
+        Arrays.fill(soldQuantities, 0);
+        Arrays.fill(revenues, 0);
+    }
+
+    /**
+     * Checks that an index is inside the log
+     *
+     * @param index the index of the transaction
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Transaction " + index + " of " + size);
+        }
+    }
+}
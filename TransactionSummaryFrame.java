@@ -0,0 +1,311 @@
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+/**
+ * This class represents the Transaction Summary Frame of the Maintenance Frame.
+ * It shows the totals of every item and a table of every transaction. The
+ * table only formats the rows on screen, and filtering and sorting are done on
+ * a background thread, so the frame opens and stays responsive no matter how
+ * many transactions there are.
+ */
+public class TransactionSummaryFrame extends JFrame {
+    private static final String ALL_ITEMS = "All Items";
+    private static final String[] SORT_ORDERS = { "Oldest First", "Newest First", "Item", "Amount" };
+    private static final int BATCH_SIZE = 4096;
+
+    private RegularVendingMachine vendingMachine;
+    private TransactionTableModel tableModel;
+    private JComboBox<String> itemComboBox;
+    private JTextField fromField;
+    private JTextField toField;
+    private JComboBox<String> sortComboBox;
+    private JLabel statusLabel;
+    private SwingWorker<int[], Void> worker;
+
+    /**
+     * Constructs the Transaction Summary Frame for the vending machine's GUI.
+     *
+     * @param vendingMachine the RegularVendingMachine instance used for the
+     *                       application.
+     */
+    public TransactionSummaryFrame(RegularVendingMachine vendingMachine) {
+        this.vendingMachine = vendingMachine;
+        this.tableModel = new TransactionTableModel(vendingMachine);
+
+        setTitle("Alishaimma Vending Machine: Transaction Summary");
+        setSize(700, 500);
+        setLocationRelativeTo(null);
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.addTab("Totals by Item", new JScrollPane(createTotalsTable()));
+        tabbedPane.addTab("Transactions", createTransactionsPanel());
+
+        JLabel totalLabel = new JLabel(
+                "Total Amount Collected: PHP " + Money.format(vendingMachine.getTotalSales()));
+        totalLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+
+        add(tabbedPane, BorderLayout.CENTER);
+        add(totalLabel, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Creates the table of the quantity sold and revenue of every item, using
+     * the totals kept by the transaction log
+     *
+     * @return the table of totals
+     */
+    private JTable createTotalsTable() {
+        DefaultTableModel totalsModel = new DefaultTableModel(new String[] { "Item", "Quantity Sold", "Revenue" },
+                0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        TransactionStore transactions = vendingMachine.getTransactionStore();
+        long[] soldQuantities = transactions.getSoldQuantities();
+        long[] revenues = transactions.getRevenues();
+        int itemCount = Math.min(soldQuantities.length, vendingMachine.getCatalogItemCount());
+        for (int i = 0; i < itemCount; i++) {
+            if (soldQuantities[i] > 0) {
+                totalsModel.addRow(new Object[] { vendingMachine.getCatalogItem(i).getName(), soldQuantities[i],
+                        "P" + Money.format(revenues[i]) });
+            }
+        }
+        return new JTable(totalsModel);
+    }
+
+    /**
+     * Creates the panel with the filters and the table of transactions
+     *
+     * @return the panel of transactions
+     */
+    private JPanel createTransactionsPanel() {
+        itemComboBox = new JComboBox<>();
+        itemComboBox.addItem(ALL_ITEMS);
+        for (int i = 0; i < vendingMachine.getCatalogItemCount(); i++) {
+            itemComboBox.addItem(vendingMachine.getCatalogItem(i).getName());
+        }
+        fromField = new JTextField(8);
+        fromField.setToolTipText("yyyy-mm-dd");
+        toField = new JTextField(8);
+        toField.setToolTipText("yyyy-mm-dd");
+        sortComboBox = new JComboBox<>(SORT_ORDERS);
+        JButton applyButton = new JButton("Apply");
+        statusLabel = new JLabel("Showing " + tableModel.getRowCount() + " transactions");
+
+        applyButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                applyFilter();
+            }
+        });
+
+        JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        filterPanel.add(new JLabel("Item:"));
+        filterPanel.add(itemComboBox);
+        filterPanel.add(new JLabel("From:"));
+        filterPanel.add(fromField);
+        filterPanel.add(new JLabel("To:"));
+        filterPanel.add(toField);
+        filterPanel.add(new JLabel("Sort:"));
+        filterPanel.add(sortComboBox);
+        filterPanel.add(applyButton);
+
+        JTable table = new JTable(tableModel);
+        table.setFillsViewportHeight(true);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(filterPanel, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        panel.add(statusLabel, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    /**
+     * Reads the filters and starts filtering and sorting the transactions on a
+     * background thread. A filter still running is cancelled.
+     */
+    private void applyFilter() {
+        long from;
+        long to;
+        try {
+            from = parseDate(fromField.getText(), Long.MIN_VALUE, 0);
+            to = parseDate(toField.getText(), Long.MAX_VALUE, 1);
+        } catch (DateTimeParseException e) {
+            JOptionPane.showMessageDialog(this, "Dates must be written as yyyy-mm-dd.", "Transaction Summary",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        int itemId = itemComboBox.getSelectedIndex() - 1;
+        int sortOrder = sortComboBox.getSelectedIndex();
+
+        if (worker != null) {
+            worker.cancel(true);
+        }
+        statusLabel.setText("Filtering...");
+        worker = new SwingWorker<int[], Void>() {
+            @Override
+            protected int[] doInBackground() {
+                return filterRows(itemId, from, to, sortOrder);
+            }
+
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    int[] rows = get();
+                    tableModel.setRows(rows);
+                    statusLabel.setText("Showing " + rows.length + " transactions");
+                } catch (InterruptedException | ExecutionException e) {
+                    statusLabel.setText("Could not filter the transactions: " + e.getMessage());
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * Converts a date typed in a filter field to a time
+     *
+     * @param text       the text of the field
+     * @param emptyValue the time used if the field is empty
+     * @param daysAfter  the number of days to add to the start of the date
+     * @return the start of the date plus the days given (in milliseconds since
+     *         the epoch)
+     */
+    private long parseDate(String text, long emptyValue, int daysAfter) {
+        if (text.trim().isEmpty()) {
+            return emptyValue;
+        }
+        LocalDate date = LocalDate.parse(text.trim()).plusDays(daysAfter);
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Finds the transactions that match the filters and sorts them. This runs on
+     * a background thread, reading the transaction log a batch at a time.
+     *
+     * @param itemId    the catalog id of the item to keep, or -1 for every item
+     * @param from      the start of the time range (in milliseconds since the
+     *                  epoch)
+     * @param to        the end of the time range, not included (in milliseconds
+     *                  since the epoch)
+     * @param sortOrder the index of the sort order in SORT_ORDERS
+     * @return the indices of the matching transactions in the transaction log
+     */
+    private int[] filterRows(int itemId, long from, long to, int sortOrder) {
+        TransactionStore transactions = vendingMachine.getTransactionStore();
+        int size = transactions.size();
+        int[] itemIds = new int[BATCH_SIZE];
+        int[] quantities = new int[BATCH_SIZE];
+        long[] amounts = new long[BATCH_SIZE];
+        long[] timestamps = new long[BATCH_SIZE];
+        long[] itemRanks = getItemRanks();
+
+        int[] rows = new int[Math.min(size, BATCH_SIZE)];
+        long[] keys = new long[rows.length];
+        int count = 0;
+        for (int start = 0; start < size && !Thread.currentThread().isInterrupted(); start += BATCH_SIZE) {
+            int read = transactions.read(start, BATCH_SIZE, itemIds, quantities, amounts, timestamps);
+            for (int i = 0; i < read; i++) {
+                if (timestamps[i] < from || timestamps[i] >= to || (itemId >= 0 && itemIds[i] != itemId)) {
+                    continue;
+                }
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                    keys = Arrays.copyOf(keys, keys.length * 2);
+                }
+                rows[count] = start + i;
+                switch (sortOrder) {
+                    case 1:
+                        keys[count] = -timestamps[i];
+                        break;
+                    case 2:
+                        keys[count] = itemRanks[itemIds[i]];
+                        break;
+                    case 3:
+                        keys[count] = -amounts[i];
+                        break;
+                    default:
+                        keys[count] = timestamps[i];
+                        break;
+                }
+                count++;
+            }
+        }
+
+        rows = Arrays.copyOf(rows, count);
+        sortRows(rows, Arrays.copyOf(keys, count));
+        return rows;
+    }
+
+    /**
+     * Gets the position of every item of the catalog when the items are sorted
+     * by name
+     *
+     * @return the position of each item, indexed by item id
+     */
+    private long[] getItemRanks() {
+        int itemCount = vendingMachine.getCatalogItemCount();
+        String[] names = new String[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            names[i] = vendingMachine.getCatalogItem(i).getName();
+        }
+        String[] sortedNames = names.clone();
+        Arrays.sort(sortedNames, String.CASE_INSENSITIVE_ORDER);
+
+        long[] ranks = new long[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            ranks[i] = Arrays.binarySearch(sortedNames, names[i], String.CASE_INSENSITIVE_ORDER);
+        }
+        return ranks;
+    }
+
+    /**
+     * Sorts rows by their keys, keeping rows with the same key in log order
+     * (merge sort)
+     *
+     * @param rows the rows to be sorted
+     * @param keys the key of each row
+     */
+    private static void sortRows(int[] rows, long[] keys) {
+        int[] rowBuffer = new int[rows.length];
+        long[] keyBuffer = new long[keys.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int low = 0; low < rows.length - width; low += 2 * width) {
+                int middle = low + width;
+                int high = Math.min(low + 2 * width, rows.length);
+                if (keys[middle - 1] <= keys[middle]) {
+                    continue;
+                }
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if (right >= high || (left < middle && keys[left] <= keys[right])) {
+                        rowBuffer[i] = rows[left];
+                        keyBuffer[i] = keys[left++];
+                    } else {
+                        rowBuffer[i] = rows[right];
+                        keyBuffer[i] = keys[right++];
+                    }
+                }
+                System.arraycopy(rowBuffer, low, rows, low, high - low);
+                System.arraycopy(keyBuffer, low, keys, low, high - low);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * This class represents the table model of the transactions of a vending
+ * machine. The model does not copy the transactions: each cell is read from
+ * the machine's transaction log and formatted only when the table shows it.
+ * The rows shown can be narrowed and reordered by giving the model a list of
+ * transaction indices, which is made in the background by the summary frame.
+ */
+public class TransactionTableModel extends AbstractTableModel {
+    private static final String[] COLUMN_NAMES = { "Date and Time", "Item", "Quantity", "Amount", "Type" };
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    private RegularVendingMachine vendingMachine;
+    private TransactionStore transactions;
+    private int[] rows;
+    private int rowCount;
+
+    /**
+     * This is the constructor of the table model showing every transaction of a
+     * vending machine logged so far, oldest first
+     *
+     * @param vendingMachine the vending machine
+     */
+    public TransactionTableModel(RegularVendingMachine vendingMachine) {
+        this.vendingMachine = vendingMachine;
+        this.transactions = vendingMachine.getTransactionStore();
+        this.rows = null;
+        this.rowCount = transactions.size();
+    }
+
+    /**
+     * Shows only the given transactions, in the given order
+     *
+     * @param rows the indices of the transactions in the transaction log, or
+     *             null to show every transaction oldest first
+     */
+    public void setRows(int[] rows) {
+        this.rows = rows;
+        this.rowCount = rows == null ? transactions.size() : rows.length;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Gets the index in the transaction log of a row of the table
+     *
+     * @param row the row of the table
+     * @return the index of the transaction
+     */
+    public int getTransactionIndex(int row) {
+        return rows == null ? row : rows[row];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 2 ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int index = getTransactionIndex(row);
+        switch (column) {
+            case 0:
+                return TIME_FORMAT.format(Instant.ofEpochMilli(transactions.getTimestamp(index)));
+            case 1:
+                return vendingMachine.getCatalogItem(transactions.getItemId(index)).getName();
+            case 2:
+                return transactions.getQuantity(index);
+            case 3:
+                return "P" + Money.format(transactions.getAmount(index));
+            case 4:
+                return vendingMachine.isMealItem(transactions.getItemId(index)) ? "Meal" : "Item";
+            default:
+                return null;
+        }
+    }
+}
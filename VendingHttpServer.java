@@ -0,0 +1,663 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+/**
+ * This class represents the HTTP endpoint of the vending machine, so the
+ * machine can be sold from, restocked and watched remotely. Every request is
+ * answered with JSON by the vending service, so it follows the same locking
+ * as the console and the GUI: purchases of different slots run in parallel,
+ * and money is only ever changed under the money lock.
+ * Amounts of money are written in pesos with two decimals, and money given
+ * piece by piece is an array of counts in the order of the denominations (or
+ * an object from the peso value of a denomination to its count).
+ * Requests are checked before they reach the machine: a count of pieces must
+ * be from 0 to MAX_PIECES, a quantity to restock from 1 to MAX_QUANTITY, a
+ * custom meal can have at most MAX_MEAL_PIECES pieces, and a price must be a
+ * whole number of centavos from 0 to MAX_PRICE; anything else is answered
+ * with 400.
+ * Answers are small, so main turns on sun.net.httpserver.nodelay to send them
+ * at once instead of waiting to fill a packet. A program that makes its own
+ * endpoint can pass -Dsun.net.httpserver.nodelay=true when it is launched.
+ *
+ * GET /inventory, /coins, /sales and /meals read the machine. POST /purchase,
+ * /meal, /restock, /replenish and /collect change it.
+ */
+public class VendingHttpServer {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int MAX_PIECES = 1000;
+    public static final int MAX_QUANTITY = 10000;
+    public static final int MAX_MEAL_PIECES = 100;
+    public static final long MAX_PRICE = Money.pesos(100000);
+
+    private static final int MAX_BODY_SIZE = 64 * 1024;
+    private static final int BACKLOG = 1024;
+
+    private VendingService vendingService;
+    private RegularVendingMachine vendingMachine;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * This is the constructor of the HTTP endpoint of a vending service. The
+     * endpoint only listens on the loopback address.
+     *
+     * @param vendingService the vending service
+     * @param port           the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public VendingHttpServer(VendingService vendingService, int port) throws IOException {
+        this(vendingService, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * This is the constructor of the HTTP endpoint of a vending service
+     *
+     * @param vendingService the vending service
+     * @param address        the address to listen on
+     * @throws IOException if the address cannot be opened
+     */
+    public VendingHttpServer(VendingService vendingService, InetSocketAddress address) throws IOException {
+        this.vendingService = vendingService;
+        this.vendingMachine = vendingService.getVendingMachine();
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = createExecutor();
+
+        server.createContext("/inventory", new Endpoint("GET") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                return getInventory();
+            }
+        });
+        server.createContext("/coins", new Endpoint("GET") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                return getCoins();
+            }
+        });
+        server.createContext("/sales", new Endpoint("GET") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                return getSales();
+            }
+        });
+        server.createContext("/meals", new Endpoint("GET") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                return getMeals();
+            }
+        });
+        server.createContext("/purchase", new Endpoint("POST") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                PurchaseRequest request = new PurchaseRequest(getInt(body, "slot", -1), getInt(body, "quantity", 1),
+                        getPieces(body, "payment"));
+                return toJson(vendingService.buyItem(request), status, null);
+            }
+        });
+        server.createContext("/meal", new Endpoint("POST") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                int[] payment = getPieces(body, "payment");
+                MealRequest request;
+                if (body.get("pieces") instanceof List) {
+                    int[] pieces = getInts(body, "pieces");
+                    if (pieces.length > MAX_MEAL_PIECES) {
+                        throw new IllegalArgumentException("\"pieces\" can have at most " + MAX_MEAL_PIECES + " items");
+                    }
+                    request = MealRequest.custom(pieces, payment);
+                } else if (body.get("meal") instanceof String) {
+                    request = MealRequest.predefined((String) body.get("meal"), payment);
+                } else {
+                    request = MealRequest.predefined(getInt(body, "mealId", -1), payment);
+                }
+                return toJson(vendingService.buyMeal(request), status, null);
+            }
+        });
+        server.createContext("/restock", new Endpoint("POST") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                Item item = null;
+                if (body.get("item") instanceof Map) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> itemBody = (Map<String, Object>) body.get("item");
+                    Object name = itemBody.get("name");
+                    item = new Item(name instanceof String ? (String) name : null, getAmount(itemBody, "price"),
+                            getNumber(itemBody, "calories"));
+                }
+                int quantity = getInt(body, "quantity", 0);
+                if (quantity <= 0 || quantity > MAX_QUANTITY) {
+                    throw new IllegalArgumentException("\"quantity\" must be from 1 to " + MAX_QUANTITY);
+                }
+                RestockRequest request = new RestockRequest(getInt(body, "slot", -1), item, quantity);
+                return toJson(vendingService.restock(request), status, "quantity");
+            }
+        });
+        server.createContext("/replenish", new Endpoint("POST") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                VendingResult result = vendingService.replenish(new ReplenishRequest(getPieces(body, "pieces")));
+                return toJson(result, status, "amount");
+            }
+        });
+        server.createContext("/collect", new Endpoint("POST") {
+            @Override
+            String handle(Map<String, Object> body, int[] status) {
+                return toJson(vendingService.collect(), status, "amount");
+            }
+        });
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts the HTTP endpoint of the vending machine on the loopback address,
+     * with the machine kept in the journal and snapshot files
+     *
+     * @param args the port to listen on (DEFAULT_PORT if not given)
+     * @throws IOException if the journal or the port cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        // read by the HTTP server the first time one is made, so it is set before
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        RegularVendingMachine vendingMachine = new RegularVendingMachine();
+        vendingMachine.openJournal(Paths.get(RegularVendingMachine.JOURNAL_FILE),
+                Paths.get(RegularVendingMachine.SNAPSHOT_FILE));
+        SpecialVendingMachine specialVendingMachine = new SpecialVendingMachine(vendingMachine);
+
+        VendingHttpServer server = new VendingHttpServer(specialVendingMachine.getVendingService(), port);
+        try {
+            new VendingMachineMBeans(specialVendingMachine.getVendingService()).register();
+        } catch (JMException e) {
+            System.out.println("ERROR: Could not register the management beans: " + e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            vendingMachine.closeJournal();
+        }));
+        server.start();
+        System.out.println("Vending machine listening on http://localhost:" + server.getPort() + "/");
+    }
+
+    /**
+     * Starts answering requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops answering requests, letting the requests being answered finish
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the port the endpoint listens on
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Makes the executor answering requests. A virtual thread is used for each
+     * request when the Java runtime has them; otherwise a fixed pool of threads
+     * is used, since a request only holds a lock for a short time and never waits
+     * on anything else.
+     *
+     * @return the executor
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "vending-http");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    /**
+     * Writes the stock of every slot as JSON
+     *
+     * @return the JSON text
+     */
+    private String getInventory() {
+        StringBuilder json = new StringBuilder(128 * vendingMachine.getSlotCount());
+        json.append("{\"slots\":[");
+        for (int i = 0; i < vendingMachine.getSlotCount(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"slot\":").append(i);
+            ItemSlot slot = vendingMachine.getSlot(i);
+            if (slot != null) {
+                Item item = slot.getItem();
+                json.append(",\"item\":");
+                Json.appendString(json, item.getName());
+                json.append(",\"price\":").append(Money.format(item.getPrice()));
+                json.append(",\"calories\":").append(item.getCalories());
+                json.append(",\"quantity\":").append(slot.getQuantity());
+            } else {
+                json.append(",\"item\":null,\"quantity\":0");
+            }
+            json.append(",\"capacity\":").append(vendingMachine.getSlotCapacity(i)).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Writes the pieces of each denomination in the machine as JSON
+     *
+     * @return the JSON text
+     */
+    private String getCoins() {
+        long[] denominations = vendingService.getDenominations();
+        int[] quantities = vendingMachine.getMoneyQuantities();
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"denominations\":[");
+        for (int i = 0; i < denominations.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"value\":").append(Money.format(denominations[i]));
+            json.append(",\"count\":").append(quantities[i]).append('}');
+        }
+        json.append("],\"balance\":").append(Money.format(vendingMachine.getBalance()));
+        json.append(",\"maxChange\":").append(Money.format(vendingMachine.getMaxPayableChange()));
+        return json.append('}').toString();
+    }
+
+    /**
+     * Writes the sales of the machine, in total, today and by item, as JSON
+     *
+     * @return the JSON text
+     */
+    private String getSales() {
+        SalesAnalytics analytics = vendingMachine.getSalesAnalytics();
+        long now = System.currentTimeMillis();
+        long today = analytics.getStartOfDay(now);
+        TransactionStore transactions = vendingMachine.getTransactionStore();
+        long[] soldQuantities = transactions.getSoldQuantities();
+        long[] revenues = transactions.getRevenues();
+
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"totalSales\":").append(Money.format(vendingMachine.getTotalSales()));
+        json.append(",\"transactions\":").append(transactions.size());
+        json.append(",\"todayRevenue\":").append(Money.format(analytics.getRevenue(today, now + 1)));
+        json.append(",\"items\":[");
+        int itemCount = Math.min(soldQuantities.length, vendingMachine.getCatalogItemCount());
+        boolean first = true;
+        for (int i = 0; i < itemCount; i++) {
+            if (soldQuantities[i] > 0) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                json.append("{\"itemId\":").append(i).append(",\"item\":");
+                Json.appendString(json, vendingMachine.getCatalogItem(i).getName());
+                json.append(",\"meal\":").append(vendingMachine.isMealItem(i));
+                json.append(",\"quantity\":").append(soldQuantities[i]);
+                json.append(",\"revenue\":").append(Money.format(revenues[i])).append('}');
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Writes the predefined meals as JSON
+     *
+     * @return the JSON text
+     */
+    private String getMeals() {
+        MealRecipeRegistry mealRecipes = vendingService.getMealRecipes();
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"meals\":[");
+        for (int i = 0; i < mealRecipes.getRecipeCount(); i++) {
+            MealRecipe recipe = mealRecipes.getRecipe(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"mealId\":").append(recipe.getId()).append(",\"name\":");
+            Json.appendString(json, recipe.getName());
+            json.append(",\"price\":").append(Money.format(recipe.getTotalPrice()));
+            json.append(",\"calories\":").append(recipe.getTotalCalories()).append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Writes the result of a request as JSON and sets the HTTP status of the
+     * answer: 200 if it was successful, 400 if the request was invalid and 409
+     * if the machine could not do it
+     *
+     * @param result     the result
+     * @param status     the HTTP status, set by this method
+     * @param amountName the name the amount of a successful maintenance request
+     *                   is written with: "amount" for money (in pesos) or
+     *                   "quantity" for the new quantity of a slot
+     * @return the JSON text
+     */
+    private String toJson(VendingResult result, int[] status, String amountName) {
+        switch (result.getStatus()) {
+            case SUCCESS:
+                status[0] = 200;
+                break;
+            case INVALID_SLOT:
+            case INVALID_QUANTITY:
+            case INVALID_ITEM:
+            case INVALID_MEAL:
+            case INVALID_PAYMENT:
+                status[0] = 400;
+                break;
+            default:
+                status[0] = 409;
+                break;
+        }
+
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"status\":\"").append(result.getStatus()).append("\",\"message\":");
+        Json.appendString(json, result.getMessage());
+        if (result.getItemName() != null) {
+            json.append(",\"item\":");
+            Json.appendString(json, result.getItemName());
+            json.append(",\"slots\":");
+            Json.appendArray(json, result.getSlotNumbers());
+            json.append(",\"quantities\":");
+            Json.appendArray(json, result.getQuantities());
+            json.append(",\"totalPrice\":").append(Money.format(result.getTotalPrice()));
+            json.append(",\"amountPaid\":").append(Money.format(result.getAmountPaid()));
+            json.append(",\"change\":").append(Money.format(result.getChange()));
+            json.append(",\"changePieces\":");
+            Json.appendArray(json, result.getChangePieces());
+        } else if (result.isSuccessful() && "amount".equals(amountName)) {
+            json.append(",\"amount\":").append(Money.format(result.getAmount()));
+        } else if (result.isSuccessful() && amountName != null) {
+            json.append(",\"").append(amountName).append("\":").append(result.getAmount());
+        }
+        if (result.getReturnedPieces().length > 0) {
+            json.append(",\"returnedPieces\":");
+            Json.appendArray(json, result.getReturnedPieces());
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Gets a whole number member of a request
+     *
+     * @param body         the request
+     * @param name         the name of the member
+     * @param defaultValue the value used if the member is missing
+     * @return the number
+     */
+    private static int getInt(Map<String, Object> body, String name, int defaultValue) {
+        Object value = body.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Long) || (Long) value != ((Long) value).intValue()) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a whole number");
+        }
+        return ((Long) value).intValue();
+    }
+
+    /**
+     * Gets a number member of a request
+     *
+     * @param body the request
+     * @param name the name of the member
+     * @return the number, or 0 if the member is missing
+     */
+    private static double getNumber(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value == null) {
+            return 0;
+        }
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a number");
+        }
+        return ((Number) value).doubleValue();
+    }
+
+    /**
+     * Gets a price in pesos from a request. The price is read exactly, so it
+     * must not have more than two decimals.
+     *
+     * @param body the request
+     * @param name the name of the member
+     * @return the price (in centavos), or 0 if the member is missing
+     */
+    private static long getAmount(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value == null) {
+            return 0;
+        }
+        if (!(value instanceof Long) && !(value instanceof BigDecimal)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be a number");
+        }
+        long amount;
+        try {
+            BigDecimal pesos = value instanceof Long ? BigDecimal.valueOf((Long) value) : (BigDecimal) value;
+            amount = pesos.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("\"" + name + "\" must be in pesos with at most two decimals");
+        }
+        if (amount < 0 || amount > MAX_PRICE) {
+            throw new IllegalArgumentException("\"" + name + "\" must be from 0 to " + Money.format(MAX_PRICE));
+        }
+        return amount;
+    }
+
+    /**
+     * Gets an array of whole numbers from a request
+     *
+     * @param body the request
+     * @param name the name of the member
+     * @return the numbers, or an empty array if the member is missing
+     */
+    private static int[] getInts(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if (value == null) {
+            return new int[0];
+        }
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("\"" + name + "\" must be an array");
+        }
+        List<?> list = (List<?>) value;
+        int[] numbers = new int[list.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            Object element = list.get(i);
+            if (!(element instanceof Long) || (Long) element != ((Long) element).intValue()) {
+                throw new IllegalArgumentException("\"" + name + "\" must only hold whole numbers");
+            }
+            numbers[i] = ((Long) element).intValue();
+        }
+        return numbers;
+    }
+
+    /**
+     * Gets money given piece by piece from a request, either as an array of
+     * counts in the order of the denominations or as an object from the peso
+     * value of a denomination to its count
+     *
+     * @param body the request
+     * @param name the name of the member
+     * @return the pieces of each denomination
+     * @throws IllegalArgumentException if a denomination is unknown or a count
+     *                                  is not from 0 to MAX_PIECES
+     */
+    private int[] getPieces(Map<String, Object> body, String name) {
+        int[] pieces = body.get(name) instanceof Map ? getPieceCounts(body, name) : getInts(body, name);
+        for (int count : pieces) {
+            if (count < 0 || count > MAX_PIECES) {
+                throw new IllegalArgumentException("\"" + name + "\" counts must be from 0 to " + MAX_PIECES);
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * Gets money given as an object from the peso value of a denomination to
+     * its count
+     *
+     * @param body the request
+     * @param name the name of the member
+     * @return the pieces of each denomination
+     */
+    private int[] getPieceCounts(Map<String, Object> body, String name) {
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> counts = (Map<String, Object>) body.get(name);
+        long[] denominations = vendingService.getDenominations();
+        int[] pieces = new int[denominations.length];
+        for (String denomination : counts.keySet()) {
+            long value;
+            try {
+                value = Money.parse(denomination);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid denomination: " + denomination);
+            }
+            int index = -1;
+            for (int i = 0; i < denominations.length; i++) {
+                if (denominations[i] == value) {
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("Invalid denomination: " + denomination);
+            }
+            pieces[index] = getInt(counts, denomination, 0);
+        }
+        return pieces;
+    }
+
+    /**
+     * This class represents an endpoint accepting one HTTP method. It reads the
+     * JSON body of the request, lets the subclass answer it and writes the JSON
+     * answer.
+     */
+    private abstract static class Endpoint implements HttpHandler {
+        private String method;
+
+        /**
+         * This is the constructor of an endpoint
+         *
+         * @param method the HTTP method accepted
+         */
+        Endpoint(String method) {
+            this.method = method;
+        }
+
+        /**
+         * Answers a request
+         *
+         * @param body   the JSON object sent with the request (empty if none)
+         * @param status the HTTP status of the answer, 200 unless changed
+         * @return the JSON answer
+         */
+        abstract String handle(Map<String, Object> body, int[] status);
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int[] status = { 200 };
+            String answer;
+            try {
+                if (!exchange.getRequestMethod().equalsIgnoreCase(method)) {
+                    status[0] = 405;
+                    exchange.getResponseHeaders().set("Allow", method);
+                    answer = error("Use " + method + " for " + exchange.getRequestURI().getPath());
+                } else if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                    status[0] = 404;
+                    answer = error("Not found");
+                } else {
+                    answer = handle(readBody(exchange), status);
+                }
+            } catch (IllegalArgumentException e) {
+                status[0] = 400;
+                answer = error(e.getMessage());
+            } catch (RuntimeException e) {
+                status[0] = 500;
+                answer = error("Internal error: " + e);
+            }
+
+            byte[] bytes = answer.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status[0], bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        /**
+         * Reads the JSON object sent with a request
+         *
+         * @param exchange the request
+         * @return the members of the object (empty if nothing was sent)
+         * @throws IOException if the request cannot be read
+         */
+        @SuppressWarnings("unchecked")
+        private static Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (InputStream in = exchange.getRequestBody()) {
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    if (bytes.size() + read > MAX_BODY_SIZE) {
+                        throw new IllegalArgumentException("Request too large");
+                    }
+                    bytes.write(buffer, 0, read);
+                }
+            }
+
+            String text = bytes.toString(StandardCharsets.UTF_8).trim();
+            if (text.isEmpty()) {
+                return Map.of();
+            }
+            Object body = Json.parse(text);
+            if (!(body instanceof Map)) {
+                throw new IllegalArgumentException("The request must be a JSON object");
+            }
+            return (Map<String, Object>) body;
+        }
+
+        /**
+         * Writes an error as JSON
+         *
+         * @param message the message of the error
+         * @return the JSON text
+         */
+        private static String error(String message) {
+            return Json.appendString(new StringBuilder("{\"status\":\"ERROR\",\"message\":"), String.valueOf(message))
+                    .append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class represents the MBeans of a vending machine registered with the
+ * platform MBean server: one for the machine under vending:type=Machine and
+ * one for each slot under vending:type=Slot,slot=N.
+ * Reading an attribute never takes the locks of the machine, so watching the
+ * machine does not slow down its purchases: slots are read as they are, coin
+ * counts are copied without the money lock, and purchase counts come from the
+ * machine's metrics. Coin counts only ever count pieces that are in the
+ * machine, but a copy made during a purchase can have the payment's pieces in
+ * and its change not yet out (see peekMoneyQuantities), so the coin total can
+ * be briefly apart from the balance. The restock and replenish operations go
+ * through the vending service, so they follow the same locking as the console
+ * and the GUI.
+ */
+public class VendingMachineMBeans {
+    public static final String DOMAIN = "vending";
+
+    private VendingService vendingService;
+    private RegularVendingMachine vendingMachine;
+    private MBeanServer server;
+    private List<ObjectName> names;
+
+    /**
+     * This is the constructor of the MBeans of a vending service. The MBeans are
+     * only visible once registered.
+     *
+     * @param vendingService the vending service
+     */
+    public VendingMachineMBeans(VendingService vendingService) {
+        this.vendingService = vendingService;
+        this.vendingMachine = vendingService.getVendingMachine();
+        this.server = ManagementFactory.getPlatformMBeanServer();
+        this.names = new ArrayList<>();
+    }
+
+    /**
+     * Registers the MBeans of the machine and of its slots
+     *
+     * @throws JMException if an MBean cannot be registered, e.g. because a
+     *                     machine is already registered in this JVM
+     */
+    public synchronized void register() throws JMException {
+        try {
+            add(new MachineBean(), new ObjectName(DOMAIN + ":type=Machine"));
+            for (int i = 0; i < vendingMachine.getSlotCount(); i++) {
+                add(new SlotBean(i), new ObjectName(DOMAIN + ":type=Slot,slot=" + i));
+            }
+        } catch (JMException e) {
+            unregister();
+            throw e;
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by register
+     */
+    public synchronized void unregister() {
+        for (ObjectName name : names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                System.out.println("ERROR: Could not unregister " + name + ": " + e.getMessage());
+            }
+        }
+        names.clear();
+    }
+
+    /**
+     * Registers one MBean
+     *
+     * @param bean the MBean
+     * @param name the name of the MBean
+     * @throws JMException if the MBean cannot be registered
+     */
+    private void add(Object bean, ObjectName name) throws JMException {
+        server.registerMBean(bean, name);
+        names.add(name);
+    }
+
+    /**
+     * This class represents the MBean of the machine
+     */
+    private class MachineBean implements VendingMachineMXBean {
+        @Override
+        public int getSlotCount() {
+            return vendingMachine.getSlotCount();
+        }
+
+        @Override
+        public long[] getDenominations() {
+            return vendingMachine.getDenominations();
+        }
+
+        @Override
+        public int[] getCoinCounts() {
+            return vendingMachine.peekMoneyQuantities();
+        }
+
+        @Override
+        public long getCoinTotal() {
+            return vendingMachine.getPaymentAmount(vendingMachine.peekMoneyQuantities());
+        }
+
+        @Override
+        public long getEscrowedAmount() {
+            return vendingMachine.getEscrowedAmount();
+        }
+
+        @Override
+        public long getTotalSales() {
+            return vendingMachine.getTotalSales();
+        }
+
+        @Override
+        public long getSalesCount() {
+            return vendingMachine.getMetrics().getCount(MachineMetrics.SALES);
+        }
+
+        @Override
+        public long getStockoutCount() {
+            return vendingMachine.getMetrics().getCount(MachineMetrics.STOCKOUTS);
+        }
+
+        @Override
+        public long getChangeFailureCount() {
+            return vendingMachine.getMetrics().getCount(MachineMetrics.CHANGE_FAILURES);
+        }
+
+        @Override
+        public long getInsufficientPaymentCount() {
+            return vendingMachine.getMetrics().getCount(MachineMetrics.INSUFFICIENT_PAYMENTS);
+        }
+
+        @Override
+        public long getPurchaseCount() {
+            MachineMetrics metrics = vendingMachine.getMetrics();
+            long purchases = 0;
+            for (int i = 0; i < MachineMetrics.getCounterCount(); i++) {
+                purchases += metrics.getCount(i);
+            }
+            return purchases;
+        }
+
+        @Override
+        public double getChangeFailureRate() {
+            long purchases = getPurchaseCount();
+            return purchases == 0 ? 0 : (double) getChangeFailureCount() / purchases;
+        }
+
+        @Override
+        public boolean isJournalFailed() {
+            return vendingMachine.isJournalFailed();
+        }
+
+        @Override
+        public String getLatencies() {
+            return vendingMachine.getMetrics().latenciesToText();
+        }
+
+        @Override
+        public String restock(int slotNumber, int quantity) {
+            VendingResult result = vendingService.restock(new RestockRequest(slotNumber, null, quantity));
+            return result.getMessage();
+        }
+
+        @Override
+        public String replenish(int pesos, int quantity) {
+            long[] denominations = vendingMachine.getDenominations();
+            int[] pieces = new int[denominations.length];
+            for (int i = 0; i < denominations.length; i++) {
+                if (denominations[i] == Money.pesos(pesos)) {
+                    pieces[i] = quantity;
+                    return vendingService.replenish(new ReplenishRequest(pieces)).getMessage();
+                }
+            }
+            return "Invalid denomination: PHP " + pesos;
+        }
+    }
+
+    /**
+     * This class represents the MBean of a slot
+     */
+    private class SlotBean implements SlotMXBean {
+        private int slotNumber;
+
+        /**
+         * This is the constructor of the MBean of a slot
+         *
+         * @param slotNumber the slot number
+         */
+        SlotBean(int slotNumber) {
+            this.slotNumber = slotNumber;
+        }
+
+        @Override
+        public int getSlotNumber() {
+            return slotNumber;
+        }
+
+        @Override
+        public String getItemName() {
+            ItemSlot slot = vendingMachine.getSlot(slotNumber);
+            return slot == null ? "" : slot.getItem().getName();
+        }
+
+        @Override
+        public int getQuantity() {
+            ItemSlot slot = vendingMachine.getSlot(slotNumber);
+            return slot == null ? 0 : slot.getQuantity();
+        }
+
+        @Override
+        public int getCapacity() {
+            ItemSlot slot = vendingMachine.getSlot(slotNumber);
+            return slot == null ? 0 : slot.getCapacity();
+        }
+
+        @Override
+        public long getPrice() {
+            ItemSlot slot = vendingMachine.getSlot(slotNumber);
+            return slot == null ? 0 : slot.getItem().getPrice();
+        }
+    }
+}
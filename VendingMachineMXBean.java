@@ -0,0 +1,129 @@
+/**
+ * This interface represents the management view of a vending machine, so it
+ * can be watched with standard JVM tools (e.g. JConsole). Amounts of money are
+ * in centavos, and money given piece by piece is in the order of
+ * getDenominations. The counts of purchases are since the machine was started.
+ */
+public interface VendingMachineMXBean {
+    /**
+     * Gets the number of slots of the machine
+     *
+     * @return the number of slots
+     */
+    int getSlotCount();
+
+    /**
+     * Gets the valid denominations
+     *
+     * @return the denominations (in centavos)
+     */
+    long[] getDenominations();
+
+    /**
+     * Gets the number of pieces of each denomination in the machine
+     *
+     * @return the pieces of each denomination
+     */
+    int[] getCoinCounts();
+
+    /**
+     * Gets the value of the money in the machine
+     *
+     * @return the value of the pieces (in centavos)
+     */
+    long getCoinTotal();
+
+    /**
+     * Gets the money held in escrow for purchases not made yet
+     *
+     * @return the escrowed money (in centavos)
+     */
+    long getEscrowedAmount();
+
+    /**
+     * Gets the sales not collected yet
+     *
+     * @return the total sales (in centavos)
+     */
+    long getTotalSales();
+
+    /**
+     * Gets the number of purchases made
+     *
+     * @return the number of sales
+     */
+    long getSalesCount();
+
+    /**
+     * Gets the number of purchases of an empty or sold out slot
+     *
+     * @return the number of stockouts
+     */
+    long getStockoutCount();
+
+    /**
+     * Gets the number of purchases rejected because the change could not be
+     * given
+     *
+     * @return the number of change failures
+     */
+    long getChangeFailureCount();
+
+    /**
+     * Gets the number of purchases rejected because the payment was not enough
+     *
+     * @return the number of insufficient payments
+     */
+    long getInsufficientPaymentCount();
+
+    /**
+     * Gets the number of purchases tried, made or not
+     *
+     * @return the number of purchases tried
+     */
+    long getPurchaseCount();
+
+    /**
+     * Gets the share of purchases tried that were rejected because the change
+     * could not be given
+     *
+     * @return the change failure rate, from 0 to 1
+     */
+    double getChangeFailureRate();
+
+    /**
+     * Checks if the transaction journal failed, so purchases are no longer
+     * written to it
+     *
+     * @return true if the journal failed
+     */
+    boolean isJournalFailed();
+
+    /**
+     * Gets the latency of each operation of the machine as text, one metric per
+     * line, in nanoseconds. Operations are only timed once their latencies are
+     * first asked for, here or in the metrics of the console or the maintenance
+     * window, so the first reading says that recording has just started.
+     *
+     * @return the latencies
+     */
+    String getLatencies();
+
+    /**
+     * Restocks an occupied slot with more of the item it holds
+     *
+     * @param slotNumber the slot number
+     * @param quantity   the quantity to add
+     * @return the result of the restock
+     */
+    String restock(int slotNumber, int quantity);
+
+    /**
+     * Puts pieces of a denomination in the machine for change
+     *
+     * @param pesos    the value of the denomination (in pesos)
+     * @param quantity the number of pieces
+     * @return the result of the replenishment
+     */
+    String replenish(int pesos, int quantity);
+}
@@ -0,0 +1,217 @@
+/**
+ * This class represents the result of a request to the vending machine. It
+ * tells whether the request was successful, and if not why, and carries what
+ * was dispensed, the change given back piece by piece and the money returned
+ * when a purchase fails.
+ * Money pieces are counted per denomination, in the order of Money's
+ * denominations.
+ */
+public class VendingResult {
+    /**
+     * This is the list of the results of a request
+     */
+    public enum Status {
+        SUCCESS,
+        INVALID_SLOT,
+        EMPTY_SLOT,
+        INVALID_QUANTITY,
+        OUT_OF_STOCK,
+        SLOT_FULL,
+        INVALID_ITEM,
+        INVALID_MEAL,
+        INVALID_PAYMENT,
+        INSUFFICIENT_PAYMENT,
+        NO_CHANGE
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private Status status;
+    private String message;
+    private String itemName;
+    private int[] slotNumbers;
+    private int[] quantities;
+    private long totalPrice;
+    private long amountPaid;
+    private long change;
+    private int[] changePieces;
+    private int[] returnedPieces;
+    private long amount;
+
+    /**
+     * This is the constructor of a result. Results are made with the static
+     * methods of this class.
+     */
+    private VendingResult(Status status, String message) {
+        this.status = status;
+        this.message = message;
+        this.itemName = null;
+        this.slotNumbers = NONE;
+        this.quantities = NONE;
+        this.changePieces = NONE;
+        this.returnedPieces = NONE;
+    }
+
+    /**
+     * Makes the result of a successful purchase
+     *
+     * @param itemName     the name of the item or meal dispensed
+     * @param slotNumbers  the slots items were dispensed from
+     * @param quantities   the quantity dispensed from each slot
+     * @param totalPrice   the total price of the purchase (in centavos)
+     * @param amountPaid   the amount paid (in centavos)
+     * @param changePieces the pieces of each denomination given as change
+     * @return the result
+     */
+    public static VendingResult sale(String itemName, int[] slotNumbers, int[] quantities, long totalPrice,
+            long amountPaid, int[] changePieces) {
+        VendingResult result = new VendingResult(Status.SUCCESS, "Purchase successful!");
+        result.itemName = itemName;
+        result.slotNumbers = slotNumbers;
+        result.quantities = quantities;
+        result.totalPrice = totalPrice;
+        result.amountPaid = amountPaid;
+        result.change = amountPaid - totalPrice;
+        result.changePieces = changePieces;
+        return result;
+    }
+
+    /**
+     * Makes the result of a successful maintenance request
+     *
+     * @param message the message of the result
+     * @param amount  the amount of money involved (in centavos), or the new
+     *                quantity of a slot
+     * @return the result
+     */
+    public static VendingResult done(String message, long amount) {
+        VendingResult result = new VendingResult(Status.SUCCESS, message);
+        result.amount = amount;
+        return result;
+    }
+
+    /**
+     * Makes the result of a failed request
+     *
+     * @param status         why the request failed
+     * @param message        the message of the result
+     * @param returnedPieces the pieces of each denomination given back to the
+     *                       user, or null if no money was inserted
+     * @return the result
+     */
+    public static VendingResult failure(Status status, String message, int[] returnedPieces) {
+        VendingResult result = new VendingResult(status, message);
+        result.returnedPieces = returnedPieces == null ? NONE : returnedPieces;
+        return result;
+    }
+
+    /**
+     * Checks if the request was successful
+     *
+     * @return true if the request was successful, false if not
+     */
+    public boolean isSuccessful() {
+        return status == Status.SUCCESS;
+    }
+
+    /**
+     * Gets the status of the result
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Gets the message of the result, which can be shown to the user
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the name of the item or meal dispensed
+     *
+     * @return the name, or null if nothing was dispensed
+     */
+    public String getItemName() {
+        return itemName;
+    }
+
+    /**
+     * Gets the slots items were dispensed from
+     *
+     * @return the slot numbers (empty if nothing was dispensed)
+     */
+    public int[] getSlotNumbers() {
+        return slotNumbers;
+    }
+
+    /**
+     * Gets the quantity dispensed from each slot
+     *
+     * @return the quantities, in the order of getSlotNumbers
+     */
+    public int[] getQuantities() {
+        return quantities;
+    }
+
+    /**
+     * Gets the total price of the purchase
+     *
+     * @return the total price (in centavos)
+     */
+    public long getTotalPrice() {
+        return totalPrice;
+    }
+
+    /**
+     * Gets the amount paid
+     *
+     * @return the amount paid (in centavos)
+     */
+    public long getAmountPaid() {
+        return amountPaid;
+    }
+
+    /**
+     * Gets the change given back
+     *
+     * @return the change (in centavos)
+     */
+    public long getChange() {
+        return change;
+    }
+
+    /**
+     * Gets the pieces of each denomination given back as change
+     *
+     * @return the pieces of change (empty if nothing was sold)
+     */
+    public int[] getChangePieces() {
+        return changePieces;
+    }
+
+    /**
+     * Gets the pieces of each denomination given back because the purchase
+     * failed
+     *
+     * @return the pieces returned (empty if no money was inserted)
+     */
+    public int[] getReturnedPieces() {
+        return returnedPieces;
+    }
+
+    /**
+     * Gets the amount of money of a maintenance request, or the new quantity of
+     * a restocked slot
+     *
+     * @return the amount
+     */
+    public long getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,242 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class represents the service layer of the vending machine. Every
+ * request (buying an item, buying a meal, restocking, replenishing and
+ * collecting money) is given as a request object and answered with a
+ * VendingResult, without printing or asking anything, so the console, the GUI
+ * or any other program can drive the machine the same way.
+ * Purchases can also be made asynchronously on an executor.
+ */
+public class VendingService {
+    private RegularVendingMachine vendingMachine;
+    private MealRecipeRegistry mealRecipes;
+    private Executor executor;
+
+    /**
+     * This is the constructor of a vending service running asynchronous
+     * purchases on the common fork-join pool
+     *
+     * @param vendingMachine the regular vending machine
+     * @param mealRecipes    the predefined meals that can be bought
+     */
+    public VendingService(RegularVendingMachine vendingMachine, MealRecipeRegistry mealRecipes) {
+        this(vendingMachine, mealRecipes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * This is the constructor of a vending service
+     *
+     * @param vendingMachine the regular vending machine
+     * @param mealRecipes    the predefined meals that can be bought
+     * @param executor       the executor running asynchronous purchases
+     */
+    public VendingService(RegularVendingMachine vendingMachine, MealRecipeRegistry mealRecipes, Executor executor) {
+        this.vendingMachine = vendingMachine;
+        this.mealRecipes = mealRecipes;
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the vending machine of the service
+     *
+     * @return the regular vending machine
+     */
+    public RegularVendingMachine getVendingMachine() {
+        return vendingMachine;
+    }
+
+    /**
+     * Gets the predefined meals of the service
+     *
+     * @return the meal recipes
+     */
+    public MealRecipeRegistry getMealRecipes() {
+        return mealRecipes;
+    }
+
+    /**
+     * Gets the valid denominations, in the order used by the money of requests
+     * and results
+     *
+     * @return the denominations (in centavos)
+     */
+    public long[] getDenominations() {
+        return vendingMachine.getDenominations();
+    }
+
+    /**
+     * Buys an item from a slot
+     *
+     * @param request the purchase request
+     * @return the result of the purchase, with the change given or the money
+     *         returned
+     */
+    public VendingResult buyItem(PurchaseRequest request) {
+        if (request.getEscrow() != null) {
+            return vendingMachine.sellItem(request.getSlotNumber(), request.getQuantity(), request.getEscrow());
+        }
+        return vendingMachine.sellItem(request.getSlotNumber(), request.getQuantity(), request.getPayment());
+    }
+
+    /**
+     * Buys a predefined or custom meal
+     *
+     * @param request the meal request
+     * @return the result of the purchase, with the change given or the money
+     *         returned
+     */
+    public VendingResult buyMeal(MealRequest request) {
+        MealRecipe recipe;
+        if (request.getRecipe() != null) {
+            recipe = request.getRecipe();
+        } else if (request.isCustom()) {
+            if (request.getPieces().length == 0) {
+                return VendingResult.failure(VendingResult.Status.INVALID_MEAL,
+                        "No ingredients selected. Purchase unsuccessful.", giveBack(request));
+            }
+            try {
+                recipe = new MealRecipe(-1, "Custom Meal", vendingMachine, request.getPieces());
+            } catch (IllegalArgumentException e) {
+                return VendingResult.failure(VendingResult.Status.INVALID_SLOT, e.getMessage(), giveBack(request));
+            }
+        } else if (request.getMealName() != null) {
+            recipe = mealRecipes.getRecipe(request.getMealName());
+        } else {
+            recipe = mealRecipes.getRecipe(request.getMealId());
+        }
+
+        if (recipe == null) {
+            return VendingResult.failure(VendingResult.Status.INVALID_MEAL, "Invalid meal.", giveBack(request));
+        }
+        if (request.getEscrow() != null) {
+            return vendingMachine.sellMeal(recipe, request.getEscrow());
+        }
+        return vendingMachine.sellMeal(recipe, request.getPayment());
+    }
+
+    /**
+     * Gives back the money of a meal request that cannot be made, cancelling
+     * its escrow if it has one
+     *
+     * @param request the meal request
+     * @return the pieces of each denomination given back
+     */
+    private int[] giveBack(MealRequest request) {
+        if (request.getEscrow() != null) {
+            return vendingMachine.cancelEscrow(request.getEscrow());
+        }
+        return request.getPayment();
+    }
+
+    /**
+     * Buys an item from a slot on the executor of the service
+     *
+     * @param request the purchase request
+     * @return the result of the purchase, once it is done
+     */
+    public CompletableFuture<VendingResult> buyItemAsync(PurchaseRequest request) {
+        return CompletableFuture.supplyAsync(() -> buyItem(request), executor);
+    }
+
+    /**
+     * Buys a meal on the executor of the service
+     *
+     * @param request the meal request
+     * @return the result of the purchase, once it is done
+     */
+    public CompletableFuture<VendingResult> buyMealAsync(MealRequest request) {
+        return CompletableFuture.supplyAsync(() -> buyMeal(request), executor);
+    }
+
+    /**
+     * Restocks a slot. An empty slot needs the item to put in it; an occupied
+     * slot can only be restocked with the item it already has. Nothing is added
+     * if the quantity does not fit in the slot.
+     *
+     * @param request the restock request
+     * @return the result of the restock, whose amount is the new quantity of the
+     *         slot
+     */
+    public VendingResult restock(RestockRequest request) {
+        return vendingMachine.restock(request);
+    }
+
+    /**
+     * Changes the price of the item of a slot. Every slot holding the same item
+     * gets the new price.
+     *
+     * @param slotNumber the slot number of the item
+     * @param price      the new price (in centavos)
+     * @return the result of the change, whose amount is the new price (in
+     *         centavos)
+     */
+    public VendingResult changePrice(int slotNumber, long price) {
+        return vendingMachine.changePrice(slotNumber, price);
+    }
+
+    /**
+     * Adds money to the machine so it can give change
+     *
+     * @param request the replenish request
+     * @return the result of the replenish, whose amount is the value added (in
+     *         centavos)
+     */
+    public VendingResult replenish(ReplenishRequest request) {
+        int[] pieces = request.getPieces();
+        long[] denominations = vendingMachine.getDenominations();
+        if (pieces == null || pieces.length != denominations.length) {
+            return VendingResult.failure(VendingResult.Status.INVALID_PAYMENT, "Invalid money.", null);
+        }
+        for (int count : pieces) {
+            if (count < 0) {
+                return VendingResult.failure(VendingResult.Status.INVALID_PAYMENT, "Invalid money.", null);
+            }
+        }
+
+        if (!vendingMachine.replenishMoney(pieces)) {
+            return VendingResult.failure(VendingResult.Status.INVALID_PAYMENT,
+                    "The machine cannot hold that many pieces. Nothing was added.", null);
+        }
+        return VendingResult.done("Money replenished successfully!", vendingMachine.getPaymentAmount(pieces));
+    }
+
+    /**
+     * Collects the sales of the machine
+     *
+     * @return the result of the collection, whose amount is the money collected
+     *         (in centavos)
+     */
+    public VendingResult collect() {
+        long collected = vendingMachine.collectMoney();
+        long left = vendingMachine.getTotalSales();
+        if (left > 0) {
+            return VendingResult.done("Money collected. PHP " + Money.format(left)
+                    + " of the sales cannot be taken in exact pieces and is left for the next collection.", collected);
+        }
+        return VendingResult.done("Money collected successfully!", collected);
+    }
+
+    /**
+     * Describes money piece by piece, largest denomination first (e.g. "1 x
+     * PHP 20.00, 2 x PHP 5.00")
+     *
+     * @param pieces the pieces of each denomination
+     * @return the description, or "none" if there is no money
+     */
+    public String describePieces(int[] pieces) {
+        long[] denominations = vendingMachine.getDenominations();
+        StringBuilder description = new StringBuilder();
+        for (int i = Math.min(pieces.length, denominations.length) - 1; i >= 0; i--) {
+            if (pieces[i] > 0) {
+                if (description.length() > 0) {
+                    description.append(", ");
+                }
+                description.append(pieces[i]).append(" x PHP ").append(Money.format(denominations[i]));
+            }
+        }
+        return description.length() == 0 ? "none" : description.toString();
+    }
+}
@@ -0,0 +1,161 @@
+import benchmark.Workload;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * This class represents the workload of the benchmarks of the vending machine
+ * (see benchmark.VendingBenchmark): a machine stocked so that no sale runs out
+ * of items or change while it is measured, and the operations run on it.
+ * Printing done by the machine is thrown away until the workload is closed,
+ * so only the work of making the output is measured.
+ */
+public class VendingWorkload implements Workload {
+    private static final int STOCK = 1 << 30;
+    private static final int COINS = 100_000_000;
+
+    private PrintStream out;
+    private RegularVendingMachine vendingMachine;
+    private SpecialVendingMachine specialVendingMachine;
+    private int[][] itemPayments;
+    private int[] checkPayment;
+    private ItemSlot[] customMealItems;
+    private int[] customMealPayment;
+    private int[][] mealPayments;
+    private String[] mealNames;
+    private long operation;
+
+    /**
+     * This is the constructor of the workload. The slots are laid out in a
+     * square grid, so there may be a few more than asked for. Every slot holds
+     * a different item and is stocked far beyond what a benchmark can sell, the
+     * machine has plenty of coins for change, and the given number of sales is
+     * already in its history.
+     *
+     * @param slotCount   the number of slots, at least 9
+     * @param historySize the number of transactions in the history
+     */
+    public VendingWorkload(int slotCount, int historySize) {
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        int columns = (int) Math.ceil(Math.sqrt(slotCount));
+        int rows = (slotCount + columns - 1) / columns;
+        vendingMachine = new RegularVendingMachine(rows, columns, STOCK);
+        for (int i = 0; i < vendingMachine.getSlotCount(); i++) {
+            long price = Money.pesos(5 + i % 40);
+            vendingMachine.restock(new Item("Item " + i, price, 50 + i % 300), STOCK, i);
+        }
+        refillCoins();
+
+        for (int i = 0; i < historySize; i++) {
+            int slotNumber = i % vendingMachine.getSlotCount();
+            long price = vendingMachine.getSlot(slotNumber).getItem().getPrice();
+            vendingMachine.sellItem(slotNumber, 1, payWithBills(price));
+        }
+
+        itemPayments = new int[vendingMachine.getSlotCount()][];
+        for (int i = 0; i < itemPayments.length; i++) {
+            itemPayments[i] = payWithBills(vendingMachine.getSlot(i).getItem().getPrice());
+        }
+        checkPayment = new int[vendingMachine.getDenominations().length];
+        checkPayment[3] = 1;
+        checkPayment[5] = 1;
+
+        specialVendingMachine = new SpecialVendingMachine(vendingMachine);
+        int lastSlot = vendingMachine.getSlotCount() - 1;
+        customMealItems = new ItemSlot[] { vendingMachine.getSlot(0), vendingMachine.getSlot(lastSlot / 2),
+                vendingMachine.getSlot(lastSlot) };
+        customMealPayment = payWithBills(specialVendingMachine.calculateTotalPrice(customMealItems));
+        mealPayments = new int[specialVendingMachine.getPredefinedMealCount()][];
+        mealNames = new String[mealPayments.length];
+        for (int i = 0; i < mealPayments.length; i++) {
+            MealRecipe recipe = specialVendingMachine.getPredefinedMeal(i);
+            mealPayments[i] = payWithBills(recipe.getTotalPrice());
+            mealNames[i] = recipe.getName();
+        }
+    }
+
+    @Override
+    public void refillCoins() {
+        long[] denominations = vendingMachine.getDenominations();
+        int[] quantities = vendingMachine.getMoneyQuantities();
+        for (int i = 0; i < 4; i++) {
+            if (quantities[i] < COINS) {
+                vendingMachine.replenishMoney(denominations[i], COINS - quantities[i]);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        System.setOut(out);
+    }
+
+    @Override
+    public long sellItem() {
+        int slotNumber = (int) (operation++ % itemPayments.length);
+        return vendingMachine.sellItem(slotNumber, 1, itemPayments[slotNumber]).getChange();
+    }
+
+    @Override
+    public boolean isChangePossible() {
+        long price = Money.pesos(13);
+        return vendingMachine.isChangePossible(price + Money.pesos(operation++ % 1000), price);
+    }
+
+    @Override
+    public boolean isChangePossiblePayment() {
+        return vendingMachine.isChangePossible(checkPayment, Money.pesos(operation++ % 120));
+    }
+
+    @Override
+    public void calculateChange() {
+        vendingMachine.calculateChange(Money.pesos(37));
+    }
+
+    @Override
+    public void handlePaymentCustomMeal() {
+        specialVendingMachine.handlePaymentCustomMeal(customMealItems, customMealPayment);
+    }
+
+    @Override
+    public boolean handlePaymentMeal() {
+        int id = (int) (operation++ % mealPayments.length);
+        return specialVendingMachine.handlePaymentMeal(specialVendingMachine.getPredefinedMeal(id), mealPayments[id]);
+    }
+
+    @Override
+    public long predefinedMealItems() {
+        MealRecipe recipe = specialVendingMachine.getPredefinedMeal(mealNames[(int) (operation++ % mealNames.length)]);
+        long price = 0;
+        for (int i = 0; i < recipe.getSlotCount(); i++) {
+            price += vendingMachine.getSlot(recipe.getSlotNumber(i)).getItem().getPrice() * recipe.getQuantity(i);
+        }
+        return price;
+    }
+
+    @Override
+    public void transactionSummary() {
+        vendingMachine.displayTransactionSummary();
+    }
+
+    @Override
+    public long salesReport() {
+        SalesAnalytics analytics = new SalesAnalytics(vendingMachine);
+        long now = System.currentTimeMillis();
+        return analytics.getRevenue(analytics.getStartOfDay(now), now + 1) + analytics.getTopSellers(5).length;
+    }
+
+    /**
+     * Makes a payment of 20-peso bills covering a price, so the purchase needs
+     * change in smaller pieces
+     *
+     * @param price the price (in centavos)
+     * @return the pieces of each denomination
+     */
+    private int[] payWithBills(long price) {
+        int[] payment = new int[vendingMachine.getDenominations().length];
+        payment[3] = (int) ((price + Money.pesos(20) - 1) / Money.pesos(20));
+        return payment;
+    }
+}
@@ -0,0 +1,149 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * This class represents the JMH benchmarks of the hot paths of the vending
+ * machine: selling an item, checking and paying out change, buying custom and
+ * predefined meals, and making the transaction summary and sales report.
+ * Every benchmark is run for each number of slots and each size of the
+ * transaction history, on a machine stocked so that no sale runs out of items
+ * or change while it is measured (see VendingWorkload). The predefined meals
+ * need at least 9 slots.
+ *
+ * Run with: gradle jmh (or gradle jmh -PjmhInclude=sellItem for one benchmark)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VendingBenchmark {
+    @Param({ "9", "100", "1000" })
+    private int slotCount;
+
+    @Param({ "0", "10000", "100000" })
+    private int historySize;
+
+    private Workload workload;
+
+    /**
+     * Creates the machine of the benchmarks. The workload is in the default
+     * package, so it is created by name.
+     *
+     * @throws ReflectiveOperationException if the workload cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        workload = (Workload) Class.forName("VendingWorkload").getConstructor(int.class, int.class)
+                .newInstance(slotCount, historySize);
+    }
+
+    /**
+     * Puts back the coins paid out as change during the last iteration
+     */
+    @Setup(Level.Iteration)
+    public void refillCoins() {
+        workload.refillCoins();
+    }
+
+    /**
+     * Lets the machine print again
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.close();
+    }
+
+    /**
+     * Benchmarks selling an item
+     *
+     * @return the result of the operation
+     */
+    @Benchmark
+    public long sellItem() {
+        return workload.sellItem();
+    }
+
+    /**
+     * Benchmarks checking the change of an amount paid
+     *
+     * @return the result of the operation
+     */
+    @Benchmark
+    public boolean isChangePossible() {
+        return workload.isChangePossible();
+    }
+
+    /**
+     * Benchmarks checking the change of a payment being inserted
+     *
+     * @return the result of the operation
+     */
+    @Benchmark
+    public boolean isChangePossiblePayment() {
+        return workload.isChangePossiblePayment();
+    }
+
+    /**
+     * Benchmarks paying out change
+     */
+    @Benchmark
+    public void calculateChange() {
+        workload.calculateChange();
+    }
+
+    /**
+     * Benchmarks buying a custom meal
+     */
+    @Benchmark
+    public void handlePaymentCustomMeal() {
+        workload.handlePaymentCustomMeal();
+    }
+
+    /**
+     * Benchmarks buying the predefined meals
+     *
+     * @return the result of the operation
+     */
+    @Benchmark
+    public boolean handlePaymentMeal() {
+        return workload.handlePaymentMeal();
+    }
+
+    /**
+     * Benchmarks reading the items of a predefined meal
+     *
+     * @return the result of the operation
+     */
+    @Benchmark
+    public long predefinedMealItems() {
+        return workload.predefinedMealItems();
+    }
+
+    /**
+     * Benchmarks making the transaction summary
+     */
+    @Benchmark
+    public void transactionSummary() {
+        workload.transactionSummary();
+    }
+
+    /**
+     * Benchmarks making the sales report
+     *
+     * @return the result of the operation
+     */
+    @Benchmark
+    public long salesReport() {
+        return workload.salesReport();
+    }
+}
@@ -0,0 +1,82 @@
+package benchmark;
+
+/**
+ * This interface represents the operations of the vending machine that are
+ * benchmarked. JMH only runs benchmarks in a named package, while the machine
+ * is in the default package, which a named package cannot refer to; so the
+ * benchmarks call the machine through this interface, implemented by
+ * VendingWorkload in the default package.
+ */
+public interface Workload {
+    /**
+     * Puts back the coins paid out as change, so change never runs out
+     * however long the benchmarks run
+     */
+    void refillCoins();
+
+    /**
+     * Lets the machine print again
+     */
+    void close();
+
+    /**
+     * Sells an item with change, each time from the next slot
+     *
+     * @return the change
+     */
+    long sellItem();
+
+    /**
+     * Checks if the change of an amount paid can be given, for changes of 0 to
+     * 999 pesos
+     *
+     * @return true if the change can be given
+     */
+    boolean isChangePossible();
+
+    /**
+     * Checks a payment being inserted, counting its pieces with the money of
+     * the machine
+     *
+     * @return true if the change can be given
+     */
+    boolean isChangePossiblePayment();
+
+    /**
+     * Pays out change and shows its breakdown
+     */
+    void calculateChange();
+
+    /**
+     * Buys a custom meal of three items and shows its preparation steps
+     */
+    void handlePaymentCustomMeal();
+
+    /**
+     * Buys each predefined meal in turn and shows its preparation steps
+     *
+     * @return true if the meal was sold
+     */
+    boolean handlePaymentMeal();
+
+    /**
+     * Finds a predefined meal by name and reads its items, as the meal summary
+     * does
+     *
+     * @return the price of the meal
+     */
+    long predefinedMealItems();
+
+    /**
+     * Makes the transaction summary
+     */
+    void transactionSummary();
+
+    /**
+     * Makes the sales report from the whole transaction history: the revenue
+     * of today and the top sellers
+     *
+     * @return the revenue and the number of top sellers
+     */
+    long salesReport();
+}
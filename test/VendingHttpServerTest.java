@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * This class represents the test of the HTTP endpoint of the vending machine:
+ * the endpoint is started on a free port of the loopback address and called
+ * the way a remote client would, so each request goes through the network,
+ * the JSON reader and the vending service before its answer is checked.
+ */
+@Timeout(value = 30, unit = TimeUnit.SECONDS)
+public class VendingHttpServerTest {
+    private RegularVendingMachine vendingMachine;
+    private VendingHttpServer server;
+    private HttpClient client;
+
+    /**
+     * Starts the endpoint of a new machine with the default items
+     *
+     * @throws IOException if the endpoint cannot be started
+     */
+    @BeforeEach
+    public void startServer() throws IOException {
+        vendingMachine = new RegularVendingMachine();
+        server = new VendingHttpServer(new SpecialVendingMachine(vendingMachine).getVendingService(), 0);
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    /**
+     * Stops the endpoint
+     */
+    @AfterEach
+    public void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Reads the stock of the machine
+     *
+     * @throws Exception if the request fails
+     */
+    @Test
+    public void inventoryListsEverySlot() throws Exception {
+        HttpResponse<String> response = send("GET", "/inventory", null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().startsWith("{\"slots\":[{\"slot\":0,\"item\":"), response.body());
+        assertTrue(response.body().contains("\"slot\":" + (vendingMachine.getSlotCount() - 1) + ","),
+                response.body());
+    }
+
+    /**
+     * Buys an item with a bill and checks the sale and the change
+     *
+     * @throws Exception if the request fails
+     */
+    @Test
+    public void purchaseSellsAndGivesChange() throws Exception {
+        vendingMachine.replenishMoney(Money.pesos(1), 100);
+        vendingMachine.replenishMoney(Money.pesos(5), 100);
+        int quantity = vendingMachine.getSlot(0).getQuantity();
+        long price = vendingMachine.getSlot(0).getItem().getPrice();
+
+        HttpResponse<String> response = send("POST", "/purchase", "{\"slot\":0,\"payment\":{\"100\":1}}");
+        assertEquals(200, response.statusCode(), response.body());
+        assertTrue(response.body().contains("\"status\":\"SUCCESS\""), response.body());
+        assertTrue(response.body().contains("\"change\":" + Money.format(Money.pesos(100) - price)),
+                response.body());
+        assertEquals(quantity - 1, vendingMachine.getSlot(0).getQuantity());
+        assertEquals(1, vendingMachine.getTransactionStore().size());
+    }
+
+    /**
+     * Sends requests with values out of range and checks they are answered
+     * with 400 and leave the machine as it was
+     *
+     * @throws Exception if the request fails
+     */
+    @Test
+    public void requestsOutOfRangeAreRefused() throws Exception {
+        int quantity = vendingMachine.getSlot(0).getQuantity();
+        HttpResponse<String> response = send("POST", "/restock", "{\"slot\":0,\"quantity\":2147483647}");
+        assertEquals(400, response.statusCode(), response.body());
+        assertTrue(response.body().contains("must be from 1 to " + VendingHttpServer.MAX_QUANTITY), response.body());
+        assertEquals(quantity, vendingMachine.getSlot(0).getQuantity());
+
+        StringBuilder pieces = new StringBuilder("[0");
+        for (int i = 0; i < VendingHttpServer.MAX_MEAL_PIECES; i++) {
+            pieces.append(",0");
+        }
+        pieces.append(']');
+        response = send("POST", "/meal", "{\"pieces\":" + pieces + ",\"payment\":{\"500\":1}}");
+        assertEquals(400, response.statusCode(), response.body());
+        assertTrue(response.body().contains("at most " + VendingHttpServer.MAX_MEAL_PIECES), response.body());
+        assertEquals(quantity, vendingMachine.getSlot(0).getQuantity());
+        assertEquals(0, vendingMachine.getTransactionStore().size());
+    }
+
+    /**
+     * Sends a request to the endpoint
+     *
+     * @param method the HTTP method
+     * @param path   the path of the request
+     * @param body   the JSON body of the request, or null for none
+     * @return the answer
+     * @throws Exception if the request fails
+     */
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
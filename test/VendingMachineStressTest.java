@@ -0,0 +1,190 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * This class represents the stress test of the vending machine: many threads
+ * sell items and meals, check for change, replenish and collect money on the
+ * same machine at once, and afterwards the inventory, the cash and the
+ * transactions must add up to exactly what the threads were told was sold.
+ * It runs with the other tests:
+ *
+ * <pre>
+ *   gradle test --tests VendingMachineStressTest
+ * </pre>
+ */
+public class VendingMachineStressTest {
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 2_000;
+    private static final int STOCK = 2_000;
+    private static final int COINS = 5_000;
+    private static final int[] BILLS = { 4, 5, 6, 7 };
+
+    private RegularVendingMachine vendingMachine;
+    private MealRecipeRegistry mealRecipes;
+    private long[] denominations;
+    private AtomicLongArray soldQuantities;
+    private AtomicLong sales;
+    private AtomicLong revenue;
+    private AtomicLong replenished;
+    private AtomicLong collected;
+
+    /**
+     * Runs the mixed operations on many threads, then checks the inventory,
+     * cash and transaction totals of the machine
+     *
+     * @throws Exception if a thread fails
+     */
+    @Test
+    @Timeout(value = 120, unit = TimeUnit.SECONDS)
+    public void mixedOperationsAddUp() throws Exception {
+        vendingMachine = new RegularVendingMachine(3, 3, STOCK);
+        RegularVendingMachine defaultMachine = new RegularVendingMachine();
+        for (int i = 0; i < defaultMachine.getSlotCount(); i++) {
+            vendingMachine.restock(defaultMachine.getSlot(i).getItem(), STOCK, i);
+        }
+        mealRecipes = MealRecipeRegistry.createDefault(vendingMachine);
+        denominations = vendingMachine.getDenominations();
+        for (int i = 0; i < 4; i++) {
+            vendingMachine.replenishMoney(denominations[i], COINS);
+        }
+        long initialBalance = vendingMachine.getBalance();
+
+        soldQuantities = new AtomicLongArray(vendingMachine.getSlotCount());
+        sales = new AtomicLong();
+        revenue = new AtomicLong();
+        replenished = new AtomicLong();
+        collected = new AtomicLong();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                long seed = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    runOperations(new Random(seed));
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int i = 0; i < vendingMachine.getSlotCount(); i++) {
+            assertEquals(STOCK - soldQuantities.get(i), vendingMachine.getSlot(i).getQuantity(),
+                    "quantity of slot " + i);
+        }
+
+        TransactionStore transactions = vendingMachine.getTransactionStore();
+        long transactionTotal = 0;
+        for (int i = 0; i < transactions.size(); i++) {
+            transactionTotal += transactions.getAmount(i);
+        }
+        assertEquals(sales.get(), transactions.size(), "number of transactions");
+        assertEquals(revenue.get(), transactionTotal, "total of the transactions");
+
+        assertEquals(initialBalance + revenue.get() + replenished.get() - collected.get(),
+                vendingMachine.getBalance(), "balance");
+        int[] quantities = vendingMachine.getMoneyQuantities();
+        long cash = 0;
+        for (int i = 0; i < denominations.length; i++) {
+            cash += denominations[i] * quantities[i];
+        }
+        assertEquals(vendingMachine.getBalance(), cash, "money in the machine");
+        assertEquals(0, vendingMachine.getEscrowedAmount(), "money left in escrow");
+        assertTrue(vendingMachine.isCashReconciled(), vendingMachine.getCashReconciliation());
+    }
+
+    /**
+     * Runs one thread's share of the operations, checking each purchase as it
+     * returns
+     *
+     * @param random the source of the operations of the thread
+     */
+    private void runOperations(Random random) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            int operation = random.nextInt(100);
+            if (operation < 55) {
+                int slotNumber = random.nextInt(vendingMachine.getSlotCount());
+                int quantity = 1 + random.nextInt(3);
+                long price = vendingMachine.getSlot(slotNumber).getItem().getPrice() * quantity;
+                int[] payment = pay(price, random);
+                check(vendingMachine.sellItem(slotNumber, quantity, payment), payment);
+            } else if (operation < 80) {
+                MealRecipe recipe = mealRecipes.getRecipe(random.nextInt(mealRecipes.getRecipeCount()));
+                int[] payment = pay(recipe.getTotalPrice(), random);
+                check(vendingMachine.sellMeal(recipe, payment), payment);
+            } else if (operation < 88) {
+                vendingMachine.isChangePossible(pay(Money.pesos(1 + random.nextInt(300)), random),
+                        Money.pesos(1 + random.nextInt(300)));
+            } else if (operation < 94) {
+                int index = random.nextInt(4);
+                int quantity = 1 + random.nextInt(50);
+                vendingMachine.replenishMoney(denominations[index], quantity);
+                replenished.addAndGet(denominations[index] * quantity);
+            } else {
+                collected.addAndGet(vendingMachine.collectMoney());
+            }
+        }
+    }
+
+    /**
+     * Checks the result of a purchase and counts it if it succeeded. A purchase
+     * that failed must give back exactly the money paid.
+     *
+     * @param result  the result of the purchase
+     * @param payment the pieces paid for it
+     */
+    private void check(VendingResult result, int[] payment) {
+        long paid = vendingMachine.getPaymentAmount(payment);
+        if (result.isSuccessful()) {
+            assertEquals(paid, result.getAmountPaid(), "amount paid");
+            assertEquals(paid - result.getTotalPrice(), vendingMachine.getPaymentAmount(result.getChangePieces()),
+                    "change given");
+            int[] slotNumbers = result.getSlotNumbers();
+            int[] quantities = result.getQuantities();
+            for (int i = 0; i < slotNumbers.length; i++) {
+                soldQuantities.addAndGet(slotNumbers[i], quantities[i]);
+            }
+            sales.incrementAndGet();
+            revenue.addAndGet(result.getTotalPrice());
+        } else {
+            assertEquals(paid, vendingMachine.getPaymentAmount(result.getReturnedPieces()),
+                    "money given back: " + result.getMessage());
+        }
+    }
+
+    /**
+     * Pays for a price with enough pieces of a bill chosen at random, so most
+     * purchases need change
+     *
+     * @param price  the price to pay (in centavos)
+     * @param random the source of the choice of bill
+     * @return the pieces of each denomination paid
+     */
+    private int[] pay(long price, Random random) {
+        int index = BILLS[random.nextInt(BILLS.length)];
+        int[] payment = new int[denominations.length];
+        payment[index] = (int) ((price + denominations[index] - 1) / denominations[index]);
+        return payment;
+    }
+}